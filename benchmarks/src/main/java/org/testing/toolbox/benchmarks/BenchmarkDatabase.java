@@ -0,0 +1,122 @@
+package org.testing.toolbox.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+/**
+ * Embedded H2 database and generated datasets of the benchmarks.
+ *
+ * The ITEM table has rows of the form (id, "item-<id>", id / 100, timestamp).
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class BenchmarkDatabase {
+	public static final String SCHEMA = "PUBLIC";
+	public static final String TABLE = SCHEMA + ".ITEM";
+
+	private static final String TIMESTAMP = "2020-01-01 00:00:00.0";
+	private static final int BATCH_SIZE = 1000;
+
+	/**
+	 * Creating an in-memory database with the ITEM table.
+	 *
+	 * @param name
+	 *            name of the database (one per benchmark state)
+	 * @return JdbcDataSource
+	 * @throws SQLException
+	 */
+	public static JdbcDataSource create(String name) throws SQLException {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+
+		try (Connection con = dataSource.getConnection(); Statement stmt = con.createStatement()) {
+			stmt.execute("DROP TABLE IF EXISTS ITEM");
+			stmt.execute("CREATE TABLE ITEM (ID BIGINT PRIMARY KEY, NAME VARCHAR(64), AMOUNT DECIMAL(12, 2), "
+					+ "CREATED TIMESTAMP)");
+		}
+		return dataSource;
+	}
+
+	/**
+	 * Inserting rows into the ITEM table (without the toolbox).
+	 *
+	 * @param dataSource
+	 * @param rows
+	 * @throws SQLException
+	 */
+	public static void fill(JdbcDataSource dataSource, int rows) throws SQLException {
+		try (Connection con = dataSource.getConnection();
+				Statement purge = con.createStatement();
+				PreparedStatement stmt = con.prepareStatement("INSERT INTO ITEM VALUES (?, ?, ?, ?)")) {
+			purge.execute("DELETE FROM ITEM");
+			for (int id = 1; id <= rows; id++) {
+				stmt.setLong(1, id);
+				stmt.setString(2, "item-" + id);
+				stmt.setBigDecimal(3, BigDecimal.valueOf(id, 2));
+				stmt.setTimestamp(4, Timestamp.valueOf(TIMESTAMP));
+				stmt.addBatch();
+				if (0 == id % BATCH_SIZE) {
+					stmt.executeBatch();
+				}
+			}
+			stmt.executeBatch();
+		}
+	}
+
+	/**
+	 * Writing a flat XML dataset of the ITEM table.
+	 *
+	 * @param file
+	 * @param rows
+	 * @param placeholders
+	 *            true to write ${prefix} and ${created} placeholders (replacement
+	 *            datasets)
+	 * @throws IOException
+	 */
+	public static void writeDataSet(File file, int rows, boolean placeholders) throws IOException {
+		String name = placeholders ? "${prefix}-" : "item-";
+		String created = placeholders ? "${created}" : TIMESTAMP;
+
+		try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<dataset>\n");
+			for (int id = 1; id <= rows; id++) {
+				writer.write("  <" + TABLE + " ID=\"" + id + "\" NAME=\"" + name + id + "\" AMOUNT=\""
+						+ BigDecimal.valueOf(id, 2) + "\" CREATED=\"" + created + "\"/>\n");
+			}
+			writer.write("</dataset>\n");
+		}
+	}
+
+	/**
+	 * Deleting a directory of generated datasets.
+	 *
+	 * @param dir
+	 */
+	public static void delete(File dir) {
+		File[] files = dir.listFiles();
+		if (null != files) {
+			for (File file : files) {
+				delete(file);
+			}
+		}
+		dir.delete();
+	}
+
+	/**
+	 * Static class : private constructor.
+	 */
+	private BenchmarkDatabase() {
+	}
+}
@@ -0,0 +1,36 @@
+package org.testing.toolbox.benchmarks;
+
+import java.io.File;
+
+import javax.sql.DataSource;
+
+import org.dbunit.ext.h2.H2DataTypeFactory;
+import org.testing.toolbox.DatabaseTest;
+
+/**
+ * DatabaseTest used outside of JUnit by the benchmarks.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class BenchmarkDatabaseTest extends DatabaseTest {
+	private final File dataDir;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dataSource
+	 * @param dataDir
+	 *            directory of the generated datasets
+	 */
+	public BenchmarkDatabaseTest(DataSource dataSource, File dataDir) {
+		this.dataDir = dataDir;
+		setDataSource(dataSource);
+		setDataTypeFactory(new H2DataTypeFactory());
+	}
+
+	@Override
+	public String getTestDataDir() {
+		return dataDir.getPath() + File.separator;
+	}
+}
@@ -0,0 +1,60 @@
+package org.testing.toolbox.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of DatabaseTest.getConnection: opening a connection and its dbunit
+ * wrapper, then closing it like at the end of a test.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectionBenchmark {
+	@Param({ "false", "true" })
+	public boolean shareConnection;
+
+	private File dataDir;
+	private BenchmarkDatabaseTest test;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		dataDir = Files.createTempDirectory("testing-toolbox-bench").toFile();
+		test = new BenchmarkDatabaseTest(BenchmarkDatabase.create("connection"), dataDir);
+		test.setShareConnection(shareConnection);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		BenchmarkDatabase.delete(dataDir);
+	}
+
+	@Benchmark
+	public IDatabaseConnection getConnection() throws Exception {
+		IDatabaseConnection connection = test.getConnection(BenchmarkDatabase.SCHEMA);
+		test.closeConnections();
+		return connection;
+	}
+}
@@ -0,0 +1,117 @@
+package org.testing.toolbox.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.operation.DatabaseOperation;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.testing.toolbox.ExpectedLineDataSet;
+import org.testing.toolbox.Replacements;
+
+/**
+ * Cost of the DatabaseTest dataset paths according to the number of rows.
+ *
+ * The assertion benchmark looks for 100 rows spread over the table.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DataSetBenchmark {
+	private static final int NB_EXPECTED_LINES = 100;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int rows;
+
+	private File dataDir;
+	private String dataSetFile;
+	private String replacementDataSetFile;
+	private Replacements replacements;
+	private Map<String, String> queryByTables;
+	private List<ExpectedLineDataSet> expectedLines;
+	private BenchmarkDatabaseTest test;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		dataDir = Files.createTempDirectory("testing-toolbox-bench").toFile();
+		dataSetFile = new File(dataDir, "items_ds.xml").getPath();
+		replacementDataSetFile = new File(dataDir, "items_replacement_ds.xml").getPath();
+		BenchmarkDatabase.writeDataSet(new File(dataSetFile), rows, false);
+		BenchmarkDatabase.writeDataSet(new File(replacementDataSetFile), rows, true);
+
+		replacements = Replacements.newInstance() //
+				.add("${prefix}", "item") //
+				.add("${created}", Timestamp.valueOf("2020-01-01 00:00:00"));
+
+		queryByTables = Collections.singletonMap(BenchmarkDatabase.TABLE, "");
+
+		expectedLines = new ArrayList<>();
+		for (int i = 0; i < NB_EXPECTED_LINES; i++) {
+			long id = 1 + (long) i * rows / NB_EXPECTED_LINES;
+			expectedLines.add(ExpectedLineDataSet.newInstance(BenchmarkDatabase.TABLE) //
+					.add("ID", String.valueOf(id)) //
+					.add("NAME", "item-" + id));
+		}
+
+		JdbcDataSource dataSource = BenchmarkDatabase.create("dataset" + rows);
+		BenchmarkDatabase.fill(dataSource, rows);
+		test = new BenchmarkDatabaseTest(dataSource, dataDir);
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeConnections() {
+		test.closeConnections();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		BenchmarkDatabase.delete(dataDir);
+	}
+
+	@Benchmark
+	public IDataSet getDataSet() throws Exception {
+		return test.getDataSet(dataSetFile);
+	}
+
+	@Benchmark
+	public void execReplacementDataSet() {
+		test.execReplacementDataSetFromFile(replacementDataSetFile, replacements, BenchmarkDatabase.SCHEMA,
+				DatabaseOperation.CLEAN_INSERT);
+	}
+
+	@Benchmark
+	public IDataSet generateDataSet() {
+		return test.generateDataSet(queryByTables, "items_export_ds.xml", BenchmarkDatabase.SCHEMA);
+	}
+
+	@Benchmark
+	public void assertOccrurrenceDataSet() {
+		test.assertOccrurrenceDataSet(BenchmarkDatabase.SCHEMA, Collections.singletonList(BenchmarkDatabase.TABLE),
+				expectedLines, 1);
+	}
+}
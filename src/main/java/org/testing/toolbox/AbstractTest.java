@@ -3,6 +3,11 @@ package org.testing.toolbox;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.testing.toolbox.utils.FileUtils;
 
 /**
  * Abstract class for tests.
@@ -23,12 +28,46 @@ public abstract class AbstractTest {
 		fail("Unexpected exception : " + e.getMessage());
 	}
 
+	/**
+	 * Asserting that two files have the same content (compared by chunks, in
+	 * constant memory, whatever their size).
+	 * 
+	 * @param pathExpectedFile
+	 * @param pathActualFile
+	 */
+	public void assertFileEquals(String pathExpectedFile, String pathActualFile) {
+		try {
+			long offset = FileUtils.indexOfDifference(pathExpectedFile, pathActualFile);
+			if (offset < 0) {
+				return;
+			}
+
+			long expectedSize = Files.size(Paths.get(pathExpectedFile));
+			long actualSize = Files.size(Paths.get(pathActualFile));
+			fail("The file " + pathActualFile + " differs from " + pathExpectedFile + " at byte " + offset
+			        + " (line " + FileUtils.lineNumberAt(pathExpectedFile, offset) + "), sizes: " + expectedSize
+			        + " expected, " + actualSize + " actual");
+		} catch (IOException e) {
+			failWithException(e);
+		}
+	}
+
 	/**
 	 * Getting test data dir.
 	 * 
 	 * @return String
 	 */
 	public String getTestDataDir() {
+		return getTestDataDir(this.getClass());
+	}
+
+	/**
+	 * Getting test data dir of a test class.
+	 * 
+	 * @param testClass
+	 * @return String
+	 */
+	public static String getTestDataDir(Class<?> testClass) {
 		return "src" //
 		        + File.separator //
 		        + "test" //
@@ -37,7 +76,7 @@ public abstract class AbstractTest {
 		        + File.separator //
 		        + "data" //
 		        + File.separator //
-		        + this.getClass().getSimpleName() //
+		        + testClass.getSimpleName() //
 		        + File.separator;
 	}
 
@@ -0,0 +1,22 @@
+package org.testing.toolbox;
+
+/**
+ * Engines used by the DatabaseTest assertions.
+ * 
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public enum AssertionMode {
+	/**
+	 * Counting the matching rows in the database with parameterized SQL queries
+	 * (the values are compared with the type of their column, the listed
+	 * tables are ignored).
+	 */
+	SQL,
+
+	/**
+	 * Dumping the tables into a temporary flat XML dataset and evaluating XPath
+	 * queries on it (default).
+	 */
+	XPATH
+}
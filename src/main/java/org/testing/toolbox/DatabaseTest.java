@@ -7,20 +7,25 @@ import static org.testing.toolbox.utils.FileUtils.getAbsolutePath;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 import javax.inject.Inject;
 import javax.sql.DataSource;
@@ -32,21 +37,66 @@ import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathFactory;
 
 import org.apache.commons.lang3.StringUtils;
-import org.dbunit.database.DatabaseConfig;
-import org.dbunit.database.DatabaseConnection;
-import org.dbunit.database.DatabaseSequenceFilter;
 import org.dbunit.database.IDatabaseConnection;
 import org.dbunit.database.QueryDataSet;
+import org.dbunit.dataset.CachedDataSet;
+import org.dbunit.dataset.CompositeDataSet;
 import org.dbunit.dataset.DataSetException;
 import org.dbunit.dataset.FilteredDataSet;
+import org.dbunit.dataset.Column;
 import org.dbunit.dataset.IDataSet;
-import org.dbunit.dataset.ReplacementDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
 import org.dbunit.dataset.datatype.DefaultDataTypeFactory;
+import org.dbunit.dataset.filter.SequenceTableFilter;
 import org.dbunit.dataset.xml.FlatDtdWriter;
 import org.dbunit.dataset.xml.FlatXmlDataSet;
 import org.dbunit.dataset.xml.FlatXmlDataSetBuilder;
 import org.dbunit.ext.postgresql.PostgresqlDataTypeFactory;
 import org.dbunit.operation.DatabaseOperation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.rules.TestRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testing.toolbox.database.ChangeCapture;
+import org.testing.toolbox.database.ConnectionCache;
+import org.testing.toolbox.database.DatabaseSnapshot;
+import org.testing.toolbox.database.ExpectedLinesMatcher;
+import org.testing.toolbox.database.MemorySnapshot;
+import org.testing.toolbox.database.MetaDataUtils;
+import org.testing.toolbox.database.SchemaCopySnapshot;
+import org.testing.toolbox.database.SnapshotRegistry;
+import org.testing.toolbox.database.SortedTableDiff;
+import org.testing.toolbox.database.SqlOccurrenceCounter;
+import org.testing.toolbox.database.TableChecksum;
+import org.testing.toolbox.database.TableDelta;
+import org.testing.toolbox.database.TableDependencyCache;
+import org.testing.toolbox.database.TableDependencyGraph;
+import org.testing.toolbox.database.TableDiff;
+import org.testing.toolbox.database.TableMetaDataCache;
+import org.testing.toolbox.database.WorkerSchemas;
+import org.testing.toolbox.dataset.BinaryDataSet;
+import org.testing.toolbox.dataset.CompiledReplacementDataSet;
+import org.testing.toolbox.dataset.CsvDataSet;
+import org.testing.toolbox.dataset.DataSetCache;
+import org.testing.toolbox.dataset.RowCountingDataSet;
+import org.testing.toolbox.dataset.SchemaMappingDataSet;
+import org.testing.toolbox.dataset.StreamingDataSetExporter;
+import org.testing.toolbox.jdbc.CapturedStatement;
+import org.testing.toolbox.jdbc.DirtyTrackingDataSource;
+import org.testing.toolbox.jdbc.StatementCapture;
+import org.testing.toolbox.jdbc.StatementCaptureDataSource;
+import org.testing.toolbox.jdbc.TransactionalDataSource;
+import org.testing.toolbox.metrics.MetricsRule;
+import org.testing.toolbox.metrics.Phase;
+import org.testing.toolbox.metrics.TestMetrics;
+import org.testing.toolbox.operation.ParallelDataSetLoader;
+import org.testing.toolbox.operation.PostgresqlOperation;
+import org.testing.toolbox.utils.WorkerRule;
+import org.testing.toolbox.utils.Workers;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 
@@ -57,35 +107,218 @@ import org.w3c.dom.NodeList;
  * @author Idriss Neumann <neumann.idriss@gmail.com>
  */
 public abstract class DatabaseTest extends IntegrationTest {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseTest.class);
+	private static final TestMetrics METRICS = TestMetrics.getInstance();
+	private static final String STRING_SOURCE = "<string>";
+	private static final int MAX_REPORTED_ROWS = 10;
+	private static final int MAX_REPORTED_STATEMENTS = 10;
+
 	protected static final DatabaseOperation DEFAULT_OPERATION = DatabaseOperation.INSERT;
 	protected final String PURGE_DS = getTestCommonDataDir() + "schema_purge_ds.xml";
 	protected final String SCHEMA = "public";
 	protected Boolean disableDeleteTmpDataSet = false;
 
+	// Set to true to run all the operations of a test on a single physical connection.
+	protected Boolean shareConnection = false;
+
+	// Set to false to parse the XML files on every call instead of using the JVM-wide DataSetCache.
+	protected Boolean cacheDataSets = true;
+
+	// Engine of the assertOccrurrenceDataSet / assertContainDataSet / assertNotContainDataSet methods (set to SQL to count the lines in the database).
+	protected AssertionMode assertionMode = AssertionMode.XPATH;
+
+	// Number of expected lines of a table from which the SQL assertion mode reads the table once instead of counting each line.
+	protected Integer streamingMatchThreshold = 20;
+
+	// Set to true to export the datasets (generateDataSet) with a constant memory footprint.
+	protected Boolean streamingExport = false;
+
+	// Number of rows fetched per round trip by the streaming export.
+	protected Integer exportFetchSize = 1000;
+
+	// Set to true to roll back each test in a transaction instead of resetting the tables (see loadFixture).
+	protected Boolean rollbackIsolation = false;
+
+	// Set to true to reset only the tables written since the previous loadFixture / purge (see DirtyTrackingDataSource).
+	protected Boolean dirtyTracking = false;
+
+	// Storage of the snapshots (see restoreSnapshot).
+	protected SnapshotStrategy snapshotStrategy = SnapshotStrategy.SCHEMA_COPY;
+
+	// Set to true (or the testing.toolbox.parallel system property) to give each fork / thread its own schema, cloned from the base schema.
+	protected Boolean parallel = Workers.isParallel();
+
+	// Number of tables loaded concurrently by the exec* methods, in the foreign keys order (1 to load them sequentially).
+	protected Integer loadParallelism = 1;
+
+	// Set to true to compile the XML files into binary datasets (".bds" files under target/testing-toolbox/datasets, see BinaryDataSet) read instead of the XML while they are up to date.
+	protected Boolean compileDataSets = false;
+
 	// Setted by default as PostgresqlDataTypeFactory but you can change it in your tests classes.
 	protected DefaultDataTypeFactory dataTypeFactory = new PostgresqlDataTypeFactory();
 
 	@Inject
 	private DataSource dataSource;
 
+	// Attaches the measures of the testing.toolbox.metrics mode to the running test.
+	@Rule
+	public final MetricsRule metricsRule = new MetricsRule();
+
+	// Leases a worker schema and temporary directory to the test in parallel mode.
+	@Rule
+	public final WorkerRule workerRule = new WorkerRule(() -> Boolean.TRUE.equals(parallel));
+
+	// Prepares the datasets of @PrefetchDataSets in background while the previous test runs.
+	@ClassRule
+	public static final TestRule PREFETCH_CLASS_RULE = PrefetchRule.forClass();
+
+	@Rule
+	public final PrefetchRule prefetchRule = new PrefetchRule(() -> Boolean.TRUE.equals(cacheDataSets),
+			() -> Boolean.TRUE.equals(compileDataSets));
+
+	private ConnectionCache connectionCache;
+
+	private ChangeCapture changeCapture;
+	private String changeCaptureSchema;
+
+	/**
+	 * Block of code whose statements are captured (see captureStatements).
+	 */
+	public interface StatementBlock {
+		void run() throws Exception;
+	}
+
 	/**
 	 * Getting database connection.
 	 * 
+	 * The connection is opened once per schema and reused until the end of the
+	 * test (see closeConnections). In parallel mode, the connection is opened on
+	 * the schema of the current worker (cloned from strSchema on the first
+	 * call).
+	 * 
 	 * @param strSchema
 	 * @return IDatabaseConnection
 	 * @throws Exception
 	 */
 	public IDatabaseConnection getConnection(String strSchema) throws Exception {
-		Connection con = dataSource.getConnection();
-		IDatabaseConnection connection = new DatabaseConnection(con, strSchema);
-		DatabaseConfig config = connection.getConfig();
-		config.setProperty(DatabaseConfig.FEATURE_QUALIFIED_TABLE_NAMES, true);
-		config.setProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY, dataTypeFactory);
+		if (null == connectionCache) {
+			DataSource connectionDataSource = dataSource;
+			if (Boolean.TRUE.equals(rollbackIsolation)) {
+				connectionDataSource = TransactionalDataSource.of(dataSource);
+			} else if (Boolean.TRUE.equals(dirtyTracking)) {
+				connectionDataSource = DirtyTrackingDataSource.of(dataSource);
+			}
+			connectionCache = new ConnectionCache(connectionDataSource, Boolean.TRUE.equals(shareConnection));
+			connectionCache.setSwitchSchema(Boolean.TRUE.equals(parallel));
+		}
+
+		long start = METRICS.start();
+		IDatabaseConnection connection = connectionCache.getConnection(prepareSchema(connectionCache, strSchema),
+				dataTypeFactory);
+		METRICS.record(Phase.CONNECTION, start, 0, 0, strSchema);
 		return connection;
 	}
 
 	/**
-	 * Getting dataset from a file name.
+	 * Getting the schema to connect to: strSchema, or in parallel mode the
+	 * schema of the current worker (cloned from strSchema if needed, out of
+	 * the test transaction in rollback isolation mode).
+	 * 
+	 * @param connections
+	 * @param strSchema
+	 * @return String
+	 * @throws Exception
+	 */
+	private String prepareSchema(ConnectionCache connections, String strSchema) throws Exception {
+		if (!Boolean.TRUE.equals(parallel)) {
+			return strSchema;
+		}
+
+		String workerSchema = Workers.getSchema(strSchema);
+		if (WorkerSchemas.isPrepared(dataSource, workerSchema)) {
+			return workerSchema;
+		}
+
+		if (!Boolean.TRUE.equals(rollbackIsolation)) {
+			WorkerSchemas.prepare(dataSource, connections.getConnection(strSchema, dataTypeFactory), workerSchema,
+					dataTypeFactory instanceof PostgresqlDataTypeFactory);
+			return workerSchema;
+		}
+
+		// cloned out of the test transaction, which is rolled back
+		ConnectionCache cloneConnections = new ConnectionCache(
+				TransactionalDataSource.of(dataSource).getTargetDataSource(), false);
+		try {
+			WorkerSchemas.prepare(dataSource, cloneConnections.getConnection(strSchema, dataTypeFactory), workerSchema,
+					dataTypeFactory instanceof PostgresqlDataTypeFactory);
+		} finally {
+			cloneConnections.close();
+		}
+		return workerSchema;
+	}
+
+	/**
+	 * Moving the tables of a dataset qualified by a schema to the schema of the
+	 * current worker (parallel mode).
+	 * 
+	 * @param dataSet
+	 * @param strSchema
+	 * @return IDataSet
+	 */
+	private IDataSet toWorkerDataSet(IDataSet dataSet, String strSchema) {
+		if (!Boolean.TRUE.equals(parallel)) {
+			return dataSet;
+		}
+		return new SchemaMappingDataSet(dataSet, strSchema, Workers.getSchema(strSchema));
+	}
+
+	/**
+	 * Opening the test transaction (rollback isolation mode).
+	 */
+	@Before
+	public void beginTransaction() {
+		if (!Boolean.TRUE.equals(rollbackIsolation)) {
+			return;
+		}
+
+		try {
+			TransactionalDataSource.of(dataSource).begin();
+		} catch (SQLException e) {
+			failWithException(e);
+		}
+	}
+
+	/**
+	 * Closing the connections opened during the test (and rolling back the test
+	 * transaction in rollback isolation mode).
+	 */
+	@After
+	public void closeConnections() {
+		try {
+			releaseBaseline();
+		} catch (Exception e) {
+			failWithException(e);
+		}
+
+		if (null != connectionCache) {
+			connectionCache.close();
+			connectionCache = null;
+		}
+
+		if (Boolean.TRUE.equals(rollbackIsolation)) {
+			try {
+				TransactionalDataSource.of(dataSource).rollback();
+			} catch (SQLException e) {
+				failWithException(e);
+			}
+		}
+	}
+
+	/**
+	 * Getting dataset from a file name (gzipped if it ends with ".gz").
+	 * 
+	 * The binary dataset of the file (see BinaryDataSet) is read instead of
+	 * the XML when it's up to date.
 	 * 
 	 * @param filename
 	 * @return IDataSet
@@ -93,11 +326,79 @@ public abstract class DatabaseTest extends IntegrationTest {
 	 * @throws Exception
 	 */
 	public IDataSet getDataSet(String filename) throws DataSetException, IOException {
+		long start = METRICS.start();
+		IDataSet dataSet = parseDataSet(filename, Boolean.TRUE.equals(compileDataSets));
+		METRICS.record(Phase.PARSE, start, METRICS.isEnabled() ? countRows(dataSet) : 0,
+				new File(filename).length(), filename);
+		return dataSet;
+	}
+
+	/**
+	 * Parsing a dataset file (binary dataset if it's up to date, see getDataSet).
+	 * 
+	 * @param filename
+	 * @param compile
+	 *            compiling the binary dataset if it's missing or outdated
+	 * @return IDataSet
+	 * @throws DataSetException
+	 * @throws IOException
+	 */
+	static IDataSet parseDataSet(String filename, boolean compile) throws DataSetException, IOException {
+		if (BinaryDataSet.isUpToDate(filename)) {
+			return BinaryDataSet.open(BinaryDataSet.getBinaryFile(filename));
+		}
+
+		if (compile) {
+			return BinaryDataSet.open(BinaryDataSet.compile(filename));
+		}
+
 		FlatXmlDataSetBuilder xmldataSourceBuilder = new FlatXmlDataSetBuilder();
 		xmldataSourceBuilder.setCaseSensitiveTableNames(false);
+
+		if (filename.endsWith(StreamingDataSetExporter.GZIP_EXTENSION)) {
+			try (InputStream in = new GZIPInputStream(new FileInputStream(filename))) {
+				return xmldataSourceBuilder.build(in);
+			}
+		}
+
 		return xmldataSourceBuilder.build(new File(filename));
 	}
 
+	/**
+	 * Counting the rows of a parsed dataset (metrics).
+	 * 
+	 * @param dataSet
+	 * @return long
+	 * @throws DataSetException
+	 */
+	private static long countRows(IDataSet dataSet) throws DataSetException {
+		long rows = 0;
+		ITableIterator it = dataSet.iterator();
+		while (it.next()) {
+			rows += it.getTable().getRowCount();
+		}
+		return rows;
+	}
+
+	/**
+	 * Getting dataset from a file name through the JVM-wide dataset cache.
+	 * 
+	 * The returned dataset is shared with the other tests and must not be
+	 * modified.
+	 * 
+	 * @param filename
+	 * @return IDataSet
+	 * @throws DataSetException
+	 * @throws IOException
+	 */
+	public IDataSet getCachedDataSet(String filename) throws DataSetException, IOException {
+		if (!Boolean.TRUE.equals(cacheDataSets)) {
+			return getDataSet(filename);
+		}
+
+		return DataSetCache.getInstance().get(filename, false, file -> getDataSet(file.getPath()));
+	}
+
 	/**
 	 * Getting dataset from XML stream.
 	 * 
@@ -123,12 +424,46 @@ public abstract class DatabaseTest extends IntegrationTest {
 	public IDataSet getDataSet(String filename, String strSchema) throws Exception {
 		IDataSet dataSet = getDataSet(filename);
 
-		DatabaseSequenceFilter filter = new DatabaseSequenceFilter(getConnection(strSchema));
-		IDataSet filtered = new FilteredDataSet(filter, dataSet);
+		String[] orderedTables = getTableDependencyGraph(strSchema).sort(dataSet.getTableNames());
+		IDataSet filtered = new FilteredDataSet(new SequenceTableFilter(orderedTables), dataSet);
 
 		return filtered;
 	}
 
+	/**
+	 * Getting the foreign keys dependency graph of a schema.
+	 * 
+	 * The graph is read from the database metadata once per DataSource and
+	 * schema, then cached (see invalidateTableDependencies).
+	 * 
+	 * @param strSchema
+	 * @return TableDependencyGraph
+	 * @throws Exception
+	 */
+	public TableDependencyGraph getTableDependencyGraph(String strSchema) throws Exception {
+		return TableDependencyCache.getGraph(dataSource, getConnection(strSchema));
+	}
+
+	/**
+	 * Invalidating the cached dependency graph of a schema (to call after a DDL
+	 * changing the foreign keys).
+	 * 
+	 * @param strSchema
+	 */
+	public void invalidateTableDependencies(String strSchema) {
+		TableDependencyCache.invalidate(dataSource, strSchema);
+	}
+
+	/**
+	 * Invalidating the cached table metadata of a schema (to call after a DDL
+	 * changing the tables or their primary keys).
+	 * 
+	 * @param strSchema
+	 */
+	public void invalidateTableMetaData(String strSchema) {
+		TableMetaDataCache.invalidate(dataSource, strSchema);
+	}
+
 	/**
 	 * Launching SQL update/delete/insert query.
 	 * 
@@ -136,8 +471,10 @@ public abstract class DatabaseTest extends IntegrationTest {
 	 * @param query
 	 */
 	public void execDb(String schema, String query) {
-		try {
-			getConnection(schema).getConnection().createStatement().execute(query);
+		try (Statement statement = getConnection(schema).getConnection().createStatement()) {
+			long start = METRICS.start();
+			statement.execute(query);
+			METRICS.record(Phase.QUERY, start, 0, 0, query);
 		} catch (SQLException e) {
 			failWithException(e);
 		} catch (Exception e) {
@@ -145,16 +482,53 @@ public abstract class DatabaseTest extends IntegrationTest {
 		}
 	}
 
+	/**
+	 * Executing an operation, loading the tables concurrently if
+	 * loadParallelism is greater than 1.
+	 * 
+	 * The loading stays sequential in rollback isolation mode, inside a
+	 * transaction or if the operation isn't an insert / clean insert.
+	 * 
+	 * @param dataSet
+	 * @param source
+	 *            file(s) of the dataset (metrics)
+	 * @param schema
+	 * @param operation
+	 * @throws Exception
+	 */
+	private void execute(IDataSet dataSet, String source, String schema, DatabaseOperation operation)
+			throws Exception {
+		IDatabaseConnection connection = getConnection(schema);
+		long start = METRICS.start();
+		RowCountingDataSet countingDataSet = METRICS.isEnabled() ? new RowCountingDataSet(dataSet) : null;
+		IDataSet workerDataSet = toWorkerDataSet(null == countingDataSet ? dataSet : countingDataSet, schema);
+
+		if (null == loadParallelism || loadParallelism <= 1 || Boolean.TRUE.equals(rollbackIsolation)
+				|| !connection.getConnection().getAutoCommit() || null == ParallelDataSetLoader.split(operation)) {
+			operation.execute(connection, workerDataSet);
+		} else {
+			ParallelDataSetLoader loader = new ParallelDataSetLoader(
+					Boolean.TRUE.equals(dirtyTracking) ? DirtyTrackingDataSource.of(dataSource) : dataSource,
+					connection.getSchema(), dataTypeFactory);
+			loader.setParallelism(loadParallelism);
+			loader.setSwitchSchema(Boolean.TRUE.equals(parallel));
+			loader.load(workerDataSet, operation, getTableDependencyGraph(schema));
+		}
+
+		METRICS.record(Phase.LOAD, start, null == countingDataSet ? 0 : countingDataSet.getRowCount(), 0, source);
+	}
+
 	/**
 	 * Launching flat XML dataset.
 	 * 
 	 * @param dataSet
+	 * @param source
 	 * @param schema
 	 * @param operation
 	 */
-	private void execFlatXmlDataSet(IDataSet dataSet, String schema, DatabaseOperation operation) {
+	private void execFlatXmlDataSet(IDataSet dataSet, String source, String schema, DatabaseOperation operation) {
 		try {
-			operation.execute(getConnection(schema), dataSet);
+			execute(dataSet, source, schema, operation);
 		} catch (Exception ex) {
 			failWithException(ex);
 		}
@@ -164,29 +538,15 @@ public abstract class DatabaseTest extends IntegrationTest {
 	 * Launching replacement dataset.
 	 * 
 	 * @param dataSet
+	 * @param source
 	 * @param eplacements
 	 * @param schema
 	 * @param operation
 	 */
-	private void execReplacementDataSet(IDataSet dataSet, Replacements replacements, String schema,
+	private void execReplacementDataSet(IDataSet dataSet, String source, Replacements replacements, String schema,
 			DatabaseOperation operation) {
 		try {
-			ReplacementDataSet replacementDataSet = new ReplacementDataSet(dataSet);
-
-			Map<String, String> replacementsMap = replacements.toMap();
-			Set<String> keys = replacementsMap.keySet();
-			Iterator<String> it = keys.iterator();
-
-			String key;
-			while (it.hasNext()) {
-				key = it.next();
-				replacementDataSet.addReplacementObject(key, replacementsMap.get(key));
-			}
-
-			replacementDataSet.addReplacementObject("${NULL}", null);
-			replacementDataSet.addReplacementObject("${null}", null);
-			operation.execute(getConnection(schema), replacementDataSet);
-
+			execute(new CompiledReplacementDataSet(dataSet, replacements.compile()), source, schema, operation);
 		} catch (Exception e) {
 			failWithException(e);
 		}
@@ -201,7 +561,7 @@ public abstract class DatabaseTest extends IntegrationTest {
 	 */
 	public void execFlatXmlDataSetFromString(String strXML, String schema, DatabaseOperation operation) {
 		try {
-			execFlatXmlDataSet(getDataSetFromString(strXML), schema, operation);
+			execFlatXmlDataSet(getDataSetFromString(strXML), STRING_SOURCE, schema, operation);
 		} catch (DataSetException ex) {
 			failWithException(ex);
 		}
@@ -236,323 +596,1439 @@ public abstract class DatabaseTest extends IntegrationTest {
 	 */
 	public void execFlatXmlDataSetFromFile(String pathXMLFile, String schema, DatabaseOperation operation) {
 		try {
-			execFlatXmlDataSet(getDataSet(pathXMLFile), schema, operation);
+			execFlatXmlDataSet(getCachedDataSet(pathXMLFile), pathXMLFile, schema, operation);
 		} catch (DataSetException | IOException e) {
 			failWithException(e);
 		}
 	}
 
 	/**
-	 * Launching replacement dataset from XML string.
+	 * Loading the fixture of a test class with CLEAN_INSERT.
 	 * 
-	 * @param strXML
-	 * @param replacements
+	 * @param pathXMLFile
 	 * @param schema
 	 */
-	public void execReplacementDataSetFromString(String strXML, Replacements replacements, String schema) {
-		execReplacementDataSetFromString(strXML, replacements, schema, DEFAULT_OPERATION);
+	public void loadFixture(String pathXMLFile, String schema) {
+		loadFixture(pathXMLFile, schema, DatabaseOperation.CLEAN_INSERT);
 	}
 
 	/**
-	 * Launching replacement dataset from XML string.
+	 * Loading the fixture of a test class.
 	 * 
-	 * @param strXML
-	 * @param replacements
+	 * In rollback isolation mode, the fixture is committed outside of the test
+	 * transaction and only when the schema doesn't already contain it (the
+	 * changes of the previous tests having been rolled back). In dirty
+	 * tracking mode, only the tables written since the previous load are
+	 * reloaded (see resetTables). Otherwise it is launched like
+	 * execFlatXmlDataSetFromFile.
+	 * 
+	 * @param pathXMLFile
 	 * @param schema
 	 * @param operation
 	 */
-	public void execReplacementDataSetFromString(String strXML, Replacements replacements, String schema,
-			DatabaseOperation operation) {
+	public void loadFixture(String pathXMLFile, String schema, DatabaseOperation operation) {
+		if (!Boolean.TRUE.equals(rollbackIsolation)) {
+			if (Boolean.TRUE.equals(dirtyTracking)) {
+				resetTables(pathXMLFile, schema, operation);
+			} else {
+				execFlatXmlDataSetFromFile(pathXMLFile, schema, operation);
+			}
+			return;
+		}
+
 		try {
-			execReplacementDataSet(getDataSetFromString(strXML), replacements, schema, operation);
-		} catch (DataSetException ex) {
-			failWithException(ex);
+			TransactionalDataSource transactionalDataSource = TransactionalDataSource.of(dataSource);
+			File file = new File(pathXMLFile);
+			String key = file.getCanonicalPath() + "@" + file.lastModified() + "/" + operation;
+			String fixtureSchema = Boolean.TRUE.equals(parallel) ? Workers.getSchema(schema) : schema;
+			if (key.equals(transactionalDataSource.getFixture(fixtureSchema))) {
+				return;
+			}
+
+			ConnectionCache fixtureConnections = new ConnectionCache(transactionalDataSource.getTargetDataSource(),
+					false);
+			fixtureConnections.setSwitchSchema(Boolean.TRUE.equals(parallel));
+			try {
+				transactionalDataSource.setFixture(fixtureSchema, null);
+				IDatabaseConnection connection = fixtureConnections
+						.getConnection(prepareSchema(fixtureConnections, schema), dataTypeFactory);
+				operation.execute(connection, toWorkerDataSet(getCachedDataSet(pathXMLFile), schema));
+				transactionalDataSource.setFixture(fixtureSchema, key);
+			} finally {
+				fixtureConnections.close();
+			}
+		} catch (Exception e) {
+			failWithException(e);
 		}
 	}
 
 	/**
-	 * Launching replacement dataset from XML file.
+	 * Launching a dataset on the tables written since its previous launch
+	 * (dirty tracking mode).
+	 * 
+	 * The written tables are reloaded with the tables which reference them
+	 * (directly or not); the whole dataset is launched the first time, when the
+	 * file has changed or when unknown tables have been written. The dataset is
+	 * launched on connections of the target DataSource so that its own writes
+	 * aren't recorded.
 	 * 
 	 * @param pathXMLFile
-	 * @param replacements
 	 * @param schema
+	 * @param operation
 	 */
-	public void execReplacementDataSetFromFile(String pathXMLFile, Replacements replacements, String schema) {
-		execReplacementDataSetFromFile(pathXMLFile, replacements, schema, DEFAULT_OPERATION);
+	private void resetTables(String pathXMLFile, String schema, DatabaseOperation operation) {
+		try {
+			DirtyTrackingDataSource trackingDataSource = DirtyTrackingDataSource.of(dataSource);
+			File file = new File(pathXMLFile);
+			String key = file.getCanonicalPath() + "@" + file.lastModified() + "/" + operation;
+			String fixtureSchema = Boolean.TRUE.equals(parallel) ? Workers.getSchema(schema) : schema;
+			long sequence = trackingDataSource.getSequence();
+			Set<String> writtenTables = trackingDataSource.getWrittenTables(fixtureSchema, key);
+			if (null != writtenTables && writtenTables.isEmpty()) {
+				return;
+			}
+
+			IDataSet dataSet = toWorkerDataSet(getCachedDataSet(pathXMLFile), schema);
+			if (null != writtenTables) {
+				String[] tableNames = getTableDependencyGraph(schema).getDependentsClosure(dataSet.getTableNames(),
+						writtenTables);
+				dataSet = new FilteredDataSet(tableNames, dataSet);
+			}
+
+			ConnectionCache resetConnections = new ConnectionCache(trackingDataSource.getTargetDataSource(), false);
+			resetConnections.setSwitchSchema(Boolean.TRUE.equals(parallel));
+			try {
+				trackingDataSource.setFixture(fixtureSchema, null, sequence);
+				IDatabaseConnection connection = resetConnections
+						.getConnection(prepareSchema(resetConnections, schema), dataTypeFactory);
+				long start = METRICS.start();
+				operation.execute(connection, dataSet);
+				METRICS.record(Phase.LOAD, start, 0, 0,
+						pathXMLFile + " (" + dataSet.getTableNames().length + " tables)");
+				trackingDataSource.setFixture(fixtureSchema, key, sequence);
+			} finally {
+				resetConnections.close();
+			}
+		} catch (Exception e) {
+			failWithException(e);
+		}
 	}
 
 	/**
-	 * Launching replacement dataset from XML file.
+	 * Restoring a named snapshot of datasets.
 	 * 
-	 * @param pathXMLFile
-	 * @param replacements
+	 * On the first call (or when one of the files has changed since the
+	 * snapshot was taken), the datasets are loaded with CLEAN_INSERT in the
+	 * foreign keys order then captured; the next calls, from any test class of
+	 * the JVM, only restore the captured tables. In rollback isolation mode,
+	 * the snapshot is loaded and captured outside of the test transaction (like
+	 * loadFixture), so that it isn't rolled back with the test.
+	 * 
+	 * @param name
 	 * @param schema
-	 * @param operation
+	 * @param pathXMLFiles
 	 */
-	public void execReplacementDataSetFromFile(String pathXMLFile, Replacements replacements, String schema,
-			DatabaseOperation operation) {
+	public void restoreSnapshot(String name, String schema, String... pathXMLFiles) {
 		try {
-			execReplacementDataSet(getDataSet(pathXMLFile), replacements, schema, operation);
-		} catch (DataSetException | IOException e) {
+			IDatabaseConnection connection = getConnection(schema);
+			long start = METRICS.start();
+			String hash = SnapshotRegistry.fingerprint(pathXMLFiles);
+
+			String snapshotName = Boolean.TRUE.equals(parallel) ? name + "_w" + Workers.getWorkerId() : name;
+			DatabaseSnapshot snapshot = SnapshotRegistry.get(dataSource, connection.getSchema(), snapshotName);
+			if (null != snapshot && hash.equals(snapshot.getHash())) {
+				snapshot.restore(connection);
+				METRICS.record(Phase.SNAPSHOT, start, 0, 0, "restore " + snapshotName);
+				return;
+			}
+
+			if (!Boolean.TRUE.equals(rollbackIsolation)) {
+				buildSnapshot(connection, schema, snapshotName, hash, pathXMLFiles);
+				METRICS.record(Phase.SNAPSHOT, start, 0, 0, "capture " + snapshotName);
+				return;
+			}
+
+			TransactionalDataSource transactionalDataSource = TransactionalDataSource.of(dataSource);
+			ConnectionCache snapshotConnections = new ConnectionCache(transactionalDataSource.getTargetDataSource(),
+					false);
+			snapshotConnections.setSwitchSchema(Boolean.TRUE.equals(parallel));
+			try {
+				// the committed content of the tables changes
+				transactionalDataSource.setFixture(Boolean.TRUE.equals(parallel) ? Workers.getSchema(schema) : schema,
+						null);
+				buildSnapshot(snapshotConnections.getConnection(prepareSchema(snapshotConnections, schema),
+						dataTypeFactory), schema, snapshotName, hash, pathXMLFiles);
+			} finally {
+				snapshotConnections.close();
+			}
+			METRICS.record(Phase.SNAPSHOT, start, 0, 0, "capture " + snapshotName);
+		} catch (Exception e) {
 			failWithException(e);
 		}
 	}
 
 	/**
-	 * Getting dataset from tables.
+	 * Loading the datasets of a snapshot then capturing and registering it (the
+	 * outdated snapshot of the same name being dropped).
 	 * 
-	 * @param tables
-	 * @param nameOfXml
+	 * @param connection
 	 * @param schema
+	 * @param snapshotName
+	 * @param hash
+	 * @param pathXMLFiles
+	 * @throws Exception
 	 */
-	public void getDataSetFromTables(List<String> tables, String nameOfXml, String schema) {
-		Map<String, String> queryByTables = new HashMap<String, String>();
-		for (String tableName : tables) {
-			queryByTables.put(tableName, null);
+	private void buildSnapshot(IDatabaseConnection connection, String schema, String snapshotName, String hash,
+			String... pathXMLFiles) throws Exception {
+		DatabaseSnapshot outdated = SnapshotRegistry.remove(dataSource, connection.getSchema(), snapshotName);
+		if (null != outdated) {
+			outdated.drop(connection);
 		}
-		generateDataSet(queryByTables, nameOfXml, schema);
+
+		IDataSet[] dataSets = new IDataSet[pathXMLFiles.length];
+		for (int i = 0; i < pathXMLFiles.length; i++) {
+			dataSets[i] = getCachedDataSet(pathXMLFiles[i]);
+		}
+		IDataSet dataSet = toWorkerDataSet(new CompositeDataSet(dataSets), schema);
+		String[] orderedTables = getTableDependencyGraph(schema).sort(dataSet.getTableNames());
+		dataSet = new FilteredDataSet(new SequenceTableFilter(orderedTables), dataSet);
+
+		DatabaseOperation.CLEAN_INSERT.execute(connection, dataSet);
+		SnapshotRegistry.put(dataSource, connection.getSchema(),
+				captureSnapshot(connection, snapshotName, hash, dataSet));
 	}
 
 	/**
-	 * Getting dataset from a single table.
+	 * Capturing the current content of the tables of a dataset.
 	 * 
-	 * @param tableName
-	 * @param nameOfXml
-	 * @param schema
+	 * @param connection
+	 * @param name
+	 * @param hash
+	 * @param dataSet
+	 * @return DatabaseSnapshot
+	 * @throws Exception
 	 */
-	public void getDataSetFromTable(String tableName, String nameOfXml, String schema) {
-		Map<String, String> queryByTables = new HashMap<String, String>();
-		queryByTables.put(tableName, null);
-		generateDataSet(queryByTables, nameOfXml, schema);
+	private DatabaseSnapshot captureSnapshot(IDatabaseConnection connection, String name, String hash,
+			IDataSet dataSet) throws Exception {
+		if (SnapshotStrategy.SCHEMA_COPY == snapshotStrategy) {
+			try {
+				return SchemaCopySnapshot.capture(connection, name, hash, dataSet.getTableNames(),
+						dataTypeFactory instanceof PostgresqlDataTypeFactory);
+			} catch (SQLException e) {
+				LOGGER.warn("Can't copy the tables of the snapshot " + name + ", keeping it in memory", e);
+			}
+		}
+
+		return new MemorySnapshot(name, hash, new CachedDataSet(dataSet));
 	}
 
 	/**
-	 * Generating dataset from SQL queries.
+	 * Dropping a snapshot (and its snapshot schema), outside of the test
+	 * transaction in rollback isolation mode.
 	 * 
-	 * @param queryByTables
-	 * @param nameOfXml
+	 * @param name
 	 * @param schema
-	 * @return IDataSet
 	 */
-	public IDataSet generateDataSet(Map<String, String> queryByTables, String nameOfXml, String schema) {
-		QueryDataSet dataSet = null;
-
+	public void dropSnapshot(String name, String schema) {
 		try {
-			dataSet = new QueryDataSet(getConnection(schema));
-			for (Map.Entry<String, String> entry : queryByTables.entrySet()) {
-				if (StringUtils.isBlank(entry.getValue())) {
-					dataSet.addTable(entry.getKey());
-				} else {
-					dataSet.addTable(entry.getKey(), entry.getValue());
-				}
+			IDatabaseConnection connection = getConnection(schema);
+			String snapshotName = Boolean.TRUE.equals(parallel) ? name + "_w" + Workers.getWorkerId() : name;
+			DatabaseSnapshot snapshot = SnapshotRegistry.remove(dataSource, connection.getSchema(), snapshotName);
+			if (null == snapshot) {
+				return;
 			}
 
-			File dstXmlFile = new File(getTestDataDir() + nameOfXml);
-			File dstDirectory = dstXmlFile.getParentFile();
-
-			if (!dstDirectory.isDirectory()) {
-				if (dstDirectory.exists()) {
-					fail("Le répertoire n'existe pas et ne peut être créé");
-				} else {
-					dstDirectory.mkdirs();
-				}
+			if (!Boolean.TRUE.equals(rollbackIsolation)) {
+				snapshot.drop(connection);
+				return;
 			}
 
-			OutputStream out = new FileOutputStream(dstXmlFile);
-			FlatXmlDataSet.write(dataSet, out);
-			out.close();
+			// outside of the test transaction, which would roll back the drop
+			ConnectionCache snapshotConnections = new ConnectionCache(
+					TransactionalDataSource.of(dataSource).getTargetDataSource(), false);
+			snapshotConnections.setSwitchSchema(Boolean.TRUE.equals(parallel));
+			try {
+				snapshot.drop(snapshotConnections.getConnection(prepareSchema(snapshotConnections, schema),
+						dataTypeFactory));
+			} finally {
+				snapshotConnections.close();
+			}
 		} catch (Exception e) {
 			failWithException(e);
 		}
-
-		return dataSet;
 	}
 
 	/**
-	 * Generating dataset from SQL queries.
+	 * Purging the tables of the PURGE_DS dataset.
+	 * 
+	 * With the PostgreSQL data type factory, the tables are emptied by a single
+	 * TRUNCATE ... CASCADE instead of DELETE_ALL. In dirty tracking mode, only
+	 * the tables written since the previous purge are purged.
 	 * 
-	 * @param queryByTables
-	 * @param nameOfXml
-	 * @param nameOfDtd
 	 * @param schema
-	 * @return IDataSet
 	 */
-	public IDataSet generateDataSet(Map<String, String> queryByTables, String nameOfXml, String nameOfDtd,
-			String schema) {
-		IDataSet dataSet = generateDataSet(queryByTables, nameOfXml, schema);
+	public void purge(String schema) {
+		DatabaseOperation operation = dataTypeFactory instanceof PostgresqlDataTypeFactory
+				? PostgresqlOperation.TRUNCATE : DatabaseOperation.DELETE_ALL;
+		if (Boolean.TRUE.equals(dirtyTracking) && !Boolean.TRUE.equals(rollbackIsolation)) {
+			resetTables(PURGE_DS, schema, operation);
+			return;
+		}
+		execFlatXmlDataSetFromFile(PURGE_DS, schema, operation);
+	}
+
+	/**
+	 * Launching replacement dataset from XML string.
+	 * 
+	 * @param strXML
+	 * @param replacements
+	 * @param schema
+	 */
+	public void execReplacementDataSetFromString(String strXML, Replacements replacements, String schema) {
+		execReplacementDataSetFromString(strXML, replacements, schema, DEFAULT_OPERATION);
+	}
 
+	/**
+	 * Launching replacement dataset from XML string.
+	 * 
+	 * @param strXML
+	 * @param replacements
+	 * @param schema
+	 * @param operation
+	 */
+	public void execReplacementDataSetFromString(String strXML, Replacements replacements, String schema,
+			DatabaseOperation operation) {
 		try {
-			Writer out = new OutputStreamWriter(new FileOutputStream(getTestDataDir() + nameOfDtd));
-			FlatDtdWriter writer = new FlatDtdWriter(out);
-			writer.write(dataSet);
-		} catch (IOException | DataSetException ex) {
+			execReplacementDataSet(getDataSetFromString(strXML), STRING_SOURCE, replacements, schema, operation);
+		} catch (DataSetException ex) {
 			failWithException(ex);
 		}
+	}
 
-		return dataSet;
+	/**
+	 * Launching replacement dataset from XML file.
+	 * 
+	 * @param pathXMLFile
+	 * @param replacements
+	 * @param schema
+	 */
+	public void execReplacementDataSetFromFile(String pathXMLFile, Replacements replacements, String schema) {
+		execReplacementDataSetFromFile(pathXMLFile, replacements, schema, DEFAULT_OPERATION);
 	}
 
 	/**
-	 * Getting tmp dataset name.
+	 * Launching replacement dataset from XML file.
 	 * 
-	 * @param tables
-	 * @return String
+	 * @param pathXMLFile
+	 * @param replacements
+	 * @param schema
+	 * @param operation
 	 */
-	private String getNameTmpDataSet(List<String> tables) {
-		String tmpNameDataSet = "tmp_" + getClass().getSimpleName() + "_";
-		for (String tableName : tables) {
-			tmpNameDataSet += tableName + "_";
+	public void execReplacementDataSetFromFile(String pathXMLFile, Replacements replacements, String schema,
+			DatabaseOperation operation) {
+		try {
+			execReplacementDataSet(getCachedDataSet(pathXMLFile), pathXMLFile, replacements, schema, operation);
+		} catch (DataSetException | IOException e) {
+			failWithException(e);
 		}
-		tmpNameDataSet += "dataset.xml";
-		return tmpNameDataSet;
 	}
 
 	/**
-	 * Getting nb occurs from Xpath query.
+	 * Launching CSV dataset (the rows are streamed from the files).
 	 * 
-	 * @param nameOfXML
-	 * @param strXpath
-	 * @return Integer
-	 * @throws Exception
+	 * @param files
+	 * @param source
+	 *            file or directory
+	 * @param sort
+	 *            true to load the tables in the foreign keys order
+	 * @param replacements
+	 *            null if there is no replacement
+	 * @param schema
+	 * @param operation
 	 */
-	private Integer getNbOccurrenceFromXpath(String nameOfXML, String strXpath) {
+	private void execCsvDataSet(List<File> files, String source, boolean sort, Replacements replacements, String schema,
+			DatabaseOperation operation) {
 		try {
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			Document doc = builder.parse(getTestDataDir() + nameOfXML);
-			XPathFactory xpathfactory = XPathFactory.newInstance();
-			XPath xpath = xpathfactory.newXPath();
-			XPathExpression expr = xpath.compile(strXpath);
-			Object result = expr.evaluate(doc, XPathConstants.NODESET);
-			NodeList nodes = (NodeList) result;
-			return nodes.getLength();
+			List<File> orderedFiles = sort ? sortCsvFiles(files, schema) : files;
+
+			try (CsvDataSet csvDataSet = new CsvDataSet(orderedFiles, schema)) {
+				IDataSet dataSet = csvDataSet;
+				if (DatabaseOperation.DELETE == operation) {
+					// DELETE reads the rows backward
+					dataSet = new CachedDataSet(dataSet);
+				}
+				if (null != replacements) {
+					dataSet = new CompiledReplacementDataSet(dataSet, replacements.compile());
+				}
+				execute(dataSet, source, schema, operation);
+			}
 		} catch (Exception e) {
 			failWithException(e);
-			return null;
 		}
 	}
 
 	/**
-	 * Assert nb occurence of rows in a database.
+	 * Sorting CSV files in the foreign keys order of their tables.
 	 * 
+	 * @param files
 	 * @param schema
-	 * @param tables
-	 * @param lstLinesExpected
-	 * @param Integer
-	 *            nbOccurence
+	 * @return List<File>
+	 * @throws Exception
 	 */
-	public void assertOccrurrenceDataSet(String schema, List<String> tables, List<ExpectedLineDataSet> lstLinesExpected,
-			Integer nbOccurence) {
-		String nameOfXML = getNameTmpDataSet(tables);
-		getDataSetFromTables(tables, nameOfXML, schema);
-		for (ExpectedLineDataSet line : lstLinesExpected) {
-			assertEquals("Problème avec le nombre d'occurrence de " + line.buildXpath(), nbOccurence,
-					getNbOccurrenceFromXpath(nameOfXML, line.buildXpath()));
+	private List<File> sortCsvFiles(List<File> files, String schema) throws Exception {
+		Map<String, File> filesByTable = new LinkedHashMap<>();
+		for (File file : files) {
+			filesByTable.put(CsvDataSet.getTableName(file, schema).toUpperCase(), file);
 		}
 
-		if (null == disableDeleteTmpDataSet || !disableDeleteTmpDataSet) {
-			deleteFileQuietly(getAbsolutePath(getTestDataDir() + nameOfXML));
+		List<File> sorted = new ArrayList<>(files.size());
+		for (String tableName : getTableDependencyGraph(schema).sort(filesByTable.keySet().toArray(new String[0]))) {
+			sorted.add(filesByTable.get(tableName.toUpperCase()));
 		}
+		return sorted;
 	}
 
 	/**
-	 * Assert that a dataset contains expected of row(s) in a database.
+	 * Launching CSV dataset from a file (one table).
 	 * 
+	 * @param pathCsvFile
 	 * @param schema
-	 * @param tables
-	 * @param lstLinesExpected
 	 */
-	public void assertContainDataSet(String schema, List<String> tables, List<ExpectedLineDataSet> lstLinesExpected) {
-		assertOccrurrenceDataSet(schema, tables, lstLinesExpected, 1);
+	public void execCsvDataSetFromFile(String pathCsvFile, String schema) {
+		execCsvDataSetFromFile(pathCsvFile, null, schema, DEFAULT_OPERATION);
 	}
 
 	/**
-	 * Assert that a dataset contains expected of a row in a database.
+	 * Launching CSV dataset from a file (one table).
 	 * 
+	 * @param pathCsvFile
 	 * @param schema
-	 * @param tables
-	 * @param lineExpected
+	 * @param operation
 	 */
-	public void assertContainDataSet(String schema, List<String> tables, ExpectedLineDataSet lineExpected) {
-		List<ExpectedLineDataSet> lstLines = new ArrayList<ExpectedLineDataSet>();
-		lstLines.add(lineExpected);
+	public void execCsvDataSetFromFile(String pathCsvFile, String schema, DatabaseOperation operation) {
+		execCsvDataSetFromFile(pathCsvFile, null, schema, operation);
+	}
 
-		assertContainDataSet(schema, tables, lstLines);
+	/**
+	 * Launching CSV dataset from a file (one table) with replacements.
+	 * 
+	 * @param pathCsvFile
+	 * @param replacements
+	 * @param schema
+	 */
+	public void execCsvDataSetFromFile(String pathCsvFile, Replacements replacements, String schema) {
+		execCsvDataSetFromFile(pathCsvFile, replacements, schema, DEFAULT_OPERATION);
 	}
 
 	/**
-	 * Assert that a dataset contains expected of a row in a database.
+	 * Launching CSV dataset from a file (one table) with replacements.
 	 * 
+	 * @param pathCsvFile
+	 * @param replacements
 	 * @param schema
-	 * @param tableName
-	 * @param lineExpected
+	 * @param operation
 	 */
-	public void assertContainDataSet(String schema, String tableName, ExpectedLineDataSet lineExpected) {
-		List<String> tables = new ArrayList<String>();
-		tables.add(tableName);
+	public void execCsvDataSetFromFile(String pathCsvFile, Replacements replacements, String schema,
+			DatabaseOperation operation) {
+		execCsvDataSet(Collections.singletonList(new File(pathCsvFile)), pathCsvFile, false, replacements, schema,
+				operation);
+	}
 
-		List<ExpectedLineDataSet> lstLines = new ArrayList<ExpectedLineDataSet>();
-		lstLines.add(lineExpected);
+	/**
+	 * Launching CSV dataset from a directory (one table per CSV file).
+	 * 
+	 * The tables are loaded in the order of the table-ordering.txt file of the
+	 * directory if it exists, in the foreign keys order otherwise.
+	 * 
+	 * @param pathDirectory
+	 * @param schema
+	 */
+	public void execCsvDataSetFromDirectory(String pathDirectory, String schema) {
+		execCsvDataSetFromDirectory(pathDirectory, null, schema, DEFAULT_OPERATION);
+	}
 
-		assertContainDataSet(schema, tables, lstLines);
+	/**
+	 * Launching CSV dataset from a directory (one table per CSV file).
+	 * 
+	 * @param pathDirectory
+	 * @param schema
+	 * @param operation
+	 */
+	public void execCsvDataSetFromDirectory(String pathDirectory, String schema, DatabaseOperation operation) {
+		execCsvDataSetFromDirectory(pathDirectory, null, schema, operation);
 	}
 
 	/**
-	 * Assert that a dataset doesn't contain unexpected of row(s) in a database.
+	 * Launching CSV dataset from a directory (one table per CSV file) with
+	 * replacements.
 	 * 
+	 * @param pathDirectory
+	 * @param replacements
 	 * @param schema
-	 * @param tables
-	 * @param lstLinesExpected
 	 */
-	public void assertNotContainDataSet(String schema, List<String> tables,
-			List<ExpectedLineDataSet> lstLinesExpected) {
-		assertOccrurrenceDataSet(schema, tables, lstLinesExpected, 0);
+	public void execCsvDataSetFromDirectory(String pathDirectory, Replacements replacements, String schema) {
+		execCsvDataSetFromDirectory(pathDirectory, replacements, schema, DEFAULT_OPERATION);
 	}
 
 	/**
-	 * Assert that a dataset doesn't contain unexpected of a row in a database.
+	 * Launching CSV dataset from a directory (one table per CSV file) with
+	 * replacements.
 	 * 
+	 * @param pathDirectory
+	 * @param replacements
 	 * @param schema
+	 * @param operation
+	 */
+	public void execCsvDataSetFromDirectory(String pathDirectory, Replacements replacements, String schema,
+			DatabaseOperation operation) {
+		try {
+			File directory = new File(pathDirectory);
+			boolean ordered = new File(directory, CsvDataSet.TABLE_ORDERING_FILE).isFile();
+			execCsvDataSet(CsvDataSet.listFiles(directory), pathDirectory, !ordered, replacements, schema, operation);
+		} catch (IOException e) {
+			failWithException(e);
+		}
+	}
+
+	/**
+	 * Getting dataset from tables.
+	 * 
 	 * @param tables
-	 * @param lineExpected
+	 * @param nameOfXml
+	 * @param schema
 	 */
-	public void assertNotContainDataSet(String schema, List<String> tables, ExpectedLineDataSet lineExpected) {
-		List<ExpectedLineDataSet> lstLines = new ArrayList<ExpectedLineDataSet>();
-		lstLines.add(lineExpected);
+	public void getDataSetFromTables(List<String> tables, String nameOfXml, String schema) {
+		Map<String, String> queryByTables = new HashMap<String, String>();
+		for (String tableName : tables) {
+			queryByTables.put(tableName, null);
+		}
+		generateDataSet(queryByTables, nameOfXml, schema);
+	}
 
-		assertNotContainDataSet(schema, tables, lstLines);
+	/**
+	 * Getting dataset from a single table.
+	 * 
+	 * @param tableName
+	 * @param nameOfXml
+	 * @param schema
+	 */
+	public void getDataSetFromTable(String tableName, String nameOfXml, String schema) {
+		Map<String, String> queryByTables = new HashMap<String, String>();
+		queryByTables.put(tableName, null);
+		generateDataSet(queryByTables, nameOfXml, schema);
 	}
 
 	/**
-	 * Assert that a dataset doesn't contain unexpected of a row in a database.
+	 * Generating dataset from SQL queries.
 	 * 
+	 * In streaming export mode the rows are written while they are fetched and
+	 * the returned QueryDataSet is not loaded. The file is gzipped if nameOfXml
+	 * ends with ".gz".
+	 * 
+	 * @param queryByTables
+	 * @param nameOfXml
 	 * @param schema
-	 * @param tableName
-	 * @param lineExpected
+	 * @return IDataSet
 	 */
-	public void assertNotContainDataSet(String schema, String tableName, ExpectedLineDataSet lineExpected) {
-		List<String> tables = new ArrayList<String>();
-		tables.add(tableName);
+	public IDataSet generateDataSet(Map<String, String> queryByTables, String nameOfXml, String schema) {
+		return generateDataSet(queryByTables, new File(getTestDataDir() + nameOfXml), schema);
+	}
 
-		List<ExpectedLineDataSet> lstLines = new ArrayList<ExpectedLineDataSet>();
-		lstLines.add(lineExpected);
+	/**
+	 * Generating dataset from SQL queries into a file.
+	 * 
+	 * @param queryByTables
+	 * @param dstXmlFile
+	 * @param schema
+	 * @return IDataSet
+	 */
+	private IDataSet generateDataSet(Map<String, String> queryByTables, File dstXmlFile, String schema) {
+		QueryDataSet dataSet = null;
 
-		assertNotContainDataSet(schema, tables, lstLines);
+		try {
+			long start = METRICS.start();
+			long rows = 0;
+			queryByTables = toWorkerQueries(queryByTables, schema);
+			dataSet = new QueryDataSet(getConnection(schema));
+			for (Map.Entry<String, String> entry : queryByTables.entrySet()) {
+				if (StringUtils.isBlank(entry.getValue())) {
+					dataSet.addTable(entry.getKey());
+				} else {
+					dataSet.addTable(entry.getKey(), entry.getValue());
+				}
+			}
+
+			File dstDirectory = dstXmlFile.getParentFile();
+
+			if (!dstDirectory.isDirectory()) {
+				if (dstDirectory.exists()) {
+					fail("Le répertoire n'existe pas et ne peut être créé");
+				} else {
+					dstDirectory.mkdirs();
+				}
+			}
+
+			if (Boolean.TRUE.equals(streamingExport)) {
+				StreamingDataSetExporter exporter = new StreamingDataSetExporter(getConnection(schema));
+				exporter.setFetchSize(exportFetchSize);
+				rows = exporter.export(queryByTables, dstXmlFile);
+			} else {
+				try (OutputStream out = StreamingDataSetExporter.open(dstXmlFile)) {
+					FlatXmlDataSet.write(dataSet, out);
+				}
+			}
+			METRICS.record(Phase.EXPORT, start, rows, dstXmlFile.length(), dstXmlFile.getPath());
+		} catch (Exception e) {
+			failWithException(e);
+		}
+
+		return dataSet;
 	}
 
 	/**
-	 * @return the disableDeleteTmpDataSet
+	 * Reading the whole tables of the base schema from the schema of the
+	 * current worker (parallel mode); the tables keep their names in the
+	 * dataset.
+	 * 
+	 * @param queryByTables
+	 * @param schema
+	 * @return Map<String, String>
 	 */
-	public Boolean getDisableDeleteTmpDataSet() {
-		return disableDeleteTmpDataSet;
+	private Map<String, String> toWorkerQueries(Map<String, String> queryByTables, String schema) {
+		if (!Boolean.TRUE.equals(parallel)) {
+			return queryByTables;
+		}
+
+		String workerSchema = Workers.getSchema(schema);
+		Map<String, String> workerQueries = new LinkedHashMap<String, String>();
+		for (Map.Entry<String, String> entry : queryByTables.entrySet()) {
+			String query = entry.getValue();
+			if (StringUtils.isBlank(query)) {
+				query = "SELECT * FROM " + SchemaMappingDataSet.map(entry.getKey(), schema, workerSchema);
+			}
+			workerQueries.put(entry.getKey(), query);
+		}
+		return workerQueries;
 	}
 
 	/**
-	 * @param disableDeleteTmpDataSet
-	 *            the disableDeleteTmpDataSet to set
+	 * Generating dataset from SQL queries, with its DTD (written from the
+	 * metadata of the queries).
+	 * 
+	 * @param queryByTables
+	 * @param nameOfXml
+	 * @param nameOfDtd
+	 * @param schema
+	 * @return IDataSet
 	 */
-	public void setDisableDeleteTmpDataSet(Boolean disableDeleteTmpDataSet) {
-		this.disableDeleteTmpDataSet = disableDeleteTmpDataSet;
+	public IDataSet generateDataSet(Map<String, String> queryByTables, String nameOfXml, String nameOfDtd,
+			String schema) {
+		IDataSet dataSet = generateDataSet(queryByTables, nameOfXml, schema);
+
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(getTestDataDir() + nameOfDtd))) {
+			// written from the columns of the queries: the tables aren't read again
+			StreamingDataSetExporter exporter = new StreamingDataSetExporter(getConnection(schema));
+			FlatDtdWriter writer = new FlatDtdWriter(out);
+			writer.write(exporter.getMetaDataSet(toWorkerQueries(queryByTables, schema)));
+		} catch (Exception ex) {
+			failWithException(ex);
+		}
+
+		return dataSet;
+	}
+
+	/**
+	 * Getting tmp dataset name.
+	 * 
+	 * @param tables
+	 * @return String
+	 */
+	private String getNameTmpDataSet(List<String> tables) {
+		String tmpNameDataSet = "tmp_" + getClass().getSimpleName() + "_";
+		for (String tableName : tables) {
+			tmpNameDataSet += tableName + "_";
+		}
+		tmpNameDataSet += "dataset.xml";
+		return tmpNameDataSet;
+	}
+
+	/**
+	 * Getting the directory of the tmp datasets: the test data dir, or in
+	 * parallel mode a temporary directory of the current worker.
+	 * 
+	 * @return String
+	 */
+	private String getTmpDataSetDir() {
+		return Boolean.TRUE.equals(parallel) ? Workers.getTmpDir() : getTestDataDir();
+	}
+
+	/**
+	 * Getting nb occurs from Xpath query.
+	 * 
+	 * @param pathXML
+	 * @param strXpath
+	 * @return Integer
+	 * @throws Exception
+	 */
+	private Integer getNbOccurrenceFromXpath(String pathXML, String strXpath) {
+		try {
+			long start = METRICS.start();
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			DocumentBuilder builder = factory.newDocumentBuilder();
+			Document doc = builder.parse(pathXML);
+			XPathFactory xpathfactory = XPathFactory.newInstance();
+			XPath xpath = xpathfactory.newXPath();
+			XPathExpression expr = xpath.compile(strXpath);
+			Object result = expr.evaluate(doc, XPathConstants.NODESET);
+			NodeList nodes = (NodeList) result;
+			METRICS.record(Phase.XPATH, start, 1, new File(pathXML).length(), strXpath);
+			return nodes.getLength();
+		} catch (Exception e) {
+			failWithException(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Assert nb occurence of rows in a database.
+	 * 
+	 * @param schema
+	 * @param tables
+	 * @param lstLinesExpected
+	 * @param Integer
+	 *            nbOccurence
+	 */
+	public void assertOccrurrenceDataSet(String schema, List<String> tables, List<ExpectedLineDataSet> lstLinesExpected,
+			Integer nbOccurence) {
+		if (AssertionMode.XPATH == assertionMode) {
+			assertOccrurrenceDataSetFromXpath(schema, tables, lstLinesExpected, nbOccurence);
+			return;
+		}
+
+		try {
+			IDatabaseConnection connection = getConnection(schema);
+			long start = METRICS.start();
+			SqlOccurrenceCounter counter = new SqlOccurrenceCounter(connection);
+			ExpectedLinesMatcher matcher = new ExpectedLinesMatcher(connection);
+
+			for (Map.Entry<String, List<ExpectedLineDataSet>> entry : groupByTable(lstLinesExpected).entrySet()) {
+				List<ExpectedLineDataSet> lines = entry.getValue();
+
+				if (null != streamingMatchThreshold && lines.size() >= streamingMatchThreshold) {
+					int[] counts = matcher.count(entry.getKey(), lines);
+					for (int i = 0; i < counts.length; i++) {
+						assertEquals("Problème avec le nombre d'occurrence de " + lines.get(i).buildXpath(), nbOccurence,
+								Integer.valueOf(counts[i]));
+					}
+				} else {
+					for (ExpectedLineDataSet line : lines) {
+						assertEquals("Problème avec le nombre d'occurrence de " + line.buildXpath(), nbOccurence,
+								Integer.valueOf(counter.count(line)));
+					}
+				}
+			}
+			METRICS.record(Phase.QUERY, start, lstLinesExpected.size(), 0, String.valueOf(tables));
+		} catch (Exception e) {
+			failWithException(e);
+		}
+	}
+
+	/**
+	 * Grouping expected lines by table (keeping the order).
+	 * 
+	 * @param lstLinesExpected
+	 * @return Map<String, List<ExpectedLineDataSet>>
+	 */
+	private Map<String, List<ExpectedLineDataSet>> groupByTable(List<ExpectedLineDataSet> lstLinesExpected) {
+		Map<String, List<ExpectedLineDataSet>> linesByTable = new LinkedHashMap<String, List<ExpectedLineDataSet>>();
+		for (ExpectedLineDataSet line : lstLinesExpected) {
+			List<ExpectedLineDataSet> lines = linesByTable.get(line.getTableName());
+			if (null == lines) {
+				lines = new ArrayList<ExpectedLineDataSet>();
+				linesByTable.put(line.getTableName(), lines);
+			}
+			lines.add(line);
+		}
+		return linesByTable;
+	}
+
+	/**
+	 * Assert nb occurence of rows in a database by dumping the tables into a
+	 * temporary flat XML dataset (XPATH assertion mode).
+	 * 
+	 * @param schema
+	 * @param tables
+	 * @param lstLinesExpected
+	 * @param Integer
+	 *            nbOccurence
+	 */
+	private void assertOccrurrenceDataSetFromXpath(String schema, List<String> tables,
+			List<ExpectedLineDataSet> lstLinesExpected, Integer nbOccurence) {
+		String pathXML = getTmpDataSetDir() + getNameTmpDataSet(tables);
+		Map<String, String> queryByTables = new LinkedHashMap<String, String>();
+		for (String tableName : tables) {
+			queryByTables.put(tableName, null);
+		}
+		generateDataSet(queryByTables, new File(pathXML), schema);
+
+		for (ExpectedLineDataSet line : lstLinesExpected) {
+			assertEquals("Problème avec le nombre d'occurrence de " + line.buildXpath(), nbOccurence,
+					getNbOccurrenceFromXpath(pathXML, line.buildXpath()));
+		}
+
+		if (null == disableDeleteTmpDataSet || !disableDeleteTmpDataSet) {
+			deleteFileQuietly(getAbsolutePath(pathXML));
+		}
+	}
+
+	/**
+	 * Assert that a dataset contains expected of row(s) in a database.
+	 * 
+	 * @param schema
+	 * @param tables
+	 * @param lstLinesExpected
+	 */
+	public void assertContainDataSet(String schema, List<String> tables, List<ExpectedLineDataSet> lstLinesExpected) {
+		assertOccrurrenceDataSet(schema, tables, lstLinesExpected, 1);
+	}
+
+	/**
+	 * Assert that a dataset contains expected of a row in a database.
+	 * 
+	 * @param schema
+	 * @param tables
+	 * @param lineExpected
+	 */
+	public void assertContainDataSet(String schema, List<String> tables, ExpectedLineDataSet lineExpected) {
+		List<ExpectedLineDataSet> lstLines = new ArrayList<ExpectedLineDataSet>();
+		lstLines.add(lineExpected);
+
+		assertContainDataSet(schema, tables, lstLines);
+	}
+
+	/**
+	 * Assert that a dataset contains expected of a row in a database.
+	 * 
+	 * @param schema
+	 * @param tableName
+	 * @param lineExpected
+	 */
+	public void assertContainDataSet(String schema, String tableName, ExpectedLineDataSet lineExpected) {
+		List<String> tables = new ArrayList<String>();
+		tables.add(tableName);
+
+		List<ExpectedLineDataSet> lstLines = new ArrayList<ExpectedLineDataSet>();
+		lstLines.add(lineExpected);
+
+		assertContainDataSet(schema, tables, lstLines);
+	}
+
+	/**
+	 * Assert that a dataset doesn't contain unexpected of row(s) in a database.
+	 * 
+	 * @param schema
+	 * @param tables
+	 * @param lstLinesExpected
+	 */
+	public void assertNotContainDataSet(String schema, List<String> tables,
+			List<ExpectedLineDataSet> lstLinesExpected) {
+		assertOccrurrenceDataSet(schema, tables, lstLinesExpected, 0);
+	}
+
+	/**
+	 * Assert that a dataset doesn't contain unexpected of a row in a database.
+	 * 
+	 * @param schema
+	 * @param tables
+	 * @param lineExpected
+	 */
+	public void assertNotContainDataSet(String schema, List<String> tables, ExpectedLineDataSet lineExpected) {
+		List<ExpectedLineDataSet> lstLines = new ArrayList<ExpectedLineDataSet>();
+		lstLines.add(lineExpected);
+
+		assertNotContainDataSet(schema, tables, lstLines);
+	}
+
+	/**
+	 * Assert that a dataset doesn't contain unexpected of a row in a database.
+	 * 
+	 * @param schema
+	 * @param tableName
+	 * @param lineExpected
+	 */
+	public void assertNotContainDataSet(String schema, String tableName, ExpectedLineDataSet lineExpected) {
+		List<String> tables = new ArrayList<String>();
+		tables.add(tableName);
+
+		List<ExpectedLineDataSet> lstLines = new ArrayList<ExpectedLineDataSet>();
+		lstLines.add(lineExpected);
+
+		assertNotContainDataSet(schema, tables, lstLines);
+	}
+
+	/**
+	 * Assert that a table has the rows of the same table in an expected flat XML
+	 * dataset, by comparing their checksums (see TableChecksum).
+	 * 
+	 * On PostgreSQL the checksum of the table is computed by the database, so
+	 * no row goes through the wire; the other databases compare the rows (see
+	 * assertTableEquals).
+	 * 
+	 * @param pathXMLFile
+	 * @param schema
+	 * @param tableName
+	 */
+	public void assertTableChecksum(String pathXMLFile, String schema, String tableName) {
+		assertTableChecksum(pathXMLFile, schema, tableName, null);
+	}
+
+	/**
+	 * Assert that the columns of a table have the values of the same table in
+	 * an expected flat XML dataset, by comparing their checksums.
+	 * 
+	 * @param pathXMLFile
+	 * @param schema
+	 * @param tableName
+	 * @param columns
+	 *            columns to compare (all the columns of the expected table if
+	 *            null)
+	 */
+	public void assertTableChecksum(String pathXMLFile, String schema, String tableName, List<String> columns) {
+		assertTable(pathXMLFile, schema, tableName, columns, false);
+	}
+
+	/**
+	 * Assert that a table has the same rows (in any order) as the same table in
+	 * an expected flat XML dataset.
+	 * 
+	 * On PostgreSQL the checksums are compared first (see TableChecksum) and the
+	 * rows are only read when they differ, to report the missing and unexpected
+	 * rows.
+	 * 
+	 * @param pathXMLFile
+	 * @param schema
+	 * @param tableName
+	 */
+	public void assertTableEquals(String pathXMLFile, String schema, String tableName) {
+		assertTableEquals(pathXMLFile, schema, tableName, null);
+	}
+
+	/**
+	 * Assert that the columns of a table have the same rows (in any order) as
+	 * the same table in an expected flat XML dataset.
+	 * 
+	 * @param pathXMLFile
+	 * @param schema
+	 * @param tableName
+	 * @param columns
+	 *            columns to compare (all the columns of the expected table if
+	 *            null)
+	 */
+	public void assertTableEquals(String pathXMLFile, String schema, String tableName, List<String> columns) {
+		assertTable(pathXMLFile, schema, tableName, columns, true);
+	}
+
+	/**
+	 * Comparing a table with an expected table: checksums on PostgreSQL, then
+	 * rows if they differ and diffRows is true (or on the other databases).
+	 * 
+	 * @param pathXMLFile
+	 * @param schema
+	 * @param tableName
+	 * @param columns
+	 * @param diffRows
+	 */
+	private void assertTable(String pathXMLFile, String schema, String tableName, List<String> columns,
+			boolean diffRows) {
+		try {
+			ITable expected = getDataSet(pathXMLFile).getTable(tableName);
+			List<String> columnNames = columns;
+			if (null == columnNames) {
+				columnNames = new ArrayList<String>();
+				for (Column column : expected.getTableMetaData().getColumns()) {
+					columnNames.add(column.getColumnName());
+				}
+			}
+
+			IDatabaseConnection connection = getConnection(schema);
+			long start = METRICS.start();
+			if (dataTypeFactory instanceof PostgresqlDataTypeFactory) {
+				TableChecksum actualChecksum = TableChecksum.compute(connection, tableName, columnNames);
+				TableChecksum expectedChecksum = TableChecksum.compute(expected,
+						MetaDataUtils.getTableMetaData(connection, tableName), columnNames);
+				METRICS.record(Phase.QUERY, start, actualChecksum.getRowCount(), 0, "checksum " + tableName);
+
+				if (expectedChecksum.equals(actualChecksum)) {
+					return;
+				}
+				if (!diffRows) {
+					fail("Problème avec le contenu de " + tableName + " : " + actualChecksum + " au lieu de "
+							+ expectedChecksum);
+				}
+				start = METRICS.start();
+			}
+
+			TableDiff diff = new TableDiff(connection);
+			boolean same = diff.compare(tableName, expected, columnNames, MAX_REPORTED_ROWS);
+			METRICS.record(Phase.QUERY, start, 0, 0, "diff " + tableName);
+			if (!same) {
+				fail("Problème avec le contenu de " + tableName + " " + columnNames + " : lignes manquantes "
+						+ diff.getMissing() + ", lignes inattendues " + diff.getUnexpected());
+			}
+		} catch (Exception e) {
+			failWithException(e);
+		}
+	}
+
+	/**
+	 * Assert that a table has exactly the rows of the same table in an expected
+	 * flat XML file, rows being matched by primary key.
+	 * 
+	 * @param schema
+	 * @param tableName
+	 * @param pathXMLFile
+	 */
+	public void assertDataSetEquals(String schema, String tableName, String pathXMLFile) {
+		assertDataSetEquals(schema, tableName, pathXMLFile, null);
+	}
+
+	/**
+	 * Assert that a table has exactly the rows of the same table in an expected
+	 * flat XML file (gzipped if it ends with ".gz").
+	 * 
+	 * Both sides are streamed ordered by key and compared with a merge join
+	 * (see SortedTableDiff), so the memory used doesn't depend on the size of
+	 * the table when the file is sorted by key. The first missing, unexpected
+	 * and changed rows are reported.
+	 * 
+	 * @param schema
+	 * @param tableName
+	 * @param pathXMLFile
+	 * @param keyColumns
+	 *            columns identifying a row (the primary key if null)
+	 */
+	public void assertDataSetEquals(String schema, String tableName, String pathXMLFile, List<String> keyColumns) {
+		try {
+			IDatabaseConnection connection = getConnection(schema);
+			long start = METRICS.start();
+			SortedTableDiff diff = new SortedTableDiff(connection, dataTypeFactory instanceof PostgresqlDataTypeFactory);
+			boolean same = diff.compare(tableName, new File(pathXMLFile), keyColumns, MAX_REPORTED_ROWS);
+			METRICS.record(Phase.QUERY, start, 0, new File(pathXMLFile).length(), "merge diff " + tableName);
+
+			if (!same) {
+				fail("Problème avec le contenu de " + tableName + " : " + diff.getNbMissing()
+						+ " ligne(s) manquante(s) " + diff.getMissing() + ", " + diff.getNbUnexpected()
+						+ " ligne(s) inattendue(s) " + diff.getUnexpected() + ", " + diff.getNbChanged()
+						+ " ligne(s) différente(s) " + diff.getChanged());
+			}
+		} catch (Exception e) {
+			failWithException(e);
+		}
+	}
+
+	/**
+	 * Starting to capture the changes of tables (all the tables of the schema
+	 * if none is given), to be asserted with assertDelta / getDelta.
+	 * 
+	 * On PostgreSQL the changes are logged by triggers (see
+	 * TriggerChangeCapture), so the assertions cost the number of changed rows
+	 * and not the size of the tables. The other databases compare the rows
+	 * with their hash at the baseline (see SnapshotChangeCapture).
+	 * 
+	 * The capture ends with the test (or with the next captureBaseline).
+	 * 
+	 * @param schema
+	 * @param tableNames
+	 */
+	public void captureBaseline(String schema, String... tableNames) {
+		try {
+			releaseBaseline();
+
+			IDatabaseConnection connection = getConnection(schema);
+			long start = METRICS.start();
+			String[] tables = 0 == tableNames.length ? connection.createDataSet().getTableNames() : tableNames;
+
+			changeCapture = ChangeCapture.start(connection, tables,
+					dataTypeFactory instanceof PostgresqlDataTypeFactory);
+			changeCaptureSchema = schema;
+			METRICS.record(Phase.QUERY, start, 0, 0, "baseline " + Arrays.toString(tables));
+		} catch (Exception e) {
+			failWithException(e);
+		}
+	}
+
+	/**
+	 * Getting the changes of the tables since captureBaseline.
+	 * 
+	 * @return Map<String, TableDelta> the changes by table name (as given to
+	 *         captureBaseline)
+	 */
+	public Map<String, TableDelta> getDelta() {
+		if (null == changeCapture) {
+			fail("captureBaseline must be called first");
+		}
+
+		try {
+			long start = METRICS.start();
+			Map<String, TableDelta> deltas = changeCapture.getDelta(getConnection(changeCaptureSchema));
+			METRICS.record(Phase.QUERY, start, 0, 0, "delta " + deltas.keySet());
+			return deltas;
+		} catch (Exception e) {
+			failWithException(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Getting the changes of a table since captureBaseline.
+	 * 
+	 * @param tableName
+	 * @return TableDelta
+	 */
+	public TableDelta getDelta(String tableName) {
+		for (Map.Entry<String, TableDelta> entry : getDelta().entrySet()) {
+			if (entry.getKey().equalsIgnoreCase(tableName)) {
+				return entry.getValue();
+			}
+		}
+
+		fail(tableName + " n'est pas suivie par captureBaseline");
+		return null;
+	}
+
+	/**
+	 * Assert the number of rows inserted, updated and deleted in a table since
+	 * captureBaseline.
+	 * 
+	 * @param tableName
+	 * @param inserted
+	 * @param updated
+	 * @param deleted
+	 */
+	public void assertDelta(String tableName, int inserted, int updated, int deleted) {
+		TableDelta delta = getDelta(tableName);
+		assertEquals("Problème avec le nombre de lignes insérées dans " + delta, inserted, delta.getInserted().size());
+		assertEquals("Problème avec le nombre de lignes modifiées dans " + delta, updated, delta.getUpdated().size());
+		assertEquals("Problème avec le nombre de lignes supprimées dans " + delta, deleted, delta.getDeleted().size());
+	}
+
+	/**
+	 * Assert the number of rows inserted, updated and deleted in all the
+	 * tables since captureBaseline.
+	 * 
+	 * @param inserted
+	 * @param updated
+	 * @param deleted
+	 */
+	public void assertDelta(int inserted, int updated, int deleted) {
+		Collection<TableDelta> deltas = getDelta().values();
+		int nbInserted = 0;
+		int nbUpdated = 0;
+		int nbDeleted = 0;
+		for (TableDelta delta : deltas) {
+			nbInserted += delta.getInserted().size();
+			nbUpdated += delta.getUpdated().size();
+			nbDeleted += delta.getDeleted().size();
+		}
+
+		assertEquals("Problème avec le nombre de lignes insérées dans " + deltas, inserted, nbInserted);
+		assertEquals("Problème avec le nombre de lignes modifiées dans " + deltas, updated, nbUpdated);
+		assertEquals("Problème avec le nombre de lignes supprimées dans " + deltas, deleted, nbDeleted);
+	}
+
+	/**
+	 * Ending the capture started by captureBaseline (dropping the triggers).
+	 * 
+	 * @throws Exception
+	 */
+	private void releaseBaseline() throws Exception {
+		if (null != changeCapture) {
+			ChangeCapture capture = changeCapture;
+			changeCapture = null;
+			capture.stop(getConnection(changeCaptureSchema));
+		}
+	}
+
+	/**
+	 * Capturing the statements executed by a block of code through
+	 * StatementCaptureDataSource.of(dataSource), which has to be the DataSource
+	 * of the code under test.
+	 * 
+	 * Only the statements of the current thread and of the threads it creates
+	 * are captured (so the captures work in parallel mode).
+	 * 
+	 * @param block
+	 * @return StatementCapture
+	 */
+	public StatementCapture captureStatements(StatementBlock block) {
+		StatementCapture capture = null;
+		try {
+			capture = StatementCaptureDataSource.of(dataSource).start();
+			block.run();
+		} catch (Exception e) {
+			failWithException(e);
+		} finally {
+			if (null != capture) {
+				capture.stop();
+			}
+		}
+		return capture;
+	}
+
+	/**
+	 * Assert that a block of code executes at most max statements (N+1
+	 * detection).
+	 * 
+	 * @param max
+	 * @param block
+	 */
+	public void assertQueryCount(int max, StatementBlock block) {
+		StatementCapture capture = captureStatements(block);
+		if (capture.getCount() > max) {
+			fail("Trop de requêtes : " + capture.getCount() + " au lieu de " + max + " au maximum"
+					+ capture.summary(MAX_REPORTED_STATEMENTS));
+		}
+	}
+
+	/**
+	 * Assert that a block of code executes no statement matching a regular
+	 * expression (case-insensitive, anywhere in the SQL).
+	 * 
+	 * @param regex
+	 * @param block
+	 */
+	public void assertNoStatementMatching(String regex, StatementBlock block) {
+		List<CapturedStatement> matching = captureStatements(block).getStatementsMatching(regex);
+		if (!matching.isEmpty()) {
+			fail(matching.size() + " requête(s) correspondant à " + regex + " : "
+					+ matching.subList(0, Math.min(matching.size(), MAX_REPORTED_STATEMENTS)));
+		}
+	}
+
+	/**
+	 * Assert that the statements of a block of code spend at most maxMillis in
+	 * the database (executions and fetching of the rows).
+	 * 
+	 * @param maxMillis
+	 * @param block
+	 */
+	public void assertTotalDbTime(long maxMillis, StatementBlock block) {
+		StatementCapture capture = captureStatements(block);
+		if (capture.getTotalMillis() > maxMillis) {
+			fail("Trop de temps passé en base : " + capture.getTotalMillis() + " ms au lieu de " + maxMillis
+					+ " ms au maximum" + capture.summary(MAX_REPORTED_STATEMENTS));
+		}
+	}
+
+	/**
+	 * @return the disableDeleteTmpDataSet
+	 */
+	public Boolean getDisableDeleteTmpDataSet() {
+		return disableDeleteTmpDataSet;
+	}
+
+	/**
+	 * @param disableDeleteTmpDataSet
+	 *            the disableDeleteTmpDataSet to set
+	 */
+	public void setDisableDeleteTmpDataSet(Boolean disableDeleteTmpDataSet) {
+		this.disableDeleteTmpDataSet = disableDeleteTmpDataSet;
+	}
+
+	/**
+	 * @return the shareConnection
+	 */
+	public Boolean getShareConnection() {
+		return shareConnection;
+	}
+
+	/**
+	 * @param shareConnection
+	 *            the shareConnection to set
+	 */
+	public void setShareConnection(Boolean shareConnection) {
+		this.shareConnection = shareConnection;
+	}
+
+	/**
+	 * @return the cacheDataSets
+	 */
+	public Boolean getCacheDataSets() {
+		return cacheDataSets;
+	}
+
+	/**
+	 * @param cacheDataSets
+	 *            the cacheDataSets to set
+	 */
+	public void setCacheDataSets(Boolean cacheDataSets) {
+		this.cacheDataSets = cacheDataSets;
+	}
+
+	/**
+	 * @return the assertionMode
+	 */
+	public AssertionMode getAssertionMode() {
+		return assertionMode;
+	}
+
+	/**
+	 * @param assertionMode
+	 *            the assertionMode to set
+	 */
+	public void setAssertionMode(AssertionMode assertionMode) {
+		this.assertionMode = assertionMode;
+	}
+
+	/**
+	 * @return the streamingMatchThreshold
+	 */
+	public Integer getStreamingMatchThreshold() {
+		return streamingMatchThreshold;
+	}
+
+	/**
+	 * @param streamingMatchThreshold
+	 *            the streamingMatchThreshold to set (null to always count each
+	 *            line with its own query)
+	 */
+	public void setStreamingMatchThreshold(Integer streamingMatchThreshold) {
+		this.streamingMatchThreshold = streamingMatchThreshold;
+	}
+
+	/**
+	 * @return the streamingExport
+	 */
+	public Boolean getStreamingExport() {
+		return streamingExport;
+	}
+
+	/**
+	 * @param streamingExport
+	 *            the streamingExport to set
+	 */
+	public void setStreamingExport(Boolean streamingExport) {
+		this.streamingExport = streamingExport;
+	}
+
+	/**
+	 * @return the exportFetchSize
+	 */
+	public Integer getExportFetchSize() {
+		return exportFetchSize;
+	}
+
+	/**
+	 * @param exportFetchSize
+	 *            the exportFetchSize to set
+	 */
+	public void setExportFetchSize(Integer exportFetchSize) {
+		this.exportFetchSize = exportFetchSize;
+	}
+
+	/**
+	 * @return the rollbackIsolation
+	 */
+	public Boolean getRollbackIsolation() {
+		return rollbackIsolation;
+	}
+
+	/**
+	 * @param rollbackIsolation
+	 *            the rollbackIsolation to set
+	 */
+	public void setRollbackIsolation(Boolean rollbackIsolation) {
+		this.rollbackIsolation = rollbackIsolation;
+	}
+
+	/**
+	 * @return the dirtyTracking
+	 */
+	public Boolean getDirtyTracking() {
+		return dirtyTracking;
+	}
+
+	/**
+	 * @param dirtyTracking
+	 *            the dirtyTracking to set
+	 */
+	public void setDirtyTracking(Boolean dirtyTracking) {
+		this.dirtyTracking = dirtyTracking;
+	}
+
+	/**
+	 * @return the snapshotStrategy
+	 */
+	public SnapshotStrategy getSnapshotStrategy() {
+		return snapshotStrategy;
+	}
+
+	/**
+	 * @param snapshotStrategy
+	 *            the snapshotStrategy to set
+	 */
+	public void setSnapshotStrategy(SnapshotStrategy snapshotStrategy) {
+		this.snapshotStrategy = snapshotStrategy;
+	}
+
+	/**
+	 * @return the parallel
+	 */
+	public Boolean getParallel() {
+		return parallel;
+	}
+
+	/**
+	 * @param parallel
+	 *            the parallel to set
+	 */
+	public void setParallel(Boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * @return the loadParallelism
+	 */
+	public Integer getLoadParallelism() {
+		return loadParallelism;
+	}
+
+	/**
+	 * @param loadParallelism
+	 *            the loadParallelism to set
+	 */
+	public void setLoadParallelism(Integer loadParallelism) {
+		this.loadParallelism = loadParallelism;
+	}
+
+	/**
+	 * @return the compileDataSets
+	 */
+	public Boolean getCompileDataSets() {
+		return compileDataSets;
+	}
+
+	/**
+	 * @param compileDataSets
+	 *            the compileDataSets to set
+	 */
+	public void setCompileDataSets(Boolean compileDataSets) {
+		this.compileDataSets = compileDataSets;
+	}
+
+	/**
+	 * @return the dataSource
+	 */
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	/**
+	 * @param dataSource
+	 *            the dataSource to set (without injection)
+	 */
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
 	}
 
 	public DefaultDataTypeFactory getDataTypeFactory() {
@@ -4,6 +4,7 @@ import static org.apache.commons.lang3.StringUtils.join;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -81,4 +82,18 @@ public class ExpectedLineDataSet {
 
 		return xpath;
 	}
+
+	/**
+	 * @return the tableName
+	 */
+	public String getTableName() {
+		return tableName;
+	}
+
+	/**
+	 * @return the expected column values (read-only)
+	 */
+	public Map<String, String> getAttributes() {
+		return Collections.unmodifiableMap(attributes);
+	}
 }
@@ -0,0 +1,32 @@
+package org.testing.toolbox;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Datasets prepared in background before the test runs (see PrefetchRule).
+ * 
+ * On a class, the datasets are prepared once, when the first test starts; on a
+ * test method, while the previous test runs.
+ * 
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+public @interface PrefetchDataSets {
+	/**
+	 * Files relative to the test data dir of the class (see getTestDataDir),
+	 * or absolute paths.
+	 */
+	String[] value();
+
+	/**
+	 * Name of a static method without parameter or of a static field of the
+	 * test class returning the Replacements applied to the datasets (the same
+	 * instance has to be given to execReplacementDataSetFromFile).
+	 */
+	String replacements() default "";
+}
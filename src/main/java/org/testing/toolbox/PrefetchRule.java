@@ -0,0 +1,205 @@
+package org.testing.toolbox;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.junit.Ignore;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.testing.toolbox.dataset.CompiledReplacements;
+import org.testing.toolbox.dataset.DataSetPrefetcher;
+
+/**
+ * Rule preparing the datasets of the next test (see PrefetchDataSets) on a
+ * background thread while the current test runs, so that only the database
+ * write of the fixture stays on the critical path.
+ *
+ * The order of the tests is given by the class rule (see forClass), so it works
+ * with any runner supporting the rules (Spring...). The datasets of the class
+ * and of the first test are prepared when the first test starts.
+ *
+ * The prepared datasets are served by the dataset cache (see
+ * getCachedDataSet): nothing is prepared when the cacheDataSets option is
+ * disabled.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class PrefetchRule implements TestRule {
+	// test class -> its running tests (see forClass)
+	private static final Map<Class<?>, RunningClass> CLASSES = new ConcurrentHashMap<>();
+
+	private static final TestRule CLASS_RULE = (base, description) -> new Statement() {
+		@Override
+		public void evaluate() throws Throwable {
+			Class<?> testClass = description.getTestClass();
+			if (null == testClass) {
+				base.evaluate();
+				return;
+			}
+
+			CLASSES.put(testClass, new RunningClass(description.getChildren()));
+			try {
+				base.evaluate();
+			} finally {
+				CLASSES.remove(testClass);
+			}
+		}
+	};
+
+	private final DataSetPrefetcher prefetcher = DataSetPrefetcher.getInstance();
+	private final BooleanSupplier cacheDataSets;
+	private final BooleanSupplier compileDataSets;
+
+	/**
+	 * Tests of a running class, in run order.
+	 */
+	private static final class RunningClass {
+		private final List<Description> tests;
+		private final AtomicBoolean started = new AtomicBoolean();
+
+		private RunningClass(List<Description> tests) {
+			this.tests = tests;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cacheDataSets
+	 *            true when the dataset cache is used (read when the test
+	 *            starts)
+	 * @param compileDataSets
+	 *            true when the binary datasets are compiled (read when the
+	 *            test starts)
+	 */
+	public PrefetchRule(BooleanSupplier cacheDataSets, BooleanSupplier compileDataSets) {
+		this.cacheDataSets = cacheDataSets;
+		this.compileDataSets = compileDataSets;
+	}
+
+	/**
+	 * Getting the class rule recording the order of the tests of the class
+	 * (to be declared as a @ClassRule along with the PrefetchRule).
+	 *
+	 * @return TestRule
+	 */
+	public static TestRule forClass() {
+		return CLASS_RULE;
+	}
+
+	@Override
+	public Statement apply(Statement base, Description description) {
+		return new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				if (cacheDataSets.getAsBoolean()) {
+					prefetch(description, compileDataSets.getAsBoolean());
+				}
+				base.evaluate();
+			}
+		};
+	}
+
+	/**
+	 * Preparing the datasets of the class and of the first test when the first
+	 * test starts, then the datasets of the next test to run.
+	 *
+	 * @param description
+	 *            the starting test
+	 * @param compile
+	 */
+	private void prefetch(Description description, boolean compile) {
+		Class<?> testClass = description.getTestClass();
+		RunningClass running = null == testClass ? null : CLASSES.get(testClass);
+		if (null == running) {
+			return;
+		}
+
+		if (running.started.compareAndSet(false, true)) {
+			prefetch(testClass, testClass.getAnnotation(PrefetchDataSets.class), compile);
+			prefetch(testClass, description.getAnnotation(PrefetchDataSets.class), compile);
+		}
+
+		List<Description> tests = running.tests;
+		for (int i = tests.indexOf(description) + 1; i > 0 && i < tests.size(); i++) {
+			Description next = tests.get(i);
+			if (null == next.getAnnotation(Ignore.class)) {
+				prefetch(testClass, next.getAnnotation(PrefetchDataSets.class), compile);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Submitting the datasets of an annotation to the prefetcher.
+	 *
+	 * @param testClass
+	 * @param annotation
+	 * @param compile
+	 *            compiling the binary datasets (see compileDataSets)
+	 */
+	private void prefetch(Class<?> testClass, PrefetchDataSets annotation, boolean compile) {
+		if (null == annotation || 0 == annotation.value().length) {
+			return;
+		}
+
+		List<String> filenames = new ArrayList<>();
+		for (String value : annotation.value()) {
+			filenames.add(new File(value).isAbsolute() ? value : AbstractTest.getTestDataDir(testClass) + value);
+		}
+
+		Supplier<CompiledReplacements> replacements = annotation.replacements().isEmpty() ? null
+				: () -> getReplacements(testClass, annotation.replacements()).compile();
+		prefetcher.prefetch(filenames, file -> DatabaseTest.parseDataSet(file.getPath(), compile), replacements);
+	}
+
+	/**
+	 * Getting the replacements of a static method or field of the test class
+	 * (or of its super classes).
+	 *
+	 * @param testClass
+	 * @param name
+	 * @return Replacements
+	 */
+	private static Replacements getReplacements(Class<?> testClass, String name) {
+		for (Class<?> c = testClass; null != c; c = c.getSuperclass()) {
+			try {
+				for (Method method : c.getDeclaredMethods()) {
+					if (name.equals(method.getName()) && 0 == method.getParameterCount() && isStatic(method)) {
+						method.setAccessible(true);
+						return (Replacements) method.invoke(null);
+					}
+				}
+				for (Field field : c.getDeclaredFields()) {
+					if (name.equals(field.getName()) && isStatic(field)) {
+						field.setAccessible(true);
+						return (Replacements) field.get(null);
+					}
+				}
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("Can't get the replacements " + name, e);
+			}
+		}
+		throw new IllegalStateException("No static method or field " + name + " in " + testClass.getName());
+	}
+
+	/**
+	 * @param member
+	 * @return boolean true if the member is static
+	 */
+	private static boolean isStatic(Member member) {
+		return Modifier.isStatic(member.getModifiers());
+	}
+}
@@ -1,22 +1,33 @@
 package org.testing.toolbox;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Supplier;
+
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.testing.toolbox.dataset.CompiledReplacements;
 
 /**
  * Replacements class (fluent coding style).
  * 
+ * The values can be typed (Number, Date, Timestamp, byte[]...) or computed
+ * lazily by a Supplier (evaluated once per instance, when the first dataset
+ * using it is loaded: the next loads with the same instance reuse the value).
+ * 
  * @author Idriss Neumann <neumann.idriss@gmail.com>
  *
  */
 public class Replacements {
-	private Map<String, String> mapReplacements;
+	private Map<String, Object> mapReplacements;
+	// compiled by the test thread or by the DataSetPrefetcher
+	private volatile CompiledReplacements compiled;
 
 	/**
 	 * Private constructor : use the newInstance methode.
 	 */
 	private Replacements() {
-		mapReplacements = new HashMap<>();
+		mapReplacements = new LinkedHashMap<>();
 	}
 
 	/**
@@ -36,16 +47,91 @@ public class Replacements {
 	 * @return Replacements
 	 */
 	public Replacements add(String key, String value) {
+		return put(key, value);
+	}
+
+	/**
+	 * Adding typed replacement.
+	 * 
+	 * @param key
+	 * @param value
+	 *            Number, Date, Timestamp, byte[]...
+	 * @return Replacements
+	 */
+	public Replacements add(String key, Object value) {
+		return put(key, value);
+	}
+
+	/**
+	 * Adding lazy replacement.
+	 * 
+	 * @param key
+	 * @param value
+	 *            evaluated once per instance, on first use (use a new instance
+	 *            to get a new value)
+	 * @return Replacements
+	 */
+	public Replacements addLazy(String key, Supplier<?> value) {
+		return put(key, value);
+	}
+
+	/**
+	 * Adding replacement.
+	 * 
+	 * @param key
+	 * @param value
+	 * @return Replacements
+	 */
+	private Replacements put(String key, Object value) {
 		mapReplacements.put(key, value);
+		compiled = null;
 		return this;
 	}
 
 	/**
-	 * Return a map of replacements.
+	 * Compiled form of the replacements (reused until a replacement is added).
+	 * 
+	 * @return CompiledReplacements
+	 */
+	public CompiledReplacements compile() {
+		CompiledReplacements result = compiled;
+		if (null == result) {
+			result = new CompiledReplacements(mapReplacements);
+			compiled = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Return a map of replacements (the typed values being converted to
+	 * strings).
 	 * 
 	 * @return Map<String, String>
 	 */
 	public Map<String, String> toMap() {
-		return new HashMap<>(mapReplacements);
+		CompiledReplacements replacements = compile();
+		Map<String, String> map = new LinkedHashMap<>();
+		for (String key : mapReplacements.keySet()) {
+			map.put(key, asString(replacements.resolve(key)));
+		}
+		return map;
+	}
+
+	/**
+	 * Converting a value to string.
+	 * 
+	 * @param value
+	 * @return String
+	 */
+	private static String asString(Object value) {
+		if (null == value || value instanceof String) {
+			return (String) value;
+		}
+
+		try {
+			return DataType.asString(value);
+		} catch (TypeCastException e) {
+			return String.valueOf(value);
+		}
 	}
 }
@@ -0,0 +1,22 @@
+package org.testing.toolbox;
+
+/**
+ * Storage of the DatabaseTest snapshots.
+ * 
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public enum SnapshotStrategy {
+	/**
+	 * Copying the tables into a snapshot schema of the database and restoring
+	 * them with INSERT ... SELECT (falls back to MEMORY if the schema can't be
+	 * created).
+	 */
+	SCHEMA_COPY,
+
+	/**
+	 * Keeping the parsed datasets in memory and reloading them with
+	 * CLEAN_INSERT.
+	 */
+	MEMORY
+}
@@ -0,0 +1,136 @@
+package org.testing.toolbox.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.DatabaseTableIterator;
+import org.dbunit.database.IResultSetTableFactory;
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+
+/**
+ * dbunit connection reading the table names, columns and primary keys from
+ * the TableMetaDataCache, so that a new connection doesn't query the database
+ * metadata again for the tables already known.
+ *
+ * The schema is only validated by the first connection of a DataSource.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class CachedMetaDataConnection extends DatabaseConnection {
+	private final DataSource dataSource;
+	private IDataSet dataSet;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dataSource
+	 *            DataSource of the connection (key of the cache)
+	 * @param connection
+	 * @param schema
+	 * @throws DatabaseUnitException
+	 */
+	public CachedMetaDataConnection(DataSource dataSource, Connection connection, String schema)
+			throws DatabaseUnitException {
+		super(connection, schema, !TableMetaDataCache.contains(dataSource, schema));
+		this.dataSource = dataSource;
+	}
+
+	@Override
+	public synchronized IDataSet createDataSet() throws SQLException {
+		if (null == dataSet) {
+			dataSet = new CachedMetaDataSet(super.createDataSet());
+		}
+		return dataSet;
+	}
+
+	/**
+	 * Dataset of the database whose metadata is cached.
+	 */
+	private final class CachedMetaDataSet extends AbstractDataSet {
+		private final IDataSet databaseDataSet;
+		private SchemaMetaData schemaMetaData;
+		private IDataTypeFactory schemaDataTypeFactory;
+
+		private CachedMetaDataSet(IDataSet databaseDataSet) {
+			this.databaseDataSet = databaseDataSet;
+		}
+
+		/**
+		 * Getting the metadata of the schema, for the current data type factory.
+		 *
+		 * @return SchemaMetaData
+		 * @throws DataSetException
+		 */
+		private SchemaMetaData getSchemaMetaData() throws DataSetException {
+			IDataTypeFactory dataTypeFactory = (IDataTypeFactory) getConfig()
+					.getProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY);
+			if (null == schemaMetaData || dataTypeFactory != schemaDataTypeFactory) {
+				try {
+					schemaMetaData = TableMetaDataCache.getSchema(dataSource, getConnection(), getSchema(),
+							dataTypeFactory);
+					schemaDataTypeFactory = dataTypeFactory;
+				} catch (SQLException e) {
+					throw new DataSetException(e);
+				}
+			}
+			return schemaMetaData;
+		}
+
+		@Override
+		public String[] getTableNames() throws DataSetException {
+			SchemaMetaData metaData = getSchemaMetaData();
+			String[] tableNames = metaData.getTableNames();
+			if (null == tableNames) {
+				tableNames = databaseDataSet.getTableNames();
+				metaData.setTableNames(tableNames);
+			}
+			return tableNames;
+		}
+
+		@Override
+		public ITableMetaData getTableMetaData(String tableName) throws DataSetException {
+			SchemaMetaData metaData = getSchemaMetaData();
+			ITableMetaData tableMetaData = metaData.getTableMetaData(tableName);
+			if (null == tableMetaData) {
+				tableMetaData = metaData.putTableMetaData(tableName, databaseDataSet.getTableMetaData(tableName));
+			}
+			return tableMetaData;
+		}
+
+		@Override
+		public ITable getTable(String tableName) throws DataSetException {
+			IResultSetTableFactory factory = (IResultSetTableFactory) getConfig()
+					.getProperty(DatabaseConfig.PROPERTY_RESULTSET_TABLE_FACTORY);
+			try {
+				return factory.createTable(getTableMetaData(tableName), CachedMetaDataConnection.this);
+			} catch (SQLException e) {
+				throw new DataSetException(e);
+			}
+		}
+
+		@Override
+		protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+			String[] tableNames = getTableNames();
+			if (reversed) {
+				for (int i = 0, j = tableNames.length - 1; i < j; i++, j--) {
+					String name = tableNames[i];
+					tableNames[i] = tableNames[j];
+					tableNames[j] = name;
+				}
+			}
+			return new DatabaseTableIterator(tableNames, this);
+		}
+	}
+}
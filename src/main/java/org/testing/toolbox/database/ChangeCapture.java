@@ -0,0 +1,111 @@
+package org.testing.toolbox.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * Capture of the rows changed in a set of tables since a baseline, to assert
+ * the effect of a call without dumping the tables.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public abstract class ChangeCapture {
+	private final String[] tableNames;
+	private final String[] dbTableNames;
+	private final String[][] primaryKeys;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param connection
+	 * @param tableNames
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	protected ChangeCapture(IDatabaseConnection connection, String[] tableNames)
+			throws SQLException, DataSetException {
+		this.tableNames = tableNames.clone();
+		this.dbTableNames = new String[tableNames.length];
+		this.primaryKeys = new String[tableNames.length][];
+
+		for (int i = 0; i < tableNames.length; i++) {
+			ITableMetaData metaData = MetaDataUtils.getTableMetaData(connection, tableNames[i]);
+			dbTableNames[i] = metaData.getTableName();
+
+			List<String> columns = new ArrayList<>();
+			for (Column column : metaData.getPrimaryKeys()) {
+				columns.add(column.getColumnName());
+			}
+			primaryKeys[i] = columns.toArray(new String[columns.size()]);
+		}
+	}
+
+	/**
+	 * Starting the capture of the changes of tables: with triggers writing into
+	 * a change log table on PostgreSQL (see TriggerChangeCapture), by comparing
+	 * the rows with their state at the baseline otherwise (see
+	 * SnapshotChangeCapture).
+	 *
+	 * @param connection
+	 * @param tableNames
+	 * @param postgresql
+	 * @return ChangeCapture
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	public static ChangeCapture start(IDatabaseConnection connection, String[] tableNames, boolean postgresql)
+			throws SQLException, DataSetException {
+		return postgresql ? TriggerChangeCapture.start(connection, tableNames)
+				: SnapshotChangeCapture.start(connection, tableNames);
+	}
+
+	/**
+	 * Getting the net changes since the baseline.
+	 *
+	 * @param connection
+	 * @return Map<String, TableDelta> the changes by table name (as given to
+	 *         start)
+	 * @throws SQLException
+	 */
+	public abstract Map<String, TableDelta> getDelta(IDatabaseConnection connection) throws SQLException;
+
+	/**
+	 * Ending the capture.
+	 *
+	 * @param connection
+	 * @throws SQLException
+	 */
+	public abstract void stop(IDatabaseConnection connection) throws SQLException;
+
+	/**
+	 * @return the tableNames (as given to start)
+	 */
+	public String[] getTableNames() {
+		return tableNames.clone();
+	}
+
+	/**
+	 * @param idx
+	 * @return String the database name of a table
+	 */
+	protected String getDbTableName(int idx) {
+		return dbTableNames[idx];
+	}
+
+	/**
+	 * @param idx
+	 * @return String[] the primary key columns of a table (empty if it has
+	 *         none)
+	 */
+	protected String[] getPrimaryKey(int idx) {
+		return primaryKeys[idx];
+	}
+}
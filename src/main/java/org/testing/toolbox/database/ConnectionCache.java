@@ -0,0 +1,146 @@
+package org.testing.toolbox.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of dbunit connections keyed by schema.
+ *
+ * A connection is opened on the first request for a schema and reused (with
+ * its DatabaseConfig) until close() is called. In shared mode, every schema
+ * is served by the same physical JDBC connection. The table metadata is
+ * shared by all the connections of the DataSource (see
+ * CachedMetaDataConnection).
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class ConnectionCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionCache.class);
+
+	private final DataSource dataSource;
+	private final boolean shared;
+	private final Map<String, IDatabaseConnection> connections;
+	private final Map<Connection, String> originalSchemas;
+	private Connection sharedConnection;
+	private boolean switchSchema;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dataSource
+	 * @param shared
+	 *            true to use one physical connection for all the schemas
+	 */
+	public ConnectionCache(DataSource dataSource, boolean shared) {
+		this.dataSource = dataSource;
+		this.shared = shared;
+		this.connections = new HashMap<>();
+		this.originalSchemas = new HashMap<>();
+	}
+
+	/**
+	 * Getting the connection of a schema (opened if needed).
+	 *
+	 * @param schema
+	 * @param dataTypeFactory
+	 * @return IDatabaseConnection
+	 * @throws SQLException
+	 * @throws DatabaseUnitException
+	 */
+	public synchronized IDatabaseConnection getConnection(String schema, IDataTypeFactory dataTypeFactory)
+			throws SQLException, DatabaseUnitException {
+		IDatabaseConnection connection = connections.get(schema);
+
+		if (null == connection || connection.getConnection().isClosed()) {
+			Connection con = getJdbcConnection();
+			if (switchSchema && !shared) {
+				originalSchemas.put(con, con.getSchema());
+				con.setSchema(schema);
+			}
+			connection = new CachedMetaDataConnection(dataSource, con, schema);
+			connection.getConfig().setProperty(DatabaseConfig.FEATURE_QUALIFIED_TABLE_NAMES, true);
+			connections.put(schema, connection);
+		}
+
+		DatabaseConfig config = connection.getConfig();
+		if (dataTypeFactory != config.getProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY)) {
+			config.setProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY, dataTypeFactory);
+		}
+
+		return connection;
+	}
+
+	/**
+	 * Getting a physical JDBC connection.
+	 *
+	 * @return Connection
+	 * @throws SQLException
+	 */
+	private Connection getJdbcConnection() throws SQLException {
+		if (!shared) {
+			return dataSource.getConnection();
+		}
+
+		if (null == sharedConnection || sharedConnection.isClosed()) {
+			sharedConnection = dataSource.getConnection();
+		}
+
+		return sharedConnection;
+	}
+
+	/**
+	 * Closing all the cached connections quietly.
+	 */
+	public synchronized void close() {
+		Set<Connection> closed = new HashSet<>();
+
+		for (IDatabaseConnection connection : connections.values()) {
+			try {
+				Connection con = connection.getConnection();
+				if (closed.add(con) && !con.isClosed()) {
+					if (originalSchemas.containsKey(con)) {
+						con.setSchema(originalSchemas.get(con));
+					}
+					con.close();
+				}
+			} catch (SQLException e) {
+				LOGGER.warn("Closing connection error", e);
+			}
+		}
+
+		connections.clear();
+		originalSchemas.clear();
+		sharedConnection = null;
+	}
+
+	/**
+	 * @param switchSchema
+	 *            true to also set the schema of the JDBC connections (so that
+	 *            unqualified SQL uses it), restored when they are closed; ignored
+	 *            in shared mode
+	 */
+	public void setSwitchSchema(boolean switchSchema) {
+		this.switchSchema = switchSchema;
+	}
+
+	/**
+	 * @return true if one physical connection is shared by all the schemas
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+}
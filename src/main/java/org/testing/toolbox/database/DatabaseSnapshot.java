@@ -0,0 +1,76 @@
+package org.testing.toolbox.database;
+
+import java.sql.SQLException;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+
+/**
+ * Named state of a set of tables, captured once and restored before each test.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public abstract class DatabaseSnapshot {
+	private final String name;
+	private final String hash;
+	private final String[] tableNames;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name
+	 * @param hash
+	 *            fingerprint of the datasets the snapshot was built from
+	 * @param tableNames
+	 *            tables of the snapshot, referenced tables first
+	 */
+	protected DatabaseSnapshot(String name, String hash, String[] tableNames) {
+		this.name = name;
+		this.hash = hash;
+		this.tableNames = tableNames.clone();
+	}
+
+	/**
+	 * Restoring the tables of the snapshot.
+	 *
+	 * @param connection
+	 * @throws SQLException
+	 * @throws DatabaseUnitException
+	 */
+	public abstract void restore(IDatabaseConnection connection) throws SQLException, DatabaseUnitException;
+
+	/**
+	 * Releasing the storage of the snapshot.
+	 *
+	 * @param connection
+	 * @throws SQLException
+	 */
+	public abstract void drop(IDatabaseConnection connection) throws SQLException;
+
+	/**
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the hash
+	 */
+	public String getHash() {
+		return hash;
+	}
+
+	/**
+	 * @return the tableNames (referenced tables first)
+	 */
+	public String[] getTableNames() {
+		return tableNames.clone();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[name=" + name + ", hash=" + hash + "]";
+	}
+}
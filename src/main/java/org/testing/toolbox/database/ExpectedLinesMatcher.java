@@ -0,0 +1,213 @@
+package org.testing.toolbox.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.testing.toolbox.ExpectedLineDataSet;
+
+/**
+ * Counting the occurrences of many expected lines of a table in a single pass.
+ *
+ * The expected lines are grouped by set of columns and indexed by their
+ * values; the table is then read once and each row is looked up in every
+ * index. The cost is O(rows x column sets + expected lines) instead of
+ * O(rows x expected lines).
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class ExpectedLinesMatcher {
+	private static final int DEFAULT_FETCH_SIZE = 1000;
+
+	private final IDatabaseConnection connection;
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+
+	/**
+	 * Expected lines sharing the same set of columns, indexed by their values.
+	 */
+	private static final class Group {
+		private final int[] columns;
+		private final Map<List<Object>, List<Integer>> index = new HashMap<>();
+
+		private Group(int[] columns) {
+			this.columns = columns;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param connection
+	 */
+	public ExpectedLinesMatcher(IDatabaseConnection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Counting the rows of a table matching each expected line.
+	 *
+	 * @param tableName
+	 * @param lines
+	 * @return int[] the number of occurrences of each line (same order)
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	public int[] count(String tableName, List<ExpectedLineDataSet> lines) throws SQLException, DataSetException {
+		int[] counts = new int[lines.size()];
+		ITableMetaData metaData = MetaDataUtils.getTableMetaData(connection, tableName);
+
+		// columns to read, by upper case name
+		Map<String, Integer> selected = new LinkedHashMap<>();
+		List<String> columnNames = new ArrayList<>();
+		List<DataType> types = new ArrayList<>();
+		Map<String, Group> groups = new HashMap<>();
+
+		for (int i = 0; i < lines.size(); i++) {
+			Map<String, String> attributes = lines.get(i).getAttributes();
+			TreeSet<String> names = new TreeSet<>();
+			Map<String, String> namesByKey = new HashMap<>();
+			for (String name : attributes.keySet()) {
+				names.add(name.toUpperCase(Locale.ENGLISH));
+				namesByKey.put(name.toUpperCase(Locale.ENGLISH), name);
+			}
+
+			String signature = names.toString();
+			Group group = groups.get(signature);
+			if (null == group) {
+				int[] columns = new int[names.size()];
+				int j = 0;
+				for (String name : names) {
+					Integer idx = selected.get(name);
+					if (null == idx) {
+						idx = selected.size();
+						selected.put(name, idx);
+						columnNames.add(namesByKey.get(name));
+						types.add(MetaDataUtils.getDataType(metaData, name));
+					}
+					columns[j++] = idx;
+				}
+				Arrays.sort(columns);
+				group = new Group(columns);
+				groups.put(signature, group);
+			}
+
+			List<Object> key = getExpectedKey(attributes, group.columns, types, selected);
+			if (null != key) {
+				List<Integer> indexes = group.index.get(key);
+				if (null == indexes) {
+					indexes = new ArrayList<>();
+					group.index.put(key, indexes);
+				}
+				indexes.add(i);
+			}
+		}
+
+		scan(metaData.getTableName(), columnNames, types, groups.values(), counts);
+		return counts;
+	}
+
+	/**
+	 * Building the index key of an expected line.
+	 *
+	 * @param attributes
+	 * @param columns
+	 * @param types
+	 * @param selected
+	 * @return List<Object> or null if a value is null or can't be converted (no
+	 *         row can match)
+	 */
+	private static List<Object> getExpectedKey(Map<String, String> attributes, int[] columns, List<DataType> types,
+			Map<String, Integer> selected) {
+		Object[] key = new Object[columns.length];
+		for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+			int idx = selected.get(attribute.getKey().toUpperCase(Locale.ENGLISH));
+			int pos = Arrays.binarySearch(columns, idx);
+			try {
+				key[pos] = ValueNormalizer.normalize(types.get(idx).typeCast(attribute.getValue()));
+			} catch (TypeCastException e) {
+				return null;
+			}
+
+			if (null == key[pos]) {
+				return null;
+			}
+		}
+		return Arrays.asList(key);
+	}
+
+	/**
+	 * Reading the table once and counting the matches of each group.
+	 *
+	 * @param tableName
+	 * @param columnNames
+	 * @param types
+	 * @param groups
+	 * @param counts
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	private void scan(String tableName, List<String> columnNames, List<DataType> types, Iterable<Group> groups,
+			int[] counts) throws SQLException, DataSetException {
+		String columns = columnNames.isEmpty() ? "1" : String.join(", ", columnNames);
+		Object[] row = new Object[columnNames.size()];
+		Connection con = connection.getConnection();
+
+		// some drivers (PostgreSQL) only use a cursor inside a transaction
+		boolean autoCommit = con.getAutoCommit();
+		if (autoCommit) {
+			con.setAutoCommit(false);
+		}
+
+		try (Statement statement = con.createStatement()) {
+			statement.setFetchSize(fetchSize);
+			try (ResultSet rs = statement.executeQuery("SELECT " + columns + " FROM " + tableName)) {
+				while (rs.next()) {
+					for (int i = 0; i < row.length; i++) {
+						row[i] = ValueNormalizer.normalize(types.get(i).getSqlValue(i + 1, rs));
+					}
+
+					for (Group group : groups) {
+						Object[] key = new Object[group.columns.length];
+						for (int j = 0; j < key.length; j++) {
+							key[j] = row[group.columns[j]];
+						}
+
+						List<Integer> indexes = group.index.get(Arrays.asList(key));
+						if (null != indexes) {
+							for (Integer idx : indexes) {
+								counts[idx]++;
+							}
+						}
+					}
+				}
+			}
+		} finally {
+			if (autoCommit) {
+				con.setAutoCommit(true);
+			}
+		}
+	}
+
+	/**
+	 * @param fetchSize
+	 *            the number of rows fetched per round trip
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+}
@@ -0,0 +1,43 @@
+package org.testing.toolbox.database;
+
+import java.sql.SQLException;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.operation.DatabaseOperation;
+
+/**
+ * Snapshot kept as a parsed dataset and restored with CLEAN_INSERT.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class MemorySnapshot extends DatabaseSnapshot {
+	private final IDataSet dataSet;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name
+	 * @param hash
+	 * @param dataSet
+	 *            dataset sorted in the foreign keys order
+	 * @throws DataSetException
+	 */
+	public MemorySnapshot(String name, String hash, IDataSet dataSet) throws DataSetException {
+		super(name, hash, dataSet.getTableNames());
+		this.dataSet = dataSet;
+	}
+
+	@Override
+	public void restore(IDatabaseConnection connection) throws SQLException, DatabaseUnitException {
+		DatabaseOperation.CLEAN_INSERT.execute(connection, dataSet);
+	}
+
+	@Override
+	public void drop(IDatabaseConnection connection) {
+		// nothing is stored in the database
+	}
+}
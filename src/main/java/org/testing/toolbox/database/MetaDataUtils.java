@@ -0,0 +1,128 @@
+package org.testing.toolbox.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.NoSuchColumnException;
+import org.dbunit.dataset.NoSuchTableException;
+import org.dbunit.dataset.RowOutOfBoundsException;
+import org.dbunit.dataset.datatype.DataType;
+
+/**
+ * Database metadata helpers.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class MetaDataUtils {
+
+	/**
+	 * Getting the data type of a column (UNKNOWN if the column isn't found).
+	 *
+	 * @param metaData
+	 * @param columnName
+	 * @return DataType
+	 * @throws DataSetException
+	 */
+	public static DataType getDataType(ITableMetaData metaData, String columnName) throws DataSetException {
+		for (Column column : metaData.getColumns()) {
+			if (column.getColumnName().equalsIgnoreCase(columnName)) {
+				return column.getDataType();
+			}
+		}
+		return DataType.UNKNOWN;
+	}
+
+	/**
+	 * Getting the database columns of the columns of a dataset table.
+	 *
+	 * @param metaData
+	 *            metadata of the dataset table
+	 * @param dbMetaData
+	 *            metadata of the database table
+	 * @return Column[] (same order as the dataset columns)
+	 * @throws DataSetException
+	 *             NoSuchColumnException if a column isn't in the database
+	 */
+	public static Column[] getColumns(ITableMetaData metaData, ITableMetaData dbMetaData) throws DataSetException {
+		List<Column> columns = new ArrayList<>();
+		for (Column column : metaData.getColumns()) {
+			Column dbColumn = null;
+			for (Column c : dbMetaData.getColumns()) {
+				if (c.getColumnName().equalsIgnoreCase(column.getColumnName())) {
+					dbColumn = c;
+					break;
+				}
+			}
+
+			if (null == dbColumn) {
+				throw new NoSuchColumnException(dbMetaData.getTableName(), column.getColumnName());
+			}
+			columns.add(dbColumn);
+		}
+		return columns.toArray(new Column[columns.size()]);
+	}
+
+	/**
+	 * Checking that a dataset table has no column or no row (as dbunit's
+	 * operations do, without reading more than the first row of a streamed
+	 * table).
+	 *
+	 * @param table
+	 * @return boolean
+	 * @throws DataSetException
+	 */
+	public static boolean isEmpty(ITable table) throws DataSetException {
+		Column[] columns = table.getTableMetaData().getColumns();
+		if (0 == columns.length) {
+			return true;
+		}
+
+		try {
+			table.getValue(0, columns[0].getColumnName());
+			return false;
+		} catch (RowOutOfBoundsException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Getting the database metadata of a table, qualified by the connection's
+	 * schema if needed.
+	 *
+	 * A table qualified by another schema which isn't found is looked up in the
+	 * connection's schema (datasets written for the base schema and loaded in
+	 * a worker schema).
+	 *
+	 * @param connection
+	 * @param tableName
+	 * @return ITableMetaData
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	public static ITableMetaData getTableMetaData(IDatabaseConnection connection, String tableName)
+			throws SQLException, DataSetException {
+		try {
+			return connection.createDataSet().getTableMetaData(tableName);
+		} catch (NoSuchTableException e) {
+			String schema = connection.getSchema();
+			int idx = tableName.lastIndexOf('.');
+			if (null == schema || (idx >= 0 && schema.equalsIgnoreCase(tableName.substring(0, idx)))) {
+				throw e;
+			}
+			return connection.createDataSet().getTableMetaData(schema + "." + tableName.substring(idx + 1));
+		}
+	}
+
+	/**
+	 * Static class : private constructor.
+	 */
+	private MetaDataUtils() {
+	}
+}
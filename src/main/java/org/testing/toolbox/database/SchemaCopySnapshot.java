@@ -0,0 +1,213 @@
+package org.testing.toolbox.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+
+/**
+ * Snapshot copying the tables into a dedicated schema of the database.
+ *
+ * The capture runs one "CREATE TABLE snapshot.t AS SELECT * FROM t" per
+ * table; the restore empties the tables (a single TRUNCATE ... CASCADE on
+ * PostgreSQL, DELETE otherwise) then runs one "INSERT INTO t SELECT * FROM
+ * snapshot.t" per table, all sent as one JDBC batch in one transaction. No
+ * row goes through the client.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class SchemaCopySnapshot extends DatabaseSnapshot {
+	public static final String SCHEMA_PREFIX = "snap_";
+	private static final int MAX_SCHEMA_LENGTH = 63;
+
+	private final String snapshotSchema;
+	private final String[] dbTableNames;
+	private final boolean truncate;
+
+	/**
+	 * Constructor (see capture).
+	 *
+	 * @param name
+	 * @param hash
+	 * @param tableNames
+	 * @param dbTableNames
+	 * @param snapshotSchema
+	 * @param truncate
+	 */
+	private SchemaCopySnapshot(String name, String hash, String[] tableNames, String[] dbTableNames,
+			String snapshotSchema, boolean truncate) {
+		super(name, hash, tableNames);
+		this.dbTableNames = dbTableNames;
+		this.snapshotSchema = snapshotSchema;
+		this.truncate = truncate;
+	}
+
+	/**
+	 * Copying the current content of tables into the snapshot schema (dropped
+	 * and recreated).
+	 *
+	 * @param connection
+	 * @param name
+	 * @param hash
+	 * @param tableNames
+	 *            referenced tables first
+	 * @param truncate
+	 *            true to restore with TRUNCATE ... CASCADE (PostgreSQL)
+	 * @return SchemaCopySnapshot
+	 * @throws SQLException
+	 * @throws DatabaseUnitException
+	 */
+	public static SchemaCopySnapshot capture(IDatabaseConnection connection, String name, String hash,
+			String[] tableNames, boolean truncate) throws SQLException, DatabaseUnitException {
+		String[] dbTableNames = new String[tableNames.length];
+		for (int i = 0; i < tableNames.length; i++) {
+			dbTableNames[i] = MetaDataUtils.getTableMetaData(connection, tableNames[i]).getTableName();
+		}
+
+		String snapshotSchema = getSnapshotSchema(connection.getSchema(), name);
+		List<String> queries = new ArrayList<>();
+		queries.add(dropQuery(snapshotSchema));
+		queries.add("CREATE SCHEMA " + snapshotSchema);
+		for (String dbTableName : dbTableNames) {
+			queries.add("CREATE TABLE " + snapshotSchema + "." + unqualify(dbTableName) + " AS SELECT * FROM "
+					+ dbTableName);
+		}
+		execute(connection.getConnection(), queries);
+
+		return new SchemaCopySnapshot(name, hash, tableNames, dbTableNames, snapshotSchema, truncate);
+	}
+
+	@Override
+	public void restore(IDatabaseConnection connection) throws SQLException {
+		List<String> queries = new ArrayList<>();
+
+		if (truncate) {
+			List<String> tables = new ArrayList<>();
+			for (int i = dbTableNames.length - 1; i >= 0; i--) {
+				tables.add(dbTableNames[i]);
+			}
+			queries.add("TRUNCATE TABLE " + String.join(", ", tables) + " CASCADE");
+		} else {
+			for (int i = dbTableNames.length - 1; i >= 0; i--) {
+				queries.add("DELETE FROM " + dbTableNames[i]);
+			}
+		}
+
+		for (String dbTableName : dbTableNames) {
+			queries.add("INSERT INTO " + dbTableName + " SELECT * FROM " + snapshotSchema + "."
+					+ unqualify(dbTableName));
+		}
+
+		execute(connection.getConnection(), queries);
+	}
+
+	@Override
+	public void drop(IDatabaseConnection connection) throws SQLException {
+		try (Statement statement = connection.getConnection().createStatement()) {
+			statement.execute(dropQuery(snapshotSchema));
+		}
+	}
+
+	/**
+	 * Executing queries in a single batch and transaction (when the connection
+	 * is in auto-commit mode).
+	 *
+	 * @param con
+	 * @param queries
+	 * @throws SQLException
+	 */
+	static void execute(Connection con, List<String> queries) throws SQLException {
+		boolean commit = con.getAutoCommit();
+		if (commit) {
+			con.setAutoCommit(false);
+		}
+
+		try (Statement statement = con.createStatement()) {
+			for (String query : queries) {
+				statement.addBatch(query);
+			}
+			statement.executeBatch();
+
+			if (commit) {
+				con.commit();
+			}
+		} catch (SQLException e) {
+			if (commit) {
+				con.rollback();
+			}
+			throw e;
+		} finally {
+			if (commit) {
+				con.setAutoCommit(true);
+			}
+		}
+	}
+
+	/**
+	 * Getting the schema of a snapshot (letters, digits and underscores only).
+	 *
+	 * The name of the snapshot is prefixed by the schema of its tables, so that
+	 * the same snapshot name can be used from several schemas. A name longer
+	 * than the limit of PostgreSQL is truncated and suffixed by its hash code.
+	 *
+	 * @param schema
+	 *            schema of the tables of the snapshot
+	 * @param name
+	 * @return String
+	 */
+	public static String getSnapshotSchema(String schema, String name) {
+		return toSchemaName(SCHEMA_PREFIX + (null == schema ? "" : schema + "_") + name);
+	}
+
+	/**
+	 * Converting a name into a schema name (letters, digits and underscores
+	 * only, truncated and suffixed by its hash code if longer than the limit
+	 * of PostgreSQL).
+	 *
+	 * @param name
+	 * @return String
+	 */
+	static String toSchemaName(String name) {
+		String schemaName = name.toLowerCase(Locale.ENGLISH).replaceAll("[^a-z0-9_]", "_");
+		if (schemaName.length() <= MAX_SCHEMA_LENGTH) {
+			return schemaName;
+		}
+
+		String suffix = "_" + Integer.toHexString(schemaName.hashCode());
+		return schemaName.substring(0, MAX_SCHEMA_LENGTH - suffix.length()) + suffix;
+	}
+
+	/**
+	 * Building the query dropping a snapshot schema.
+	 *
+	 * @param snapshotSchema
+	 * @return String
+	 */
+	private static String dropQuery(String snapshotSchema) {
+		return "DROP SCHEMA IF EXISTS " + snapshotSchema + " CASCADE";
+	}
+
+	/**
+	 * Removing the schema prefix of a table name.
+	 *
+	 * @param tableName
+	 * @return String
+	 */
+	private static String unqualify(String tableName) {
+		int idx = tableName.lastIndexOf('.');
+		return idx < 0 ? tableName : tableName.substring(idx + 1);
+	}
+
+	/**
+	 * @return the snapshotSchema
+	 */
+	public String getSnapshotSchema() {
+		return snapshotSchema;
+	}
+}
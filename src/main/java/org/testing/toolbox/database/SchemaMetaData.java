@@ -0,0 +1,301 @@
+package org.testing.toolbox.database;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Table metadata of a schema (table names, columns and primary keys) shared by
+ * the connections of a DataSource (see TableMetaDataCache).
+ *
+ * The metadata can be persisted into a file named after a fingerprint of the
+ * columns of the schema (read with a single metadata query), so that the next
+ * runs start with the metadata of the previous ones while the columns are
+ * unchanged.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class SchemaMetaData {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMetaData.class);
+
+	private static final String SEPARATOR = "\t";
+	private static final String TABLES = "tables";
+	private static final String TABLE = "table";
+	private static final String COLUMN = "column";
+
+	private final IDataTypeFactory dataTypeFactory;
+	private final File file;
+	private volatile String[] tableNames;
+	private final Map<String, ITableMetaData> tables = new ConcurrentHashMap<>();
+	private volatile boolean modified;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dataTypeFactory
+	 * @param file
+	 *            persisted form (null to keep the metadata in memory only)
+	 */
+	public SchemaMetaData(IDataTypeFactory dataTypeFactory, File file) {
+		this.dataTypeFactory = dataTypeFactory;
+		this.file = file;
+		if (null != file && file.isFile()) {
+			try {
+				read();
+			} catch (IOException | DataSetException | RuntimeException e) {
+				LOGGER.warn("Can't read the table metadata of " + file + ", ignored", e);
+				tableNames = null;
+				tables.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return the table names, or null if they aren't known yet
+	 */
+	public String[] getTableNames() {
+		String[] names = tableNames;
+		return null == names ? null : names.clone();
+	}
+
+	/**
+	 * @param tableNames
+	 */
+	public void setTableNames(String[] tableNames) {
+		this.tableNames = tableNames.clone();
+		modified = true;
+	}
+
+	/**
+	 * Getting the metadata of a table.
+	 *
+	 * @param tableName
+	 *            as given to the dataset (case-insensitive)
+	 * @return ITableMetaData or null if it isn't known yet
+	 */
+	public ITableMetaData getTableMetaData(String tableName) {
+		return tables.get(tableName.toUpperCase(Locale.ENGLISH));
+	}
+
+	/**
+	 * Storing the metadata of a table (the columns and primary keys are read
+	 * once, the stored metadata doesn't keep the connection).
+	 *
+	 * @param tableName
+	 *            as given to the dataset
+	 * @param metaData
+	 * @return ITableMetaData the stored metadata
+	 * @throws DataSetException
+	 */
+	public ITableMetaData putTableMetaData(String tableName, ITableMetaData metaData) throws DataSetException {
+		ITableMetaData stored = new DefaultTableMetaData(metaData.getTableName(), metaData.getColumns(),
+				metaData.getPrimaryKeys());
+		tables.put(tableName.toUpperCase(Locale.ENGLISH), stored);
+		modified = true;
+		return stored;
+	}
+
+	/**
+	 * @return the persisted form, or null
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Writing the persisted form if the metadata has been modified since it was
+	 * read.
+	 *
+	 * @throws IOException
+	 * @throws DataSetException
+	 */
+	public synchronized void write() throws IOException, DataSetException {
+		if (null == file || !modified) {
+			return;
+		}
+
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Can't create " + dir);
+		}
+
+		File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+		try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+			String[] names = tableNames;
+			if (null != names) {
+				writeLine(writer, TABLES, names);
+			}
+
+			for (Map.Entry<String, ITableMetaData> entry : tables.entrySet()) {
+				ITableMetaData metaData = entry.getValue();
+				List<String> table = new ArrayList<>();
+				table.add(entry.getKey());
+				table.add(metaData.getTableName());
+				for (Column primaryKey : metaData.getPrimaryKeys()) {
+					table.add(primaryKey.getColumnName());
+				}
+				writeLine(writer, TABLE, table.toArray(new String[table.size()]));
+
+				for (Column column : metaData.getColumns()) {
+					writeLine(writer, COLUMN, column.getColumnName(),
+							String.valueOf(column.getDataType().getSqlType()), column.getSqlTypeName(),
+							String.valueOf(toInt(column.getNullable())));
+				}
+			}
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		modified = false;
+	}
+
+	/**
+	 * Reading the persisted form.
+	 *
+	 * @throws IOException
+	 * @throws DataSetException
+	 */
+	private void read() throws IOException, DataSetException {
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String key = null;
+			String[] table = null;
+			List<Column> columns = new ArrayList<>();
+
+			for (String line; null != (line = reader.readLine());) {
+				String[] fields = line.split(SEPARATOR, -1);
+				switch (fields[0]) {
+				case TABLES:
+					tableNames = Arrays.copyOfRange(fields, 1, fields.length);
+					break;
+				case TABLE:
+					addTable(key, table, columns);
+					key = fields[1];
+					table = fields;
+					columns.clear();
+					break;
+				case COLUMN:
+					columns.add(new Column(fields[1],
+							dataTypeFactory.createDataType(Integer.parseInt(fields[2]), fields[3], table[2], fields[1]),
+							fields[3], Column.nullableValue(Integer.parseInt(fields[4]))));
+					break;
+				default:
+					throw new IOException("Unexpected line " + line);
+				}
+			}
+			addTable(key, table, columns);
+		}
+	}
+
+	/**
+	 * Adding a table read from the persisted form.
+	 *
+	 * @param key
+	 * @param table
+	 *            fields of the table line: type, key, name, primary keys
+	 * @param columns
+	 * @throws DataSetException
+	 */
+	private void addTable(String key, String[] table, List<Column> columns) throws DataSetException {
+		if (null != key) {
+			tables.put(key, new DefaultTableMetaData(table[2], columns.toArray(new Column[columns.size()]),
+					Arrays.copyOfRange(table, 3, table.length)));
+		}
+	}
+
+	/**
+	 * Writing a line of tab separated fields.
+	 *
+	 * @param writer
+	 * @param type
+	 * @param fields
+	 * @throws IOException
+	 */
+	private static void writeLine(BufferedWriter writer, String type, String... fields) throws IOException {
+		writer.write(type);
+		for (String field : fields) {
+			writer.write(SEPARATOR);
+			writer.write(null == field ? "" : field);
+		}
+		writer.newLine();
+	}
+
+	/**
+	 * @param nullable
+	 * @return int the DatabaseMetaData value of a nullable status
+	 */
+	private static int toInt(Column.Nullable nullable) {
+		if (Column.NO_NULLS == nullable) {
+			return DatabaseMetaData.columnNoNulls;
+		}
+		return Column.NULLABLE == nullable ? DatabaseMetaData.columnNullable : DatabaseMetaData.columnNullableUnknown;
+	}
+
+	/**
+	 * Computing the fingerprint of the columns of a schema.
+	 *
+	 * @param con
+	 * @param schema
+	 * @return String or null if no column is found (the schema name not being
+	 *         in the case of the database metadata)
+	 * @throws SQLException
+	 */
+	public static String fingerprint(Connection con, String schema) throws SQLException {
+		DatabaseMetaData metaData = con.getMetaData();
+		String[] candidates = null == schema ? new String[] { null }
+				: new String[] { schema, schema.toUpperCase(Locale.ENGLISH), schema.toLowerCase(Locale.ENGLISH) };
+
+		for (String candidate : candidates) {
+			MessageDigest md5 = md5();
+			boolean found = false;
+			try (ResultSet rs = metaData.getColumns(con.getCatalog(), candidate, "%", "%")) {
+				while (rs.next()) {
+					found = true;
+					for (String label : new String[] { "TABLE_NAME", "COLUMN_NAME", "DATA_TYPE", "TYPE_NAME",
+							"COLUMN_SIZE", "DECIMAL_DIGITS", "NULLABLE" }) {
+						md5.update(String.valueOf(rs.getString(label)).getBytes(StandardCharsets.UTF_8));
+						md5.update((byte) 0);
+					}
+				}
+			}
+			if (found) {
+				return String.format("%032x", new BigInteger(1, md5.digest()));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return MessageDigest
+	 */
+	private static MessageDigest md5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package org.testing.toolbox.database;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+
+/**
+ * Capture for the databases without trigger support: the key and a 64 bits
+ * hash of each row are kept at the baseline, then compared with the rows read
+ * again by getDelta.
+ *
+ * The tables are read with a streaming cursor and only the keys and hashes
+ * stay in memory, but each read still scans the whole tables.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class SnapshotChangeCapture extends ChangeCapture {
+	private static final int FETCH_SIZE = 1000;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final String NULL = "null";
+
+	private final Map<String, Map<String, Long>> baseline = new HashMap<>();
+
+	/**
+	 * Constructor (see start).
+	 *
+	 * @param connection
+	 * @param tableNames
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	private SnapshotChangeCapture(IDatabaseConnection connection, String[] tableNames)
+			throws SQLException, DataSetException {
+		super(connection, tableNames);
+	}
+
+	/**
+	 * Reading the baseline of tables.
+	 *
+	 * @param connection
+	 * @param tableNames
+	 * @return SnapshotChangeCapture
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	public static SnapshotChangeCapture start(IDatabaseConnection connection, String[] tableNames)
+			throws SQLException, DataSetException {
+		SnapshotChangeCapture capture = new SnapshotChangeCapture(connection, tableNames);
+		String[] names = capture.getTableNames();
+		for (int i = 0; i < names.length; i++) {
+			capture.baseline.put(names[i], capture.read(connection, i));
+		}
+		return capture;
+	}
+
+	@Override
+	public Map<String, TableDelta> getDelta(IDatabaseConnection connection) throws SQLException {
+		Map<String, TableDelta> deltas = new LinkedHashMap<>();
+		String[] names = getTableNames();
+
+		for (int i = 0; i < names.length; i++) {
+			Map<String, Long> before = baseline.get(names[i]);
+			Map<String, Long> after = read(connection, i);
+			TableDelta delta = new TableDelta(names[i]);
+
+			for (Map.Entry<String, Long> entry : after.entrySet()) {
+				Long hash = before.get(entry.getKey());
+				if (null == hash) {
+					delta.add(TableDelta.INSERT, entry.getKey());
+				} else if (!hash.equals(entry.getValue())) {
+					delta.add(TableDelta.UPDATE, entry.getKey());
+				}
+			}
+			for (String key : before.keySet()) {
+				if (!after.containsKey(key)) {
+					delta.add(TableDelta.DELETE, key);
+				}
+			}
+			deltas.put(names[i], delta);
+		}
+		return deltas;
+	}
+
+	@Override
+	public void stop(IDatabaseConnection connection) {
+		baseline.clear();
+	}
+
+	/**
+	 * Reading the key and hash of the rows of a table.
+	 *
+	 * @param connection
+	 * @param idx
+	 * @return Map<String, Long> the hashes by key
+	 * @throws SQLException
+	 */
+	private Map<String, Long> read(IDatabaseConnection connection, int idx) throws SQLException {
+		Map<String, Long> rows = new LinkedHashMap<>();
+
+		Connection con = connection.getConnection();
+
+		// some drivers (PostgreSQL) only use a cursor inside a transaction
+		boolean autoCommit = con.getAutoCommit();
+		if (autoCommit) {
+			con.setAutoCommit(false);
+		}
+
+		try (Statement statement = con.createStatement()) {
+			statement.setFetchSize(FETCH_SIZE);
+			try (ResultSet rs = statement.executeQuery("SELECT * FROM " + getDbTableName(idx))) {
+				int[] keyColumns = getKeyColumns(rs.getMetaData(), getPrimaryKey(idx));
+				int nbColumns = rs.getMetaData().getColumnCount();
+				String[] values = new String[nbColumns];
+
+				while (rs.next()) {
+					long hash = FNV_OFFSET;
+					for (int i = 0; i < nbColumns; i++) {
+						values[i] = rs.getString(i + 1);
+						hash = hash(hash, values[i]);
+					}
+
+					StringBuilder key = new StringBuilder();
+					for (int i = 0; i < keyColumns.length; i++) {
+						if (i > 0) {
+							key.append(',');
+						}
+						String value = values[keyColumns[i]];
+						key.append(null == value ? NULL : value);
+					}
+					rows.put(key.toString(), hash);
+				}
+			}
+		} finally {
+			if (autoCommit) {
+				con.setAutoCommit(true);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Getting the indexes of the key columns (all the columns if the table has
+	 * no primary key).
+	 *
+	 * @param metaData
+	 * @param primaryKey
+	 * @return int[]
+	 * @throws SQLException
+	 */
+	private static int[] getKeyColumns(ResultSetMetaData metaData, String[] primaryKey) throws SQLException {
+		int nbColumns = metaData.getColumnCount();
+		if (0 == primaryKey.length) {
+			int[] all = new int[nbColumns];
+			for (int i = 0; i < nbColumns; i++) {
+				all[i] = i;
+			}
+			return all;
+		}
+
+		int[] indexes = new int[primaryKey.length];
+		for (int k = 0; k < primaryKey.length; k++) {
+			indexes[k] = -1;
+			for (int i = 0; i < nbColumns; i++) {
+				if (primaryKey[k].equalsIgnoreCase(metaData.getColumnLabel(i + 1))) {
+					indexes[k] = i;
+					break;
+				}
+			}
+			if (indexes[k] < 0) {
+				throw new SQLException("Primary key column " + primaryKey[k] + " not found");
+			}
+		}
+		return indexes;
+	}
+
+	/**
+	 * FNV-1a hash of a value (null being distinct from the "null" string).
+	 *
+	 * @param hash
+	 * @param value
+	 * @return long
+	 */
+	private static long hash(long hash, String value) {
+		long result = hash;
+		if (null == value) {
+			result = (result ^ 0xff) * FNV_PRIME;
+		} else {
+			for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+				result = (result ^ (b & 0xff)) * FNV_PRIME;
+			}
+		}
+		// separator of the values
+		return (result ^ 0xfe) * FNV_PRIME;
+	}
+}
@@ -0,0 +1,179 @@
+package org.testing.toolbox.database;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+/**
+ * JVM-wide registry of the snapshots by DataSource, schema and name.
+ *
+ * A snapshot is identified by the fingerprint (SHA-256) of the dataset files
+ * it was built from, so it is rebuilt when a file changes. The fingerprint of
+ * a file is only recomputed when its size or last modification date change.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class SnapshotRegistry {
+	private static final String DEFAULT_SCHEMA = "";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final Map<DataSource, Map<String, DatabaseSnapshot>> SNAPSHOTS = Collections
+			.synchronizedMap(new WeakHashMap<DataSource, Map<String, DatabaseSnapshot>>());
+
+	// canonical path -> "length/lastModified/hash"
+	private static final Map<String, String> FILE_HASHES = new ConcurrentHashMap<>();
+
+	/**
+	 * Getting a snapshot.
+	 *
+	 * @param dataSource
+	 * @param schema
+	 * @param name
+	 * @return DatabaseSnapshot or null
+	 */
+	public static DatabaseSnapshot get(DataSource dataSource, String schema, String name) {
+		return getSnapshots(dataSource).get(getKey(schema, name));
+	}
+
+	/**
+	 * Registering a snapshot.
+	 *
+	 * @param dataSource
+	 * @param schema
+	 * @param snapshot
+	 */
+	public static void put(DataSource dataSource, String schema, DatabaseSnapshot snapshot) {
+		getSnapshots(dataSource).put(getKey(schema, snapshot.getName()), snapshot);
+	}
+
+	/**
+	 * Unregistering a snapshot.
+	 *
+	 * @param dataSource
+	 * @param schema
+	 * @param name
+	 * @return DatabaseSnapshot the removed snapshot or null
+	 */
+	public static DatabaseSnapshot remove(DataSource dataSource, String schema, String name) {
+		return getSnapshots(dataSource).remove(getKey(schema, name));
+	}
+
+	/**
+	 * Unregistering all the snapshots (their storage isn't dropped).
+	 */
+	public static void clear() {
+		SNAPSHOTS.clear();
+	}
+
+	/**
+	 * Getting the snapshots of a DataSource.
+	 *
+	 * @param dataSource
+	 * @return Map<String, DatabaseSnapshot>
+	 */
+	private static Map<String, DatabaseSnapshot> getSnapshots(DataSource dataSource) {
+		synchronized (SNAPSHOTS) {
+			Map<String, DatabaseSnapshot> snapshots = SNAPSHOTS.get(dataSource);
+			if (null == snapshots) {
+				snapshots = new ConcurrentHashMap<>();
+				SNAPSHOTS.put(dataSource, snapshots);
+			}
+			return snapshots;
+		}
+	}
+
+	/**
+	 * Getting the key of a snapshot.
+	 *
+	 * @param schema
+	 * @param name
+	 * @return String
+	 */
+	private static String getKey(String schema, String name) {
+		return (null == schema ? DEFAULT_SCHEMA : schema) + "/" + name;
+	}
+
+	/**
+	 * Computing the fingerprint of dataset files (order matters).
+	 *
+	 * @param filenames
+	 * @return String
+	 * @throws IOException
+	 */
+	public static String fingerprint(String... filenames) throws IOException {
+		MessageDigest digest = newDigest();
+		for (String filename : filenames) {
+			digest.update(hash(new File(filename)).getBytes(StandardCharsets.UTF_8));
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Getting the hash of a file's content.
+	 *
+	 * @param file
+	 * @return String
+	 * @throws IOException
+	 */
+	private static String hash(File file) throws IOException {
+		String path = file.getCanonicalPath();
+		String prefix = file.length() + "/" + file.lastModified() + "/";
+
+		String cached = FILE_HASHES.get(path);
+		if (null != cached && cached.startsWith(prefix)) {
+			return cached.substring(prefix.length());
+		}
+
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = new FileInputStream(file)) {
+			for (int n; (n = in.read(buffer)) > 0;) {
+				digest.update(buffer, 0, n);
+			}
+		}
+
+		String hash = toHex(digest.digest());
+		FILE_HASHES.put(path, prefix + hash);
+		return hash;
+	}
+
+	/**
+	 * @return MessageDigest SHA-256
+	 */
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param bytes
+	 * @return String hexadecimal
+	 */
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(2 * bytes.length);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Static class : private constructor.
+	 */
+	private SnapshotRegistry() {
+	}
+}
@@ -0,0 +1,643 @@
+package org.testing.toolbox.database;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.testing.toolbox.dataset.StreamingDataSetExporter;
+
+/**
+ * Differences between a database table and the same table of an expected flat
+ * XML file, found with a merge join of both sides ordered by key.
+ *
+ * The table is read with "ORDER BY" the key columns and the file is read with
+ * a StAX parser, so only the current row of each side stays in memory. The
+ * expected rows must be sorted by key in the file: if they aren't, they're
+ * loaded and sorted in memory (the table is still streamed). The values are
+ * converted with the data types of the database columns and compared as in
+ * TableDiff; the keys are compared by value (strings by code point, sorted with
+ * the "C" collation on PostgreSQL).
+ *
+ * The columns compared are the attributes of the first row of the table in
+ * the file (like FlatXmlDataSet without column sensing).
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class SortedTableDiff {
+	private static final int DEFAULT_FETCH_SIZE = 1000;
+
+	private final IDatabaseConnection connection;
+	private final boolean postgresql;
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+
+	private int maxDifferences;
+	private final List<String> missing = new ArrayList<>();
+	private final List<String> unexpected = new ArrayList<>();
+	private final List<String> changed = new ArrayList<>();
+	private long nbMissing;
+	private long nbUnexpected;
+	private long nbChanged;
+
+	/**
+	 * Source of rows sorted by key.
+	 */
+	private interface RowSource extends Closeable {
+		/**
+		 * @return Object[] the next row (values in the order of the columns),
+		 *         null at the end
+		 * @throws Exception
+		 */
+		Object[] next() throws Exception;
+	}
+
+	/**
+	 * Raised when the expected rows aren't sorted by key.
+	 */
+	private static final class UnsortedException extends Exception {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param connection
+	 * @param postgresql
+	 *            true to sort the strings with the "C" collation
+	 */
+	public SortedTableDiff(IDatabaseConnection connection, boolean postgresql) {
+		this.connection = connection;
+		this.postgresql = postgresql;
+	}
+
+	/**
+	 * Comparing a table with the same table of a flat XML file (gzipped if it
+	 * ends with ".gz").
+	 *
+	 * @param tableName
+	 * @param expectedFile
+	 * @param keyColumns
+	 *            columns identifying a row (the primary key if null or empty)
+	 * @param maxDifferences
+	 *            number of missing, unexpected and changed rows kept (each)
+	 * @return boolean true if the rows are the same
+	 * @throws Exception
+	 */
+	public boolean compare(String tableName, File expectedFile, List<String> keyColumns, int maxDifferences)
+			throws Exception {
+		this.maxDifferences = maxDifferences;
+		ITableMetaData metaData = MetaDataUtils.getTableMetaData(connection, tableName);
+
+		List<String> keys = new ArrayList<>();
+		if (null == keyColumns || keyColumns.isEmpty()) {
+			for (Column column : metaData.getPrimaryKeys()) {
+				keys.add(column.getColumnName());
+			}
+			if (keys.isEmpty()) {
+				throw new DataSetException(tableName + " has no primary key: the key columns must be given");
+			}
+		} else {
+			keys.addAll(keyColumns);
+		}
+
+		List<String> columns;
+		try (FlatXmlTableReader reader = new FlatXmlTableReader(expectedFile, tableName)) {
+			Map<String, String> first = reader.next();
+			columns = null == first ? keys : new ArrayList<>(first.keySet());
+		}
+
+		int[] keyIndexes = new int[keys.size()];
+		for (int k = 0; k < keyIndexes.length; k++) {
+			keyIndexes[k] = indexOf(columns, keys.get(k));
+			if (keyIndexes[k] < 0) {
+				throw new DataSetException("Key column " + keys.get(k) + " not found in the expected rows of "
+						+ tableName);
+			}
+		}
+
+		DataType[] types = new DataType[columns.size()];
+		for (int j = 0; j < types.length; j++) {
+			types[j] = MetaDataUtils.getDataType(metaData, columns.get(j));
+		}
+
+		try {
+			return merge(metaData, columns, types, keyIndexes,
+					streamedRows(expectedFile, tableName, columns, types, keyIndexes));
+		} catch (UnsortedException e) {
+			return merge(metaData, columns, types, keyIndexes,
+					sortedRows(expectedFile, tableName, columns, types, keyIndexes));
+		}
+	}
+
+	/**
+	 * Merging the expected rows with the rows of the table.
+	 *
+	 * @param metaData
+	 * @param columns
+	 * @param types
+	 * @param keyIndexes
+	 * @param expected
+	 * @return boolean true if the rows are the same
+	 * @throws Exception
+	 */
+	private boolean merge(ITableMetaData metaData, List<String> columns, DataType[] types, int[] keyIndexes,
+			RowSource expected) throws Exception {
+		missing.clear();
+		unexpected.clear();
+		changed.clear();
+		nbMissing = 0;
+		nbUnexpected = 0;
+		nbChanged = 0;
+
+		try (RowSource source = expected; RowSource actual = tableRows(metaData, columns, types, keyIndexes)) {
+			Object[] exp = source.next();
+			Object[] act = actual.next();
+
+			while (null != exp || null != act) {
+				int cmp = null == exp ? 1 : null == act ? -1 : compareKeys(exp, act, keyIndexes);
+				if (cmp < 0) {
+					if (nbMissing++ < maxDifferences) {
+						missing.add(TableDiff.describe(columns, Arrays.asList(exp)));
+					}
+					exp = source.next();
+				} else if (cmp > 0) {
+					if (nbUnexpected++ < maxDifferences) {
+						unexpected.add(TableDiff.describe(columns, Arrays.asList(act)));
+					}
+					act = actual.next();
+				} else {
+					if (!Arrays.equals(exp, act) && nbChanged++ < maxDifferences) {
+						changed.add(describeChange(columns, keyIndexes, exp, act));
+					}
+					exp = source.next();
+					act = actual.next();
+				}
+			}
+		}
+		return 0 == nbMissing + nbUnexpected + nbChanged;
+	}
+
+	/**
+	 * Reading the rows of the table ordered by key.
+	 *
+	 * @param metaData
+	 * @param columns
+	 * @param types
+	 * @param keyIndexes
+	 * @return RowSource
+	 * @throws SQLException
+	 */
+	private RowSource tableRows(ITableMetaData metaData, List<String> columns, final DataType[] types,
+			final int[] keyIndexes) throws SQLException {
+		List<String> orderBy = new ArrayList<>();
+		for (int idx : keyIndexes) {
+			String column = columns.get(idx);
+			if (postgresql) {
+				orderBy.add(column + (isString(types[idx]) ? " COLLATE \"C\"" : "") + " NULLS FIRST");
+			} else {
+				orderBy.add(column);
+			}
+		}
+
+		final Connection con = connection.getConnection();
+
+		// some drivers (PostgreSQL) only use a cursor inside a transaction
+		final boolean autoCommit = con.getAutoCommit();
+		if (autoCommit) {
+			con.setAutoCommit(false);
+		}
+
+		final Statement statement;
+		final ResultSet rs;
+		try {
+			statement = con.createStatement();
+			try {
+				statement.setFetchSize(fetchSize);
+				rs = statement.executeQuery("SELECT " + String.join(", ", columns) + " FROM "
+						+ metaData.getTableName() + " ORDER BY " + String.join(", ", orderBy));
+			} catch (SQLException e) {
+				statement.close();
+				throw e;
+			}
+		} catch (SQLException e) {
+			if (autoCommit) {
+				con.setAutoCommit(true);
+			}
+			throw e;
+		}
+
+		return new RowSource() {
+			private Object[] previous;
+
+			@Override
+			public Object[] next() throws Exception {
+				if (!rs.next()) {
+					return null;
+				}
+
+				Object[] row = new Object[types.length];
+				for (int j = 0; j < types.length; j++) {
+					row[j] = ValueNormalizer.normalize(types[j].getSqlValue(j + 1, rs));
+				}
+				if (null != previous && compareKeys(previous, row, keyIndexes) > 0) {
+					throw new DataSetException("The database doesn't sort the keys of " + metaData.getTableName()
+							+ " like Java (collation?): " + Arrays.asList(previous) + " before " + Arrays.asList(row));
+				}
+				previous = row;
+				return row;
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					statement.close();
+				} catch (SQLException e) {
+					throw new IOException(e);
+				} finally {
+					if (autoCommit) {
+						try {
+							con.setAutoCommit(true);
+						} catch (SQLException e) {
+							throw new IOException(e);
+						}
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Reading the expected rows in the order of the file (UnsortedException if
+	 * they aren't sorted by key).
+	 *
+	 * @param file
+	 * @param tableName
+	 * @param columns
+	 * @param types
+	 * @param keyIndexes
+	 * @return RowSource
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	private static RowSource streamedRows(File file, String tableName, final List<String> columns,
+			final DataType[] types, final int[] keyIndexes) throws IOException, XMLStreamException {
+		final FlatXmlTableReader reader = new FlatXmlTableReader(file, tableName);
+
+		return new RowSource() {
+			private Object[] previous;
+
+			@Override
+			public Object[] next() throws Exception {
+				Map<String, String> attributes = reader.next();
+				if (null == attributes) {
+					return null;
+				}
+
+				Object[] row = toRow(attributes, columns, types);
+				if (null != previous && compareKeys(previous, row, keyIndexes) > 0) {
+					throw new UnsortedException();
+				}
+				previous = row;
+				return row;
+			}
+
+			@Override
+			public void close() throws IOException {
+				reader.close();
+			}
+		};
+	}
+
+	/**
+	 * Loading and sorting the expected rows.
+	 *
+	 * @param file
+	 * @param tableName
+	 * @param columns
+	 * @param types
+	 * @param keyIndexes
+	 * @return RowSource
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	private static RowSource sortedRows(File file, String tableName, List<String> columns, DataType[] types,
+			final int[] keyIndexes) throws IOException, XMLStreamException {
+		final List<Object[]> rows = new ArrayList<>();
+		try (FlatXmlTableReader reader = new FlatXmlTableReader(file, tableName)) {
+			for (Map<String, String> attributes; null != (attributes = reader.next());) {
+				rows.add(toRow(attributes, columns, types));
+			}
+		}
+		rows.sort((row1, row2) -> compareKeys(row1, row2, keyIndexes));
+
+		return new RowSource() {
+			private int idx;
+
+			@Override
+			public Object[] next() {
+				return idx < rows.size() ? rows.get(idx++) : null;
+			}
+
+			@Override
+			public void close() {
+				rows.clear();
+			}
+		};
+	}
+
+	/**
+	 * Converting the attributes of an expected row.
+	 *
+	 * @param attributes
+	 * @param columns
+	 * @param types
+	 * @return Object[]
+	 */
+	private static Object[] toRow(Map<String, String> attributes, List<String> columns, DataType[] types) {
+		Object[] row = new Object[types.length];
+		for (int j = 0; j < types.length; j++) {
+			String value = attributes.get(columns.get(j));
+			try {
+				row[j] = ValueNormalizer.normalize(types[j].typeCast(value));
+			} catch (TypeCastException e) {
+				row[j] = value;
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Comparing the keys of two rows.
+	 *
+	 * @param row1
+	 * @param row2
+	 * @param keyIndexes
+	 * @return int
+	 */
+	private static int compareKeys(Object[] row1, Object[] row2, int[] keyIndexes) {
+		for (int idx : keyIndexes) {
+			int cmp = compareValues(row1[idx], row2[idx]);
+			if (0 != cmp) {
+				return cmp;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Comparing two normalized values (nulls first, strings by code point,
+	 * binaries as unsigned bytes).
+	 *
+	 * @param value1
+	 * @param value2
+	 * @return int
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compareValues(Object value1, Object value2) {
+		if (value1 == value2) {
+			return 0;
+		}
+		if (null == value1) {
+			return -1;
+		}
+		if (null == value2) {
+			return 1;
+		}
+
+		if (value1 instanceof String && value2 instanceof String) {
+			return compareCodePoints((String) value1, (String) value2);
+		}
+		if (value1 instanceof ByteBuffer && value2 instanceof ByteBuffer) {
+			return compareUnsigned(((ByteBuffer) value1).array(), ((ByteBuffer) value2).array());
+		}
+		if (value1 instanceof Comparable && value1.getClass().isInstance(value2)) {
+			return ((Comparable) value1).compareTo(value2);
+		}
+		return compareCodePoints(value1.toString(), value2.toString());
+	}
+
+	/**
+	 * @param str1
+	 * @param str2
+	 * @return int the comparison of the strings by code point
+	 */
+	private static int compareCodePoints(String str1, String str2) {
+		int i = 0;
+		int j = 0;
+		while (i < str1.length() && j < str2.length()) {
+			int c1 = str1.codePointAt(i);
+			int c2 = str2.codePointAt(j);
+			if (c1 != c2) {
+				return Integer.compare(c1, c2);
+			}
+			i += Character.charCount(c1);
+			j += Character.charCount(c2);
+		}
+		return Integer.compare(str1.length() - i, str2.length() - j);
+	}
+
+	/**
+	 * @param bytes1
+	 * @param bytes2
+	 * @return int the comparison of the arrays as unsigned bytes
+	 */
+	private static int compareUnsigned(byte[] bytes1, byte[] bytes2) {
+		for (int i = 0; i < Math.min(bytes1.length, bytes2.length); i++) {
+			int cmp = Integer.compare(bytes1[i] & 0xff, bytes2[i] & 0xff);
+			if (0 != cmp) {
+				return cmp;
+			}
+		}
+		return Integer.compare(bytes1.length, bytes2.length);
+	}
+
+	/**
+	 * @param type
+	 * @return boolean true for the character types
+	 */
+	private static boolean isString(DataType type) {
+		switch (type.getSqlType()) {
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.LONGVARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+		case Types.LONGNVARCHAR:
+		case Types.CLOB:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Describing a changed row for the assertion messages.
+	 *
+	 * @param columns
+	 * @param keyIndexes
+	 * @param expected
+	 * @param actual
+	 * @return String {key=value, ...} column: expected -> actual, ...
+	 */
+	private static String describeChange(List<String> columns, int[] keyIndexes, Object[] expected,
+			Object[] actual) {
+		List<String> keyColumns = new ArrayList<>();
+		List<Object> keyValues = new ArrayList<>();
+		for (int idx : keyIndexes) {
+			keyColumns.add(columns.get(idx));
+			keyValues.add(expected[idx]);
+		}
+
+		StringBuilder builder = new StringBuilder(TableDiff.describe(keyColumns, keyValues));
+		String separator = " ";
+		for (int j = 0; j < expected.length; j++) {
+			if (!Objects.equals(expected[j], actual[j])) {
+				builder.append(separator).append(columns.get(j)).append(": ").append(TableDiff.display(expected[j]))
+						.append(" -> ").append(TableDiff.display(actual[j]));
+				separator = ", ";
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * @param columns
+	 * @param name
+	 * @return int the index of a column (ignoring the case), -1 if not found
+	 */
+	private static int indexOf(List<String> columns, String name) {
+		for (int j = 0; j < columns.size(); j++) {
+			if (columns.get(j).equalsIgnoreCase(name)) {
+				return j;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Pull parser of the rows of a table in a flat XML file.
+	 */
+	private static final class FlatXmlTableReader implements Closeable {
+		private final InputStream in;
+		private final XMLStreamReader reader;
+		private final String tableName;
+
+		private FlatXmlTableReader(File file, String tableName) throws IOException, XMLStreamException {
+			this.tableName = tableName;
+			InputStream stream = new FileInputStream(file);
+			this.in = file.getName().endsWith(StreamingDataSetExporter.GZIP_EXTENSION)
+					? new GZIPInputStream(stream) : stream;
+
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+			this.reader = factory.createXMLStreamReader(in);
+		}
+
+		/**
+		 * @return Map<String, String> the attributes of the next row of the
+		 *         table (in the order of the file), null at the end
+		 * @throws XMLStreamException
+		 */
+		private Map<String, String> next() throws XMLStreamException {
+			while (reader.hasNext()) {
+				if (XMLStreamConstants.START_ELEMENT == reader.next()
+						&& tableName.equalsIgnoreCase(reader.getLocalName())) {
+					Map<String, String> attributes = new LinkedHashMap<>();
+					for (int i = 0; i < reader.getAttributeCount(); i++) {
+						attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+					}
+					return attributes;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				reader.close();
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * @return the expected rows which aren't in the table
+	 */
+	public List<String> getMissing() {
+		return missing;
+	}
+
+	/**
+	 * @return the rows of the table which aren't expected
+	 */
+	public List<String> getUnexpected() {
+		return unexpected;
+	}
+
+	/**
+	 * @return the rows whose values differ (key, then the different columns)
+	 */
+	public List<String> getChanged() {
+		return changed;
+	}
+
+	/**
+	 * @return the number of missing rows
+	 */
+	public long getNbMissing() {
+		return nbMissing;
+	}
+
+	/**
+	 * @return the number of unexpected rows
+	 */
+	public long getNbUnexpected() {
+		return nbUnexpected;
+	}
+
+	/**
+	 * @return the number of changed rows
+	 */
+	public long getNbChanged() {
+		return nbChanged;
+	}
+
+	/**
+	 * @param fetchSize
+	 *            the number of rows fetched per round trip
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+}
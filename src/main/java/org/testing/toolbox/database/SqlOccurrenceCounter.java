@@ -0,0 +1,93 @@
+package org.testing.toolbox.database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.testing.toolbox.ExpectedLineDataSet;
+
+/**
+ * Counting the rows matching an expected line directly in the database.
+ *
+ * Each expected line is translated into a parameterized
+ * "SELECT COUNT(*) FROM table WHERE col = ? AND ..." query. The expected values
+ * are converted with the dbunit data type of their column, so nothing but the
+ * count is transferred from the database.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class SqlOccurrenceCounter {
+	private final IDatabaseConnection connection;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param connection
+	 */
+	public SqlOccurrenceCounter(IDatabaseConnection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Counting the rows matching an expected line.
+	 *
+	 * @param line
+	 * @return int
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	public int count(ExpectedLineDataSet line) throws SQLException, DataSetException {
+		ITableMetaData metaData = MetaDataUtils.getTableMetaData(connection, line.getTableName());
+		List<String> columns = new ArrayList<>();
+		List<Object> values = new ArrayList<>();
+		List<DataType> types = new ArrayList<>();
+
+		for (Map.Entry<String, String> attribute : line.getAttributes().entrySet()) {
+			DataType dataType = MetaDataUtils.getDataType(metaData, attribute.getKey());
+			try {
+				values.add(dataType.typeCast(attribute.getValue()));
+			} catch (TypeCastException e) {
+				// the value can't be stored in this column: no row can match
+				return 0;
+			}
+			columns.add(attribute.getKey());
+			types.add(dataType);
+		}
+
+		try (PreparedStatement statement = connection.getConnection()
+				.prepareStatement(buildQuery(metaData.getTableName(), columns))) {
+			for (int i = 0; i < values.size(); i++) {
+				types.get(i).setSqlValue(values.get(i), i + 1, statement);
+			}
+
+			try (ResultSet rs = statement.executeQuery()) {
+				rs.next();
+				return rs.getInt(1);
+			}
+		}
+	}
+
+	/**
+	 * Building the count query.
+	 *
+	 * @param tableName
+	 * @param columns
+	 * @return String
+	 */
+	public static String buildQuery(String tableName, List<String> columns) {
+		StringBuilder query = new StringBuilder("SELECT COUNT(*) FROM ").append(tableName);
+		for (int i = 0; i < columns.size(); i++) {
+			query.append(0 == i ? " WHERE " : " AND ").append(columns.get(i)).append(" = ?");
+		}
+		return query.toString();
+	}
+}
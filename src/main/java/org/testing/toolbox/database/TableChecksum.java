@@ -0,0 +1,275 @@
+package org.testing.toolbox.database;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+
+/**
+ * Order-independent checksum of the selected columns of a table: the number of
+ * rows and the sum of the first 64 bits of the md5 of each row.
+ *
+ * The checksum of a database table is computed by PostgreSQL (only the
+ * aggregate goes through the wire); the checksum of an expected table is
+ * computed locally from the values converted with the data types of the
+ * database columns. Each value is rendered as text the same way on both sides
+ * (numbers without trailing zeros, dates as yyyy-MM-dd, timestamps with
+ * microseconds, binaries in hexadecimal) and prefixed by its length, a null
+ * value being "-".
+ *
+ * The rendering of some types (floating point numbers, timestamps with time
+ * zone...) can differ between both sides: equal checksums prove equal tables,
+ * different checksums must be confirmed by a row diff (see TableDiff).
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class TableChecksum {
+	private static final String NULL = "-";
+	private static final String DATE_PATTERN = "yyyy-MM-dd";
+	private static final String TIME_PATTERN = "HH:mm:ss";
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final long rowCount;
+	private final BigInteger sum;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param rowCount
+	 * @param sum
+	 */
+	public TableChecksum(long rowCount, BigInteger sum) {
+		this.rowCount = rowCount;
+		this.sum = sum;
+	}
+
+	/**
+	 * Computing the checksum of a database table (PostgreSQL).
+	 *
+	 * @param connection
+	 * @param tableName
+	 * @param columns
+	 * @return TableChecksum
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	public static TableChecksum compute(IDatabaseConnection connection, String tableName, List<String> columns)
+			throws SQLException, DataSetException {
+		ITableMetaData metaData = MetaDataUtils.getTableMetaData(connection, tableName);
+
+		List<String> parts = new ArrayList<>();
+		for (String column : columns) {
+			String expr = sqlExpression(column, MetaDataUtils.getDataType(metaData, column));
+			parts.add("CASE WHEN " + column + " IS NULL THEN '" + NULL + "' ELSE length(" + expr + ") || ':' || "
+					+ expr + " END");
+		}
+		String row = parts.isEmpty() ? "''" : String.join(" || ", parts);
+
+		try (Statement statement = connection.getConnection().createStatement();
+				ResultSet rs = statement.executeQuery("SELECT count(*), COALESCE(sum(('x' || substr(md5(" + row
+						+ "), 1, 16))::bit(64)::bigint), 0) FROM " + metaData.getTableName())) {
+			rs.next();
+			return new TableChecksum(rs.getLong(1), rs.getBigDecimal(2).toBigInteger());
+		}
+	}
+
+	/**
+	 * Computing the checksum of an expected table.
+	 *
+	 * @param table
+	 * @param dbMetaData
+	 *            metadata of the database table (data types of the columns)
+	 * @param columns
+	 * @return TableChecksum
+	 * @throws DataSetException
+	 */
+	public static TableChecksum compute(ITable table, ITableMetaData dbMetaData, List<String> columns)
+			throws DataSetException {
+		DataType[] types = new DataType[columns.size()];
+		for (int j = 0; j < types.length; j++) {
+			types[j] = MetaDataUtils.getDataType(dbMetaData, columns.get(j));
+		}
+
+		MessageDigest md5 = md5();
+		BigInteger sum = BigInteger.ZERO;
+		StringBuilder row = new StringBuilder();
+		int rowCount = table.getRowCount();
+
+		for (int i = 0; i < rowCount; i++) {
+			row.setLength(0);
+			for (int j = 0; j < types.length; j++) {
+				String value = format(table.getValue(i, columns.get(j)), types[j]);
+				if (null == value) {
+					row.append(NULL);
+				} else {
+					row.append(value.codePointCount(0, value.length())).append(':').append(value);
+				}
+			}
+
+			byte[] digest = md5.digest(row.toString().getBytes(StandardCharsets.UTF_8));
+			sum = sum.add(BigInteger.valueOf(ByteBuffer.wrap(digest).getLong()));
+		}
+		return new TableChecksum(rowCount, sum);
+	}
+
+	/**
+	 * Building the SQL rendering of a column.
+	 *
+	 * @param column
+	 * @param type
+	 * @return String
+	 */
+	private static String sqlExpression(String column, DataType type) {
+		switch (type.getSqlType()) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+			return "CASE WHEN " + column + "::text LIKE '%.%' THEN rtrim(rtrim(" + column + "::text, '0'), '.') ELSE "
+					+ column + "::text END";
+		case Types.DATE:
+			return "to_char(" + column + ", 'YYYY-MM-DD')";
+		case Types.TIME:
+			return "to_char(" + column + ", 'HH24:MI:SS')";
+		case Types.TIMESTAMP:
+			return "to_char(" + column + ", 'YYYY-MM-DD HH24:MI:SS.US')";
+		case Types.BINARY:
+		case Types.VARBINARY:
+		case Types.LONGVARBINARY:
+		case Types.BLOB:
+			return "encode(" + column + ", 'hex')";
+		default:
+			return column + "::text";
+		}
+	}
+
+	/**
+	 * Rendering an expected value like sqlExpression.
+	 *
+	 * @param value
+	 * @param type
+	 * @return String null for a null value
+	 */
+	private static String format(Object value, DataType type) {
+		if (null == value || ITable.NO_VALUE == value) {
+			return null;
+		}
+
+		Object typed;
+		try {
+			typed = type.typeCast(value);
+		} catch (TypeCastException e) {
+			return value.toString();
+		}
+		if (null == typed) {
+			return null;
+		}
+
+		switch (type.getSqlType()) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+			Object normalized = ValueNormalizer.normalize(typed);
+			return normalized instanceof BigDecimal ? ((BigDecimal) normalized).toPlainString() : typed.toString();
+		case Types.DATE:
+			return new SimpleDateFormat(DATE_PATTERN).format(typed);
+		case Types.TIME:
+			return new SimpleDateFormat(TIME_PATTERN).format(typed);
+		case Types.TIMESTAMP:
+			Timestamp timestamp = (Timestamp) typed;
+			return new SimpleDateFormat(DATE_PATTERN + " " + TIME_PATTERN).format(timestamp) + "."
+					+ String.format("%06d", timestamp.getNanos() / 1000);
+		case Types.BINARY:
+		case Types.VARBINARY:
+		case Types.LONGVARBINARY:
+		case Types.BLOB:
+			return hex((byte[]) typed);
+		default:
+			try {
+				return DataType.asString(typed);
+			} catch (TypeCastException e) {
+				return typed.toString();
+			}
+		}
+	}
+
+	/**
+	 * @param bytes
+	 * @return String the bytes in lower case hexadecimal
+	 */
+	private static String hex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * @return MessageDigest
+	 */
+	private static MessageDigest md5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the rowCount
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return the sum of the row hashes
+	 */
+	public BigInteger getSum() {
+		return sum;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof TableChecksum)) {
+			return false;
+		}
+		TableChecksum other = (TableChecksum) obj;
+		return rowCount == other.rowCount && sum.equals(other.sum);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Long.hashCode(rowCount) + sum.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "TableChecksum[rows=" + rowCount + ", sum=" + sum.toString(16) + "]";
+	}
+}
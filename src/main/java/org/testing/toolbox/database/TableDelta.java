@@ -0,0 +1,116 @@
+package org.testing.toolbox.database;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Net changes of a table since a baseline (see ChangeCapture).
+ *
+ * A row is identified by its key: the values of its primary key separated by
+ * commas (the whole row for the tables without primary key, an update being
+ * then a deletion and an insertion). A row inserted then updated is
+ * inserted, a row inserted then deleted isn't a change, a row deleted then
+ * inserted again is updated.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class TableDelta {
+	public static final char INSERT = 'I';
+	public static final char UPDATE = 'U';
+	public static final char DELETE = 'D';
+
+	private final String tableName;
+	private final Map<String, Character> changes = new LinkedHashMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param tableName
+	 */
+	public TableDelta(String tableName) {
+		this.tableName = tableName;
+	}
+
+	/**
+	 * Adding a change of a row (in the order of the changes).
+	 *
+	 * @param operation
+	 *            INSERT, UPDATE or DELETE
+	 * @param key
+	 */
+	public void add(char operation, String key) {
+		Character previous = changes.get(key);
+		if (null == previous) {
+			changes.put(key, operation);
+		} else if (INSERT == previous) {
+			if (DELETE == operation) {
+				changes.remove(key);
+			}
+		} else if (DELETE == previous) {
+			if (INSERT == operation) {
+				changes.put(key, UPDATE);
+			}
+		} else if (DELETE == operation) {
+			changes.put(key, DELETE);
+		}
+	}
+
+	/**
+	 * @param operation
+	 * @return Set<String> the keys of the rows whose net change is operation
+	 */
+	private Set<String> getKeys(char operation) {
+		Set<String> keys = new LinkedHashSet<>();
+		for (Map.Entry<String, Character> entry : changes.entrySet()) {
+			if (operation == entry.getValue()) {
+				keys.add(entry.getKey());
+			}
+		}
+		return Collections.unmodifiableSet(keys);
+	}
+
+	/**
+	 * @return the tableName
+	 */
+	public String getTableName() {
+		return tableName;
+	}
+
+	/**
+	 * @return the keys of the inserted rows
+	 */
+	public Set<String> getInserted() {
+		return getKeys(INSERT);
+	}
+
+	/**
+	 * @return the keys of the updated rows
+	 */
+	public Set<String> getUpdated() {
+		return getKeys(UPDATE);
+	}
+
+	/**
+	 * @return the keys of the deleted rows
+	 */
+	public Set<String> getDeleted() {
+		return getKeys(DELETE);
+	}
+
+	/**
+	 * @return true if no row changed
+	 */
+	public boolean isEmpty() {
+		return changes.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return tableName + "[inserted=" + getInserted() + ", updated=" + getUpdated() + ", deleted=" + getDeleted()
+				+ "]";
+	}
+}
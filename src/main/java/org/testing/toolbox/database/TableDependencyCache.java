@@ -0,0 +1,110 @@
+package org.testing.toolbox.database;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+
+/**
+ * JVM-wide cache of the table dependency graphs by DataSource and schema.
+ *
+ * The graphs must be invalidated when the foreign keys are changed (DDL).
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class TableDependencyCache {
+	private static final String DEFAULT_SCHEMA = "";
+
+	private static final Map<DataSource, Map<String, TableDependencyGraph>> GRAPHS = Collections
+			.synchronizedMap(new WeakHashMap<DataSource, Map<String, TableDependencyGraph>>());
+
+	/**
+	 * Getting the graph of the connection's schema (read from the database on
+	 * the first call).
+	 *
+	 * @param dataSource
+	 * @param connection
+	 * @return TableDependencyGraph
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	public static TableDependencyGraph getGraph(DataSource dataSource, IDatabaseConnection connection)
+			throws SQLException, DataSetException {
+		Map<String, TableDependencyGraph> graphs = getGraphs(dataSource);
+		String key = getKey(connection.getSchema());
+
+		TableDependencyGraph graph = graphs.get(key);
+		if (null == graph) {
+			graph = TableDependencyGraph.build(connection);
+			graphs.put(key, graph);
+		}
+
+		return graph;
+	}
+
+	/**
+	 * Getting the graphs of a DataSource.
+	 *
+	 * @param dataSource
+	 * @return Map<String, TableDependencyGraph>
+	 */
+	private static Map<String, TableDependencyGraph> getGraphs(DataSource dataSource) {
+		synchronized (GRAPHS) {
+			Map<String, TableDependencyGraph> graphs = GRAPHS.get(dataSource);
+			if (null == graphs) {
+				graphs = new ConcurrentHashMap<>();
+				GRAPHS.put(dataSource, graphs);
+			}
+			return graphs;
+		}
+	}
+
+	/**
+	 * Getting the key of a schema.
+	 *
+	 * @param schema
+	 * @return String
+	 */
+	private static String getKey(String schema) {
+		return null == schema ? DEFAULT_SCHEMA : schema;
+	}
+
+	/**
+	 * Invalidating the graph of a schema.
+	 *
+	 * @param dataSource
+	 * @param schema
+	 */
+	public static void invalidate(DataSource dataSource, String schema) {
+		getGraphs(dataSource).remove(getKey(schema));
+	}
+
+	/**
+	 * Invalidating all the graphs of a DataSource.
+	 *
+	 * @param dataSource
+	 */
+	public static void invalidate(DataSource dataSource) {
+		GRAPHS.remove(dataSource);
+	}
+
+	/**
+	 * Invalidating all the graphs.
+	 */
+	public static void clear() {
+		GRAPHS.clear();
+	}
+
+	/**
+	 * Static class : private constructor.
+	 */
+	private TableDependencyCache() {
+	}
+}
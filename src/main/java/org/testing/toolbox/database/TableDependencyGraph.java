@@ -0,0 +1,241 @@
+package org.testing.toolbox.database;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.dbunit.database.CyclicTablesDependencyException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+
+/**
+ * Foreign keys dependency graph of the tables of a schema.
+ *
+ * The graph is read once from the JDBC metadata (one imported keys query per
+ * table); sorting the tables of a dataset is then done in memory. Table names
+ * are matched case-insensitively, with or without schema prefix.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class TableDependencyGraph {
+	private final String schema;
+
+	// normalized table name -> normalized names of the tables it references
+	private final Map<String, Set<String>> dependsOn;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param schema
+	 * @param dependsOn
+	 */
+	public TableDependencyGraph(String schema, Map<String, Set<String>> dependsOn) {
+		this.schema = schema;
+		this.dependsOn = new HashMap<>();
+		for (Map.Entry<String, Set<String>> entry : dependsOn.entrySet()) {
+			Set<String> parents = new HashSet<>();
+			for (String parent : entry.getValue()) {
+				parents.add(normalize(parent));
+			}
+			this.dependsOn.put(normalize(entry.getKey()), parents);
+		}
+	}
+
+	/**
+	 * Reading the graph from the database metadata.
+	 *
+	 * @param connection
+	 * @return TableDependencyGraph
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	public static TableDependencyGraph build(IDatabaseConnection connection) throws SQLException, DataSetException {
+		String schema = connection.getSchema();
+		DatabaseMetaData metaData = connection.getConnection().getMetaData();
+		String catalog = connection.getConnection().getCatalog();
+		Map<String, Set<String>> dependsOn = new LinkedHashMap<>();
+
+		for (String tableName : connection.createDataSet().getTableNames()) {
+			Set<String> parents = new LinkedHashSet<>();
+			try (ResultSet rs = metaData.getImportedKeys(catalog, schema, unqualify(tableName))) {
+				while (rs.next()) {
+					String pkSchema = rs.getString("PKTABLE_SCHEM");
+					if (null == schema || null == pkSchema || schema.equalsIgnoreCase(pkSchema)) {
+						parents.add(rs.getString("PKTABLE_NAME"));
+					}
+				}
+			}
+			dependsOn.put(tableName, parents);
+		}
+
+		return new TableDependencyGraph(schema, dependsOn);
+	}
+
+	/**
+	 * Normalizing a table name (without schema, upper case).
+	 *
+	 * @param tableName
+	 * @return String
+	 */
+	private static String normalize(String tableName) {
+		return unqualify(tableName).replace("\"", "").toUpperCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Removing the schema prefix of a table name.
+	 *
+	 * @param tableName
+	 * @return String
+	 */
+	private static String unqualify(String tableName) {
+		int idx = tableName.lastIndexOf('.');
+		return idx < 0 ? tableName : tableName.substring(idx + 1);
+	}
+
+	/**
+	 * Getting the tables directly referenced by a table.
+	 *
+	 * @param tableName
+	 * @return Set<String> (normalized names)
+	 */
+	private Set<String> getParents(String tableName) {
+		Set<String> parents = dependsOn.get(normalize(tableName));
+		return null == parents ? Collections.<String> emptySet() : parents;
+	}
+
+	/**
+	 * Sorting tables so that referenced tables come first.
+	 *
+	 * Only the dependencies between the given tables are considered and the
+	 * given order is kept between independent tables. The names are returned as
+	 * given.
+	 *
+	 * @param tableNames
+	 * @return String[]
+	 * @throws CyclicTablesDependencyException
+	 */
+	public String[] sort(String[] tableNames) throws CyclicTablesDependencyException {
+		List<String> sorted = new ArrayList<>(tableNames.length);
+		for (List<String> level : levels(tableNames)) {
+			sorted.addAll(level);
+		}
+		return sorted.toArray(new String[sorted.size()]);
+	}
+
+	/**
+	 * Splitting tables into levels: the tables of a level only reference tables
+	 * of the previous levels, so they can be loaded in any order (or
+	 * concurrently) once the previous levels are loaded.
+	 *
+	 * @param tableNames
+	 * @return List<List<String>>
+	 * @throws CyclicTablesDependencyException
+	 */
+	public List<List<String>> levels(String[] tableNames) throws CyclicTablesDependencyException {
+		Map<String, String> remaining = new LinkedHashMap<>();
+		for (String tableName : tableNames) {
+			remaining.put(normalize(tableName), tableName);
+		}
+
+		List<List<String>> levels = new ArrayList<>();
+
+		while (!remaining.isEmpty()) {
+			List<String> level = new ArrayList<>();
+			List<String> levelKeys = new ArrayList<>();
+
+			for (Map.Entry<String, String> entry : remaining.entrySet()) {
+				if (isReady(entry.getKey(), remaining.keySet())) {
+					level.add(entry.getValue());
+					levelKeys.add(entry.getKey());
+				}
+			}
+
+			if (level.isEmpty()) {
+				throw new CyclicTablesDependencyException(schema, new HashSet<>(remaining.values()));
+			}
+
+			for (String key : levelKeys) {
+				remaining.remove(key);
+			}
+			levels.add(level);
+		}
+
+		return levels;
+	}
+
+	/**
+	 * Checking that none of the tables referenced by a table remains to load.
+	 *
+	 * @param key
+	 * @param remaining
+	 * @return boolean
+	 */
+	private boolean isReady(String key, Set<String> remaining) {
+		for (String parent : getParents(key)) {
+			if (!parent.equals(key) && remaining.contains(parent)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Selecting the tables changed or referencing (directly or not) a changed
+	 * table: the tables to reload after the changes.
+	 *
+	 * @param tableNames
+	 * @param changedTables
+	 * @return String[] the selected tableNames, in the given order
+	 */
+	public String[] getDependentsClosure(String[] tableNames, Collection<String> changedTables) {
+		Set<String> closure = new HashSet<>();
+		for (String changedTable : changedTables) {
+			closure.add(normalize(changedTable));
+		}
+
+		boolean added = true;
+		while (added) {
+			added = false;
+			for (Map.Entry<String, Set<String>> entry : dependsOn.entrySet()) {
+				if (!closure.contains(entry.getKey()) && !Collections.disjoint(entry.getValue(), closure)) {
+					closure.add(entry.getKey());
+					added = true;
+				}
+			}
+		}
+
+		List<String> selected = new ArrayList<>();
+		for (String tableName : tableNames) {
+			if (closure.contains(normalize(tableName))) {
+				selected.add(tableName);
+			}
+		}
+		return selected.toArray(new String[selected.size()]);
+	}
+
+	/**
+	 * @return the schema
+	 */
+	public String getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @return the number of tables of the graph
+	 */
+	public int size() {
+		return dependsOn.size();
+	}
+}
@@ -0,0 +1,203 @@
+package org.testing.toolbox.database;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+
+/**
+ * Differences between the rows of a database table and an expected table,
+ * regardless of their order.
+ *
+ * The expected rows are counted by value (see ValueNormalizer), then the
+ * table is read once with a streaming cursor: only the expected rows and the
+ * reported differences stay in memory.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class TableDiff {
+	private static final int DEFAULT_FETCH_SIZE = 1000;
+
+	private final IDatabaseConnection connection;
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+
+	private final List<String> missing = new ArrayList<>();
+	private final List<String> unexpected = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param connection
+	 */
+	public TableDiff(IDatabaseConnection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Comparing a table with the expected rows.
+	 *
+	 * @param tableName
+	 * @param expected
+	 * @param columns
+	 * @param maxDifferences
+	 *            number of missing and unexpected rows kept (each)
+	 * @return boolean true if the rows are the same
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	public boolean compare(String tableName, ITable expected, List<String> columns, int maxDifferences)
+			throws SQLException, DataSetException {
+		missing.clear();
+		unexpected.clear();
+
+		ITableMetaData metaData = MetaDataUtils.getTableMetaData(connection, tableName);
+		DataType[] types = new DataType[columns.size()];
+		for (int j = 0; j < types.length; j++) {
+			types[j] = MetaDataUtils.getDataType(metaData, columns.get(j));
+		}
+
+		Map<List<Object>, Integer> expectedRows = new HashMap<>();
+		for (int i = 0; i < expected.getRowCount(); i++) {
+			Object[] row = new Object[types.length];
+			for (int j = 0; j < types.length; j++) {
+				row[j] = toExpectedValue(expected.getValue(i, columns.get(j)), types[j]);
+			}
+			expectedRows.merge(Arrays.asList(row), 1, Integer::sum);
+		}
+
+		boolean same = true;
+		String select = columns.isEmpty() ? "1" : String.join(", ", columns);
+		Connection con = connection.getConnection();
+
+		// some drivers (PostgreSQL) only use a cursor inside a transaction
+		boolean autoCommit = con.getAutoCommit();
+		if (autoCommit) {
+			con.setAutoCommit(false);
+		}
+
+		try (Statement statement = con.createStatement()) {
+			statement.setFetchSize(fetchSize);
+			try (ResultSet rs = statement.executeQuery("SELECT " + select + " FROM " + metaData.getTableName())) {
+				while (rs.next()) {
+					Object[] row = new Object[types.length];
+					for (int j = 0; j < types.length; j++) {
+						row[j] = ValueNormalizer.normalize(types[j].getSqlValue(j + 1, rs));
+					}
+
+					List<Object> key = Arrays.asList(row);
+					Integer count = expectedRows.get(key);
+					if (null == count) {
+						same = false;
+						if (unexpected.size() < maxDifferences) {
+							unexpected.add(describe(columns, key));
+						}
+					} else if (1 == count) {
+						expectedRows.remove(key);
+					} else {
+						expectedRows.put(key, count - 1);
+					}
+				}
+			}
+		} finally {
+			if (autoCommit) {
+				con.setAutoCommit(true);
+			}
+		}
+
+		for (Map.Entry<List<Object>, Integer> entry : expectedRows.entrySet()) {
+			same = false;
+			for (int i = 0; i < entry.getValue() && missing.size() < maxDifferences; i++) {
+				missing.add(describe(columns, entry.getKey()));
+			}
+		}
+		return same;
+	}
+
+	/**
+	 * Converting an expected value with the data type of its column (kept as
+	 * is if it can't be converted: no row will match).
+	 *
+	 * @param value
+	 * @param type
+	 * @return Object
+	 */
+	private static Object toExpectedValue(Object value, DataType type) {
+		if (ITable.NO_VALUE == value) {
+			return null;
+		}
+
+		try {
+			return ValueNormalizer.normalize(type.typeCast(value));
+		} catch (TypeCastException e) {
+			return value;
+		}
+	}
+
+	/**
+	 * Describing a row for the assertion messages.
+	 *
+	 * @param columns
+	 * @param row
+	 * @return String {column=value, ...}
+	 */
+	static String describe(List<String> columns, List<Object> row) {
+		StringBuilder builder = new StringBuilder("{");
+		for (int j = 0; j < row.size(); j++) {
+			builder.append(j > 0 ? ", " : "").append(columns.get(j)).append('=').append(display(row.get(j)));
+		}
+		return builder.append('}').toString();
+	}
+
+	/**
+	 * @param value
+	 *            normalized value (see ValueNormalizer)
+	 * @return Object the value to display in the assertion messages
+	 */
+	static Object display(Object value) {
+		if (value instanceof BigDecimal) {
+			return ((BigDecimal) value).toPlainString();
+		}
+		if (value instanceof ByteBuffer) {
+			return Base64.getEncoder().encodeToString(((ByteBuffer) value).array());
+		}
+		return value;
+	}
+
+	/**
+	 * @return the expected rows which aren't in the table
+	 */
+	public List<String> getMissing() {
+		return missing;
+	}
+
+	/**
+	 * @return the rows of the table which aren't expected
+	 */
+	public List<String> getUnexpected() {
+		return unexpected;
+	}
+
+	/**
+	 * @param fetchSize
+	 *            the number of rows fetched per round trip
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+}
@@ -0,0 +1,239 @@
+package org.testing.toolbox.database;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testing.toolbox.jdbc.DelegatingDataSource;
+
+/**
+ * JVM-wide cache of the table metadata by DataSource, schema and data type
+ * factory (see CachedMetaDataConnection).
+ *
+ * The wrappers of a DataSource (see DelegatingDataSource) share the metadata
+ * of their target. When the testing.toolbox.metadata.dir property is set, the
+ * metadata of each schema is written into this directory when the JVM exits
+ * and read again by the next runs while the columns of the schema are
+ * unchanged (see SchemaMetaData).
+ *
+ * The metadata must be invalidated when the tables are changed (DDL).
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class TableMetaDataCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(TableMetaDataCache.class);
+
+	public static final String DIR_PROPERTY = "testing.toolbox.metadata.dir";
+	private static final String EXTENSION = ".metadata";
+	private static final String DEFAULT_SCHEMA = "";
+
+	private static final Map<DataSource, Map<String, SchemaMetaData>> SCHEMAS = Collections
+			.synchronizedMap(new WeakHashMap<DataSource, Map<String, SchemaMetaData>>());
+
+	// persisted schemas, written when the JVM exits
+	private static final List<SchemaMetaData> PERSISTED = new ArrayList<>();
+
+	static {
+		if (null != System.getProperty(DIR_PROPERTY)) {
+			Runtime.getRuntime().addShutdownHook(new Thread(TableMetaDataCache::writeAll, "testing-toolbox-metadata"));
+		}
+	}
+
+	/**
+	 * Getting the metadata of a schema (read from the persisted form on the
+	 * first call, if any).
+	 *
+	 * @param dataSource
+	 * @param con
+	 *            connection used to compute the fingerprint of the schema
+	 * @param schema
+	 * @param dataTypeFactory
+	 * @return SchemaMetaData
+	 * @throws SQLException
+	 */
+	public static SchemaMetaData getSchema(DataSource dataSource, Connection con, String schema,
+			IDataTypeFactory dataTypeFactory) throws SQLException {
+		Map<String, SchemaMetaData> schemas = getSchemas(dataSource);
+		String key = getKey(schema) + "|" + dataTypeFactory.getClass().getName();
+
+		SchemaMetaData schemaMetaData = schemas.get(key);
+		if (null == schemaMetaData) {
+			schemaMetaData = new SchemaMetaData(dataTypeFactory, getFile(con, schema, dataTypeFactory));
+			schemas.put(key, schemaMetaData);
+			if (null != schemaMetaData.getFile()) {
+				synchronized (PERSISTED) {
+					PERSISTED.add(schemaMetaData);
+				}
+			}
+		}
+
+		return schemaMetaData;
+	}
+
+	/**
+	 * Checking if the metadata of a schema is cached (whatever the data type
+	 * factory).
+	 *
+	 * @param dataSource
+	 * @param schema
+	 * @return boolean
+	 */
+	public static boolean contains(DataSource dataSource, String schema) {
+		String prefix = getKey(schema) + "|";
+		for (String key : getSchemas(dataSource).keySet()) {
+			if (key.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Getting the persisted form of a schema.
+	 *
+	 * @param con
+	 * @param schema
+	 * @param dataTypeFactory
+	 * @return File or null if the metadata isn't persisted
+	 * @throws SQLException
+	 */
+	private static File getFile(Connection con, String schema, IDataTypeFactory dataTypeFactory)
+			throws SQLException {
+		String dir = System.getProperty(DIR_PROPERTY);
+		if (null == dir) {
+			return null;
+		}
+
+		String fingerprint = SchemaMetaData.fingerprint(con, schema);
+		if (null == fingerprint) {
+			return null;
+		}
+
+		String name = getKey(schema) + "-" + dataTypeFactory.getClass().getSimpleName() + "-" + fingerprint;
+		return new File(dir, name.replaceAll("[^A-Za-z0-9_.-]", "_") + EXTENSION);
+	}
+
+	/**
+	 * Getting the schemas of a DataSource (the one of its innermost target).
+	 *
+	 * @param dataSource
+	 * @return Map<String, SchemaMetaData>
+	 */
+	private static Map<String, SchemaMetaData> getSchemas(DataSource dataSource) {
+		DataSource target = dataSource;
+		while (target instanceof DelegatingDataSource) {
+			target = ((DelegatingDataSource) target).getTargetDataSource();
+		}
+
+		synchronized (SCHEMAS) {
+			Map<String, SchemaMetaData> schemas = SCHEMAS.get(target);
+			if (null == schemas) {
+				schemas = new ConcurrentHashMap<>();
+				SCHEMAS.put(target, schemas);
+			}
+			return schemas;
+		}
+	}
+
+	/**
+	 * Getting the key of a schema.
+	 *
+	 * @param schema
+	 * @return String
+	 */
+	private static String getKey(String schema) {
+		return null == schema ? DEFAULT_SCHEMA : schema;
+	}
+
+	/**
+	 * Invalidating the metadata of a schema (and deleting its persisted form).
+	 *
+	 * @param dataSource
+	 * @param schema
+	 */
+	public static void invalidate(DataSource dataSource, String schema) {
+		String prefix = getKey(schema) + "|";
+		Map<String, SchemaMetaData> schemas = getSchemas(dataSource);
+		for (String key : new ArrayList<>(schemas.keySet())) {
+			if (key.startsWith(prefix)) {
+				forget(schemas.remove(key));
+			}
+		}
+	}
+
+	/**
+	 * Invalidating all the metadata of a DataSource.
+	 *
+	 * @param dataSource
+	 */
+	public static void invalidate(DataSource dataSource) {
+		for (SchemaMetaData schemaMetaData : getSchemas(dataSource).values()) {
+			forget(schemaMetaData);
+		}
+		getSchemas(dataSource).clear();
+	}
+
+	/**
+	 * Invalidating all the metadata (the persisted forms are kept).
+	 */
+	public static void clear() {
+		SCHEMAS.clear();
+		synchronized (PERSISTED) {
+			PERSISTED.clear();
+		}
+	}
+
+	/**
+	 * Forgetting invalidated metadata.
+	 *
+	 * @param schemaMetaData
+	 */
+	private static void forget(SchemaMetaData schemaMetaData) {
+		if (null == schemaMetaData || null == schemaMetaData.getFile()) {
+			return;
+		}
+
+		synchronized (PERSISTED) {
+			PERSISTED.remove(schemaMetaData);
+		}
+		if (schemaMetaData.getFile().exists() && !schemaMetaData.getFile().delete()) {
+			LOGGER.warn("Can't delete {}", schemaMetaData.getFile());
+		}
+	}
+
+	/**
+	 * Writing the persisted forms of the modified schemas.
+	 */
+	public static void writeAll() {
+		List<SchemaMetaData> persisted;
+		synchronized (PERSISTED) {
+			persisted = new ArrayList<>(PERSISTED);
+		}
+
+		for (SchemaMetaData schemaMetaData : persisted) {
+			try {
+				schemaMetaData.write();
+			} catch (Exception e) {
+				LOGGER.warn("Can't write " + schemaMetaData.getFile(), e);
+			}
+		}
+	}
+
+	/**
+	 * Static class : private constructor.
+	 */
+	private TableMetaDataCache() {
+	}
+}
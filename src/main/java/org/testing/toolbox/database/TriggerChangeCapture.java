@@ -0,0 +1,157 @@
+package org.testing.toolbox.database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+
+/**
+ * PostgreSQL capture: a row-level trigger on each table writes the key of the
+ * changed rows into a change log table, so reading the delta costs the number
+ * of changes, not the size of the tables.
+ *
+ * The change log table (tt_change_log) and the trigger functions are created
+ * in a dedicated schema (tt_capture_<schema of the connection>), so nothing is
+ * added to the tested schema; the triggers and this schema are dropped by
+ * stop. The log table isn't temporary since the triggers also log the changes
+ * made by the other connections (code under test). The rows removed by
+ * TRUNCATE aren't captured.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class TriggerChangeCapture extends ChangeCapture {
+	public static final String LOG_TABLE = "tt_change_log";
+	public static final String TRIGGER = "tt_change_capture";
+	public static final String SCHEMA_PREFIX = "tt_capture_";
+
+	private static final String CAPTURE_FUNCTION = "tt_capture_change";
+	private static final String KEY_FUNCTION = "tt_row_key";
+
+	private final String captureSchema;
+	private final String prefix;
+
+	/**
+	 * Constructor (see start).
+	 *
+	 * @param connection
+	 * @param tableNames
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	private TriggerChangeCapture(IDatabaseConnection connection, String[] tableNames)
+			throws SQLException, DataSetException {
+		super(connection, tableNames);
+		this.captureSchema = SchemaCopySnapshot
+				.toSchemaName(SCHEMA_PREFIX + (null == connection.getSchema() ? "" : connection.getSchema()));
+		this.prefix = captureSchema + ".";
+	}
+
+	/**
+	 * Creating the capture schema (dropped first if a previous capture wasn't
+	 * stopped), its change log table and functions, and the triggers of tables.
+	 *
+	 * @param connection
+	 * @param tableNames
+	 * @return TriggerChangeCapture
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	public static TriggerChangeCapture start(IDatabaseConnection connection, String[] tableNames)
+			throws SQLException, DataSetException {
+		TriggerChangeCapture capture = new TriggerChangeCapture(connection, tableNames);
+		String prefix = capture.prefix;
+
+		List<String> queries = new ArrayList<>();
+		queries.add("DROP SCHEMA IF EXISTS " + capture.captureSchema + " CASCADE");
+		queries.add("CREATE SCHEMA " + capture.captureSchema);
+		queries.add("CREATE TABLE " + prefix + LOG_TABLE
+				+ " (id BIGSERIAL PRIMARY KEY, table_name TEXT NOT NULL, operation CHAR(1) NOT NULL, row_key TEXT NOT NULL)");
+
+		// key of a row: its primary key values (arguments after the table name), or the whole row
+		queries.add("CREATE OR REPLACE FUNCTION " + prefix + KEY_FUNCTION + "(r JSONB, args TEXT[]) RETURNS TEXT AS $$ "
+				+ "SELECT CASE WHEN array_upper(args, 1) > array_lower(args, 1) "
+				+ "THEN (SELECT string_agg(COALESCE(r ->> args[i], 'null'), ',' ORDER BY i) "
+				+ "FROM generate_series(array_lower(args, 1) + 1, array_upper(args, 1)) i) "
+				+ "ELSE r::TEXT END $$ LANGUAGE sql IMMUTABLE");
+
+		// an update changing the key is logged as a deletion and an insertion
+		queries.add("CREATE OR REPLACE FUNCTION " + prefix + CAPTURE_FUNCTION + "() RETURNS TRIGGER AS $$ "
+				+ "DECLARE old_key TEXT; new_key TEXT; "
+				+ "BEGIN "
+				+ "IF TG_OP <> 'INSERT' THEN old_key := " + prefix + KEY_FUNCTION + "(to_jsonb(OLD), TG_ARGV); END IF; "
+				+ "IF TG_OP <> 'DELETE' THEN new_key := " + prefix + KEY_FUNCTION + "(to_jsonb(NEW), TG_ARGV); END IF; "
+				+ "IF TG_OP = 'UPDATE' AND old_key = new_key THEN "
+				+ "INSERT INTO " + prefix + LOG_TABLE + " (table_name, operation, row_key) VALUES (TG_ARGV[0], 'U', new_key); "
+				+ "ELSE "
+				+ "IF old_key IS NOT NULL THEN "
+				+ "INSERT INTO " + prefix + LOG_TABLE + " (table_name, operation, row_key) VALUES (TG_ARGV[0], 'D', old_key); "
+				+ "END IF; "
+				+ "IF new_key IS NOT NULL THEN "
+				+ "INSERT INTO " + prefix + LOG_TABLE + " (table_name, operation, row_key) VALUES (TG_ARGV[0], 'I', new_key); "
+				+ "END IF; "
+				+ "END IF; "
+				+ "RETURN NULL; "
+				+ "END $$ LANGUAGE plpgsql");
+
+		String[] names = capture.getTableNames();
+		for (int i = 0; i < names.length; i++) {
+			StringBuilder args = new StringBuilder(literal(names[i]));
+			for (String column : capture.getPrimaryKey(i)) {
+				args.append(", ").append(literal(column));
+			}
+
+			queries.add("DROP TRIGGER IF EXISTS " + TRIGGER + " ON " + capture.getDbTableName(i));
+			queries.add("CREATE TRIGGER " + TRIGGER + " AFTER INSERT OR UPDATE OR DELETE ON "
+					+ capture.getDbTableName(i) + " FOR EACH ROW EXECUTE PROCEDURE " + prefix + CAPTURE_FUNCTION + "("
+					+ args + ")");
+		}
+
+		SchemaCopySnapshot.execute(connection.getConnection(), queries);
+		return capture;
+	}
+
+	@Override
+	public Map<String, TableDelta> getDelta(IDatabaseConnection connection) throws SQLException {
+		Map<String, TableDelta> deltas = new LinkedHashMap<>();
+		for (String tableName : getTableNames()) {
+			deltas.put(tableName, new TableDelta(tableName));
+		}
+
+		try (Statement statement = connection.getConnection().createStatement();
+				ResultSet rs = statement.executeQuery("SELECT table_name, operation, row_key FROM " + prefix
+						+ LOG_TABLE + " ORDER BY id")) {
+			while (rs.next()) {
+				TableDelta delta = deltas.get(rs.getString(1));
+				if (null != delta) {
+					delta.add(rs.getString(2).charAt(0), rs.getString(3));
+				}
+			}
+		}
+		return deltas;
+	}
+
+	@Override
+	public void stop(IDatabaseConnection connection) throws SQLException {
+		List<String> queries = new ArrayList<>();
+		for (int i = 0; i < getTableNames().length; i++) {
+			queries.add("DROP TRIGGER IF EXISTS " + TRIGGER + " ON " + getDbTableName(i));
+		}
+		queries.add("DROP SCHEMA IF EXISTS " + captureSchema + " CASCADE");
+		SchemaCopySnapshot.execute(connection.getConnection(), queries);
+	}
+
+	/**
+	 * @param value
+	 * @return String the value as a SQL string literal
+	 */
+	private static String literal(String value) {
+		return "'" + value.replace("'", "''") + "'";
+	}
+}
@@ -0,0 +1,60 @@
+package org.testing.toolbox.database;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+/**
+ * Normalizing database values so that equal values have equal hash keys.
+ *
+ * Numbers are compared by value (1, 1.0 and 1.00 are equal) and byte arrays
+ * by content.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class ValueNormalizer {
+
+	/**
+	 * Normalizing a value read from the database or converted by a dbunit data
+	 * type.
+	 *
+	 * @param value
+	 * @return Object
+	 */
+	public static Object normalize(Object value) {
+		if (value instanceof BigDecimal) {
+			return normalize((BigDecimal) value);
+		}
+
+		if (value instanceof Number) {
+			try {
+				return normalize(new BigDecimal(value.toString()));
+			} catch (NumberFormatException e) {
+				// NaN or infinity
+				return value.toString();
+			}
+		}
+
+		if (value instanceof byte[]) {
+			return ByteBuffer.wrap((byte[]) value);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Normalizing a decimal value.
+	 *
+	 * @param value
+	 * @return BigDecimal
+	 */
+	private static BigDecimal normalize(BigDecimal value) {
+		return 0 == value.signum() ? BigDecimal.ZERO : value.stripTrailingZeros();
+	}
+
+	/**
+	 * Static class : private constructor.
+	 */
+	private ValueNormalizer() {
+	}
+}
@@ -0,0 +1,294 @@
+package org.testing.toolbox.database;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+
+/**
+ * Schemas of the parallel workers, cloned from a base schema once per JVM.
+ *
+ * The clone drops and recreates the worker schema, creates its tables, copies
+ * the rows of the base tables then adds the foreign keys. On PostgreSQL the
+ * tables are created with "LIKE ... INCLUDING ALL" (defaults, constraints,
+ * indexes); on the other databases the columns are copied, then the NOT NULL
+ * constraints, primary keys and unique indexes are added from the JDBC
+ * metadata with standard SQL (the defaults, check constraints and identity
+ * columns aren't copied). The clone fails on the databases which don't
+ * support these statements.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class WorkerSchemas {
+	private static final Map<DataSource, Set<String>> PREPARED = Collections
+			.synchronizedMap(new WeakHashMap<DataSource, Set<String>>());
+
+	/**
+	 * Cloning the base schema into the worker schema if it isn't already done.
+	 *
+	 * @param dataSource
+	 * @param baseConnection
+	 *            connection to the base schema
+	 * @param workerSchema
+	 * @param postgresql
+	 * @throws SQLException
+	 * @throws DatabaseUnitException
+	 */
+	public static void prepare(DataSource dataSource, IDatabaseConnection baseConnection, String workerSchema,
+			boolean postgresql) throws SQLException, DatabaseUnitException {
+		Set<String> prepared = getPrepared(dataSource);
+		if (prepared.contains(workerSchema)) {
+			return;
+		}
+
+		clone(baseConnection, workerSchema, postgresql);
+		prepared.add(workerSchema);
+	}
+
+	/**
+	 * Checking if a worker schema has already been cloned.
+	 *
+	 * @param dataSource
+	 * @param workerSchema
+	 * @return boolean
+	 */
+	public static boolean isPrepared(DataSource dataSource, String workerSchema) {
+		return getPrepared(dataSource).contains(workerSchema);
+	}
+
+	/**
+	 * Forgetting the worker schemas of a DataSource (they will be cloned again).
+	 *
+	 * @param dataSource
+	 */
+	public static void invalidate(DataSource dataSource) {
+		PREPARED.remove(dataSource);
+	}
+
+	/**
+	 * Getting the prepared schemas of a DataSource.
+	 *
+	 * @param dataSource
+	 * @return Set<String>
+	 */
+	private static Set<String> getPrepared(DataSource dataSource) {
+		synchronized (PREPARED) {
+			Set<String> prepared = PREPARED.get(dataSource);
+			if (null == prepared) {
+				prepared = ConcurrentHashMap.newKeySet();
+				PREPARED.put(dataSource, prepared);
+			}
+			return prepared;
+		}
+	}
+
+	/**
+	 * Cloning the base schema.
+	 *
+	 * @param baseConnection
+	 * @param workerSchema
+	 * @param postgresql
+	 * @throws SQLException
+	 * @throws DatabaseUnitException
+	 */
+	public static void clone(IDatabaseConnection baseConnection, String workerSchema, boolean postgresql)
+			throws SQLException, DatabaseUnitException {
+		String baseSchema = baseConnection.getSchema();
+		Connection con = baseConnection.getConnection();
+		String[] tableNames = TableDependencyGraph.build(baseConnection)
+				.sort(baseConnection.createDataSet().getTableNames());
+
+		List<String> queries = new ArrayList<>();
+		queries.add("DROP SCHEMA IF EXISTS " + workerSchema + " CASCADE");
+		queries.add("CREATE SCHEMA " + workerSchema);
+
+		for (String tableName : tableNames) {
+			String table = unqualify(tableName);
+			queries.add(postgresql
+					? "CREATE TABLE " + workerSchema + "." + table + " (LIKE " + baseSchema + "." + table
+							+ " INCLUDING ALL)"
+					: "CREATE TABLE " + workerSchema + "." + table + " AS SELECT * FROM " + baseSchema + "." + table
+							+ " WHERE 1 = 0");
+		}
+
+		for (String tableName : tableNames) {
+			String table = unqualify(tableName);
+			queries.add("INSERT INTO " + workerSchema + "." + table + " SELECT * FROM " + baseSchema + "." + table);
+		}
+
+		if (!postgresql) {
+			for (String tableName : tableNames) {
+				queries.addAll(getKeys(con, baseSchema, unqualify(tableName), workerSchema));
+			}
+		}
+
+		for (String tableName : tableNames) {
+			queries.addAll(getForeignKeys(con, baseSchema, unqualify(tableName), workerSchema));
+		}
+
+		boolean autoCommit = con.getAutoCommit();
+		if (autoCommit) {
+			con.setAutoCommit(false);
+		}
+
+		try (Statement statement = con.createStatement()) {
+			for (String query : queries) {
+				statement.addBatch(query);
+			}
+			statement.executeBatch();
+
+			if (autoCommit) {
+				con.commit();
+			}
+		} catch (SQLException e) {
+			if (autoCommit) {
+				con.rollback();
+			}
+			throw new SQLException("Can't clone the schema " + baseSchema + " into " + workerSchema, e);
+		} finally {
+			if (autoCommit) {
+				con.setAutoCommit(true);
+			}
+		}
+	}
+
+	/**
+	 * Building the statements recreating the NOT NULL constraints, the primary
+	 * key and the unique indexes of a base table in the worker schema.
+	 *
+	 * @param con
+	 * @param baseSchema
+	 * @param table
+	 * @param workerSchema
+	 * @return List<String>
+	 * @throws SQLException
+	 */
+	private static List<String> getKeys(Connection con, String baseSchema, String table, String workerSchema)
+			throws SQLException {
+		DatabaseMetaData metaData = con.getMetaData();
+		List<String> queries = new ArrayList<>();
+
+		try (ResultSet rs = metaData.getColumns(con.getCatalog(), baseSchema, table, "%")) {
+			while (rs.next()) {
+				if (DatabaseMetaData.columnNoNulls == rs.getInt("NULLABLE")) {
+					queries.add("ALTER TABLE " + workerSchema + "." + table + " ALTER COLUMN "
+							+ rs.getString("COLUMN_NAME") + " SET NOT NULL");
+				}
+			}
+		}
+
+		// position -> column
+		Map<Short, String> primaryKey = new TreeMap<>();
+		try (ResultSet rs = metaData.getPrimaryKeys(con.getCatalog(), baseSchema, table)) {
+			while (rs.next()) {
+				primaryKey.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+			}
+		}
+		String primaryKeyColumns = String.join(", ", primaryKey.values());
+		if (!primaryKey.isEmpty()) {
+			queries.add("ALTER TABLE " + workerSchema + "." + table + " ADD PRIMARY KEY (" + primaryKeyColumns + ")");
+		}
+
+		// index name -> position -> column
+		Map<String, Map<Short, String>> indexes = new LinkedHashMap<>();
+		try (ResultSet rs = metaData.getIndexInfo(con.getCatalog(), baseSchema, table, true, true)) {
+			while (rs.next()) {
+				String name = rs.getString("INDEX_NAME");
+				if (null != name && DatabaseMetaData.tableIndexStatistic != rs.getShort("TYPE")) {
+					indexes.computeIfAbsent(name, n -> new TreeMap<>()).put(rs.getShort("ORDINAL_POSITION"),
+							rs.getString("COLUMN_NAME"));
+				}
+			}
+		}
+		for (Map.Entry<String, Map<Short, String>> index : indexes.entrySet()) {
+			String columns = String.join(", ", index.getValue().values());
+			// the index of the primary key is created with it
+			if (!columns.equals(primaryKeyColumns)) {
+				queries.add("CREATE UNIQUE INDEX " + index.getKey() + " ON " + workerSchema + "." + table + " ("
+						+ columns + ")");
+			}
+		}
+		return queries;
+	}
+
+	/**
+	 * Building the statements recreating the foreign keys of a base table in
+	 * the worker schema (only the keys referencing the base schema).
+	 *
+	 * @param con
+	 * @param baseSchema
+	 * @param table
+	 * @param workerSchema
+	 * @return List<String>
+	 * @throws SQLException
+	 */
+	private static List<String> getForeignKeys(Connection con, String baseSchema, String table, String workerSchema)
+			throws SQLException {
+		// foreign key name -> [columns, referenced table, referenced columns]
+		Map<String, StringBuilder[]> keys = new LinkedHashMap<>();
+		DatabaseMetaData metaData = con.getMetaData();
+
+		try (ResultSet rs = metaData.getImportedKeys(con.getCatalog(), baseSchema, table)) {
+			while (rs.next()) {
+				String pkSchema = rs.getString("PKTABLE_SCHEM");
+				if (null != pkSchema && !pkSchema.equalsIgnoreCase(baseSchema)) {
+					continue;
+				}
+
+				String name = rs.getString("FK_NAME");
+				StringBuilder[] key = keys.get(name);
+				if (null == key) {
+					key = new StringBuilder[] { new StringBuilder(), new StringBuilder(rs.getString("PKTABLE_NAME")),
+							new StringBuilder() };
+					keys.put(name, key);
+				} else {
+					key[0].append(", ");
+					key[2].append(", ");
+				}
+				key[0].append(rs.getString("FKCOLUMN_NAME"));
+				key[2].append(rs.getString("PKCOLUMN_NAME"));
+			}
+		}
+
+		List<String> queries = new ArrayList<>();
+		for (Map.Entry<String, StringBuilder[]> entry : keys.entrySet()) {
+			StringBuilder[] key = entry.getValue();
+			queries.add("ALTER TABLE " + workerSchema + "." + table + " ADD CONSTRAINT " + entry.getKey()
+					+ " FOREIGN KEY (" + key[0] + ") REFERENCES " + workerSchema + "." + key[1] + " (" + key[2] + ")");
+		}
+		return queries;
+	}
+
+	/**
+	 * Removing the schema prefix of a table name.
+	 *
+	 * @param tableName
+	 * @return String
+	 */
+	private static String unqualify(String tableName) {
+		int idx = tableName.lastIndexOf('.');
+		return idx < 0 ? tableName : tableName.substring(idx + 1);
+	}
+
+	/**
+	 * Static class : private constructor.
+	 */
+	private WorkerSchemas() {
+	}
+}
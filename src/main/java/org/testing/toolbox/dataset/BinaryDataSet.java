@@ -0,0 +1,450 @@
+package org.testing.toolbox.dataset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.AbstractTable;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableIterator;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.DataTypeException;
+import org.dbunit.dataset.xml.FlatXmlDataSetBuilder;
+import org.testing.toolbox.utils.FileUtils;
+
+/**
+ * Precompiled dataset (".bds" file) read through a memory-mapped buffer.
+ *
+ * Layout (big-endian): magic, version, the size and SHA-256 digest of the
+ * source file, the dictionary of the distinct strings (table names, column
+ * names and values), then for each table its name, row count, columns (name,
+ * SQL type) and its values by column, each value being an index in the
+ * dictionary (-1 for null, -2 for no value).
+ *
+ * The strings are decoded on first use, so opening a dataset only reads the
+ * headers. The ".bds" file of "my_ds.xml" is written into the
+ * testing.toolbox.datasets.dir directory (target/testing-toolbox/datasets by
+ * default, see getBinaryFile); it is up to date while the size and the digest
+ * of the source file are unchanged, whatever the modification dates.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class BinaryDataSet extends AbstractDataSet {
+	public static final String EXTENSION = ".bds";
+	public static final String DIR_PROPERTY = "testing.toolbox.datasets.dir";
+
+	private static final String DEFAULT_DIR = "target/testing-toolbox/datasets";
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+	private static final int MAGIC = 0x54544244;
+	private static final int VERSION = 2;
+	private static final int UNKNOWN_SIZE = -1;
+
+	// canonical path -> "length/lastModified/digest"
+	private static final Map<String, String> SOURCE_DIGESTS = new ConcurrentHashMap<>();
+	private static final int NULL_INDEX = -1;
+	private static final int NO_VALUE_INDEX = -2;
+
+	private final ByteBuffer buffer;
+	private final int[] stringOffsets;
+	private final String[] strings;
+	private final ITable[] tables;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param buffer
+	 * @throws DataSetException
+	 *             if the buffer isn't a valid binary dataset
+	 */
+	private BinaryDataSet(ByteBuffer buffer) throws DataSetException {
+		super(false);
+		this.buffer = buffer;
+
+		ByteBuffer header = buffer.duplicate();
+		if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+			throw new DataSetException("Not a binary dataset (version " + VERSION + ")");
+		}
+
+		// source size and digest
+		header.getLong();
+		header.position(header.position() + 4 + header.getInt());
+
+		int nbStrings = header.getInt();
+		stringOffsets = new int[nbStrings];
+		strings = new String[nbStrings];
+		for (int i = 0; i < nbStrings; i++) {
+			stringOffsets[i] = header.position();
+			header.position(header.position() + 4 + header.getInt());
+		}
+
+		tables = new ITable[header.getInt()];
+		for (int i = 0; i < tables.length; i++) {
+			String tableName = getString(header.getInt());
+			int rowCount = header.getInt();
+			Column[] columns = new Column[header.getInt()];
+			for (int j = 0; j < columns.length; j++) {
+				columns[j] = new Column(getString(header.getInt()), toDataType(header.getInt()));
+			}
+
+			tables[i] = new BinaryTable(new DefaultTableMetaData(tableName, columns), rowCount, header.position());
+			header.position(header.position() + 4 * columns.length * rowCount);
+		}
+	}
+
+	/**
+	 * Opening a binary dataset.
+	 *
+	 * @param file
+	 * @return BinaryDataSet
+	 * @throws DataSetException
+	 * @throws IOException
+	 */
+	public static BinaryDataSet open(File file) throws DataSetException, IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new BinaryDataSet(buffer);
+		}
+	}
+
+	/**
+	 * Getting the binary file of a flat XML dataset: its name followed by the
+	 * hash code of its canonical path, in the testing.toolbox.datasets.dir
+	 * directory.
+	 *
+	 * @param filename
+	 * @return File
+	 * @throws IOException
+	 */
+	public static File getBinaryFile(String filename) throws IOException {
+		File file = new File(filename);
+		return new File(System.getProperty(DIR_PROPERTY, DEFAULT_DIR),
+				file.getName() + "." + Integer.toHexString(file.getCanonicalPath().hashCode()) + EXTENSION);
+	}
+
+	/**
+	 * Checking if the binary file of a flat XML dataset is up to date: it has
+	 * been compiled from a file of the same size and digest.
+	 *
+	 * @param filename
+	 * @return boolean
+	 * @throws IOException
+	 */
+	public static boolean isUpToDate(String filename) throws IOException {
+		File binaryFile = getBinaryFile(filename);
+		if (!binaryFile.isFile()) {
+			return false;
+		}
+
+		File source = new File(filename);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(binaryFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != source.length()) {
+				return false;
+			}
+
+			byte[] digest = new byte[in.readInt()];
+			in.readFully(digest);
+			return new String(digest, StandardCharsets.UTF_8).equals(getSourceDigest(source));
+		} catch (EOFException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Getting the digest of a source file (only recomputed when its size or
+	 * modification date change).
+	 *
+	 * @param source
+	 * @return String
+	 * @throws IOException
+	 */
+	private static String getSourceDigest(File source) throws IOException {
+		String path = source.getCanonicalPath();
+		String prefix = source.length() + "/" + source.lastModified() + "/";
+
+		String cached = SOURCE_DIGESTS.get(path);
+		if (null != cached && cached.startsWith(prefix)) {
+			return cached.substring(prefix.length());
+		}
+
+		String digest = FileUtils.digest(path, DIGEST_ALGORITHM);
+		SOURCE_DIGESTS.put(path, prefix + digest);
+		return digest;
+	}
+
+	/**
+	 * Compiling a flat XML dataset (gzipped if it ends with ".gz") into its
+	 * binary file.
+	 *
+	 * @param filename
+	 * @return File the binary file
+	 * @throws DataSetException
+	 * @throws IOException
+	 */
+	public static File compile(String filename) throws DataSetException, IOException {
+		File source = new File(filename);
+		long sourceLength = source.length();
+		String sourceDigest = getSourceDigest(source);
+
+		FlatXmlDataSetBuilder builder = new FlatXmlDataSetBuilder();
+		builder.setCaseSensitiveTableNames(false);
+
+		IDataSet dataSet;
+		if (filename.endsWith(StreamingDataSetExporter.GZIP_EXTENSION)) {
+			try (InputStream in = new GZIPInputStream(new FileInputStream(filename))) {
+				dataSet = builder.build(in);
+			}
+		} else {
+			dataSet = builder.build(new File(filename));
+		}
+
+		File binaryFile = getBinaryFile(filename);
+		write(dataSet, binaryFile, sourceLength, sourceDigest);
+		return binaryFile;
+	}
+
+	/**
+	 * Writing a dataset into a binary file (never up to date for any source
+	 * file).
+	 *
+	 * @param dataSet
+	 * @param file
+	 * @throws DataSetException
+	 * @throws IOException
+	 */
+	public static void write(IDataSet dataSet, File file) throws DataSetException, IOException {
+		write(dataSet, file, UNKNOWN_SIZE, "");
+	}
+
+	/**
+	 * Writing a dataset into a binary file (through a temporary file renamed
+	 * at the end, so the concurrent readers never see a partial file).
+	 *
+	 * @param dataSet
+	 * @param file
+	 * @param sourceLength
+	 *            size of the source file
+	 * @param sourceDigest
+	 *            SHA-256 digest of the source file
+	 * @throws DataSetException
+	 * @throws IOException
+	 */
+	private static void write(IDataSet dataSet, File file, long sourceLength, String sourceDigest)
+			throws DataSetException, IOException {
+		Map<String, Integer> indexes = new HashMap<>();
+		List<String> dictionary = new ArrayList<>();
+		List<int[]> headers = new ArrayList<>();
+		List<int[]> values = new ArrayList<>();
+
+		ITableIterator it = dataSet.iterator();
+		while (it.next()) {
+			ITable table = it.getTable();
+			ITableMetaData metaData = table.getTableMetaData();
+			Column[] columns = metaData.getColumns();
+			int rowCount = table.getRowCount();
+
+			int[] header = new int[3 + 2 * columns.length];
+			header[0] = index(metaData.getTableName(), indexes, dictionary);
+			header[1] = rowCount;
+			header[2] = columns.length;
+
+			int[] data = new int[columns.length * rowCount];
+			for (int j = 0; j < columns.length; j++) {
+				header[3 + 2 * j] = index(columns[j].getColumnName(), indexes, dictionary);
+				header[4 + 2 * j] = columns[j].getDataType().getSqlType();
+				for (int row = 0; row < rowCount; row++) {
+					Object value = table.getValue(row, columns[j].getColumnName());
+					if (null == value) {
+						data[j * rowCount + row] = NULL_INDEX;
+					} else if (ITable.NO_VALUE == value) {
+						data[j * rowCount + row] = NO_VALUE_INDEX;
+					} else {
+						data[j * rowCount + row] = index(DataType.asString(value), indexes, dictionary);
+					}
+				}
+			}
+			headers.add(header);
+			values.add(data);
+		}
+
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+			throw new IOException("Can't create the directory " + dir);
+		}
+
+		File tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath())))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(sourceLength);
+				byte[] digest = sourceDigest.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(digest.length);
+				out.write(digest);
+				out.writeInt(dictionary.size());
+				for (String str : dictionary) {
+					byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+
+				out.writeInt(headers.size());
+				for (int i = 0; i < headers.size(); i++) {
+					for (int v : headers.get(i)) {
+						out.writeInt(v);
+					}
+					for (int v : values.get(i)) {
+						out.writeInt(v);
+					}
+				}
+			}
+
+			try {
+				Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmpFile.toPath());
+		}
+	}
+
+	/**
+	 * Getting the index of a string in the dictionary (adding it if needed).
+	 *
+	 * @param str
+	 * @param indexes
+	 * @param dictionary
+	 * @return int
+	 */
+	private static int index(String str, Map<String, Integer> indexes, List<String> dictionary) {
+		Integer idx = indexes.get(str);
+		if (null == idx) {
+			idx = dictionary.size();
+			indexes.put(str, idx);
+			dictionary.add(str);
+		}
+		return idx;
+	}
+
+	/**
+	 * Getting a data type from its SQL type.
+	 *
+	 * @param sqlType
+	 * @return DataType
+	 */
+	private static DataType toDataType(int sqlType) {
+		try {
+			return DataType.forSqlType(sqlType);
+		} catch (DataTypeException e) {
+			return DataType.UNKNOWN;
+		}
+	}
+
+	/**
+	 * Decoding a string of the dictionary (once).
+	 *
+	 * @param idx
+	 * @return String
+	 */
+	private String getString(int idx) {
+		String str = strings[idx];
+		if (null == str) {
+			int offset = stringOffsets[idx];
+			ByteBuffer view = buffer.duplicate();
+			view.position(offset + 4);
+			byte[] bytes = new byte[buffer.getInt(offset)];
+			view.get(bytes);
+			str = new String(bytes, StandardCharsets.UTF_8);
+			strings[idx] = str;
+		}
+		return str;
+	}
+
+	@Override
+	protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+		return new DefaultTableIterator(tables, reversed);
+	}
+
+	/**
+	 * Compiling flat XML datasets into binary files (to be launched by the
+	 * build, with exec-maven-plugin for example).
+	 *
+	 * @param args
+	 *            the flat XML files
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		for (String filename : args) {
+			compile(filename);
+		}
+	}
+
+	/**
+	 * Table whose values are read from the buffer.
+	 */
+	private final class BinaryTable extends AbstractTable {
+		private final ITableMetaData metaData;
+		private final int rowCount;
+		private final int offset;
+
+		private BinaryTable(ITableMetaData metaData, int rowCount, int offset) {
+			this.metaData = metaData;
+			this.rowCount = rowCount;
+			this.offset = offset;
+		}
+
+		@Override
+		public ITableMetaData getTableMetaData() {
+			return metaData;
+		}
+
+		@Override
+		public int getRowCount() {
+			return rowCount;
+		}
+
+		@Override
+		public Object getValue(int row, String column) throws DataSetException {
+			assertValidRowIndex(row);
+
+			int idx = buffer.getInt(offset + 4 * (getColumnIndex(column) * rowCount + row));
+			if (NULL_INDEX == idx) {
+				return null;
+			}
+			if (NO_VALUE_INDEX == idx) {
+				return ITable.NO_VALUE;
+			}
+			return getString(idx);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package org.testing.toolbox.dataset;
+
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * View of a dataset whose values are replaced by compiled replacements (in
+ * place of the dbunit ReplacementDataSet). The rows aren't copied.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class CompiledReplacementDataSet extends AbstractDataSet {
+	private final IDataSet dataSet;
+	private final CompiledReplacements replacements;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dataSet
+	 * @param replacements
+	 */
+	public CompiledReplacementDataSet(IDataSet dataSet, CompiledReplacements replacements) {
+		this.dataSet = dataSet;
+		this.replacements = replacements;
+	}
+
+	@Override
+	protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+		final ITableIterator it = reversed ? dataSet.reverseIterator() : dataSet.iterator();
+
+		return new ITableIterator() {
+			@Override
+			public boolean next() throws DataSetException {
+				return it.next();
+			}
+
+			@Override
+			public ITableMetaData getTableMetaData() throws DataSetException {
+				return it.getTableMetaData();
+			}
+
+			@Override
+			public ITable getTable() throws DataSetException {
+				return new ReplacedTable(it.getTable(), replacements);
+			}
+		};
+	}
+
+	/**
+	 * Table with the replaced values.
+	 */
+	private static final class ReplacedTable implements ITable {
+		private final ITable table;
+		private final CompiledReplacements replacements;
+
+		private ReplacedTable(ITable table, CompiledReplacements replacements) {
+			this.table = table;
+			this.replacements = replacements;
+		}
+
+		@Override
+		public ITableMetaData getTableMetaData() {
+			return table.getTableMetaData();
+		}
+
+		@Override
+		public int getRowCount() {
+			return table.getRowCount();
+		}
+
+		@Override
+		public Object getValue(int row, String column) throws DataSetException {
+			return replacements.replace(table.getValue(row, column));
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package org.testing.toolbox.dataset;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+
+/**
+ * Compiled form of the replacements of a dataset.
+ *
+ * A cell value equal to a key is replaced by the (typed) value of the key. A
+ * string value containing ${...} placeholders is tokenized once and the known
+ * placeholders are substituted in a single pass (the typed values being
+ * converted to strings); the result is cached by cell value (the cache being
+ * cleared when it reaches MAX_CACHED_STRINGS values, since the compiled
+ * replacements are kept with their Replacements). Suppliers are evaluated once,
+ * on first use.
+ *
+ * ${NULL} and ${null} are replaced by null unless they are redefined.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class CompiledReplacements {
+	public static final String NULL_KEY = "${NULL}";
+	public static final String NULL_KEY_LOWER = "${null}";
+
+	private static final String PLACEHOLDER_START = "${";
+	private static final char PLACEHOLDER_END = '}';
+
+	private static final int MAX_CACHED_STRINGS = 10000;
+
+	// marker of the cell values without known placeholder (not cached as themselves to save memory)
+	private static final Object UNCHANGED = new Object();
+
+	// marker of the suppliers which returned null
+	private static final Object NULL_RESULT = new Object();
+
+	private final Map<String, Object> values;
+	private final Map<String, Object> resolved = new ConcurrentHashMap<>();
+	private final Map<String, Object> replacedStrings = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param values
+	 *            values (String, Number, Date, byte[], Supplier...) by key
+	 */
+	public CompiledReplacements(Map<String, ?> values) {
+		Map<String, Object> all = new HashMap<>();
+		all.put(NULL_KEY, null);
+		all.put(NULL_KEY_LOWER, null);
+		all.putAll(values);
+		this.values = Collections.unmodifiableMap(all);
+	}
+
+	/**
+	 * Replacing a cell value.
+	 *
+	 * @param value
+	 * @return Object
+	 * @throws TypeCastException
+	 *             if a typed value embedded into a string can't be converted
+	 */
+	public Object replace(Object value) throws TypeCastException {
+		if (!(value instanceof String)) {
+			return value;
+		}
+
+		String str = (String) value;
+		if (values.containsKey(str)) {
+			return resolve(str);
+		}
+
+		if (str.indexOf(PLACEHOLDER_START) < 0) {
+			return str;
+		}
+
+		Object replaced = replacedStrings.get(str);
+		if (null == replaced) {
+			String substituted = substitute(str);
+			replaced = str.equals(substituted) ? UNCHANGED : substituted;
+			if (replacedStrings.size() >= MAX_CACHED_STRINGS) {
+				replacedStrings.clear();
+			}
+			replacedStrings.put(str, replaced);
+		}
+		return UNCHANGED == replaced ? str : replaced;
+	}
+
+	/**
+	 * Substituting the known placeholders of a string.
+	 *
+	 * @param str
+	 * @return String
+	 * @throws TypeCastException
+	 */
+	private String substitute(String str) throws TypeCastException {
+		StringBuilder result = new StringBuilder(str.length());
+		int from = 0;
+
+		for (int start; (start = str.indexOf(PLACEHOLDER_START, from)) >= 0;) {
+			int end = str.indexOf(PLACEHOLDER_END, start + PLACEHOLDER_START.length());
+			if (end < 0) {
+				break;
+			}
+
+			String key = str.substring(start, end + 1);
+			result.append(str, from, start);
+			if (values.containsKey(key)) {
+				Object replacement = resolve(key);
+				result.append(null == replacement ? "" : DataType.asString(replacement));
+			} else {
+				result.append(key);
+			}
+			from = end + 1;
+		}
+
+		return result.append(str, from, str.length()).toString();
+	}
+
+	/**
+	 * Getting the value of a key (evaluating suppliers once).
+	 *
+	 * @param key
+	 * @return Object
+	 */
+	public Object resolve(String key) {
+		Object value = values.get(key);
+		if (!(value instanceof Supplier)) {
+			return value;
+		}
+
+		Object computed = resolved.get(key);
+		if (null == computed) {
+			computed = ((Supplier<?>) value).get();
+			resolved.put(key, null == computed ? NULL_RESULT : computed);
+		}
+		return NULL_RESULT == computed ? null : computed;
+	}
+
+	/**
+	 * @return the keys
+	 */
+	public Iterable<String> getKeys() {
+		return values.keySet();
+	}
+}
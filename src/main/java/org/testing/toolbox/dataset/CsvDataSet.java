@@ -0,0 +1,418 @@
+package org.testing.toolbox.dataset;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.AbstractTable;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.RowOutOfBoundsException;
+import org.dbunit.dataset.datatype.DataType;
+
+/**
+ * Dataset of CSV files (one table per file) whose rows are streamed.
+ *
+ * The first line of a file gives the column names, the table name is the
+ * file name without the ".csv" extension (qualified by the schema if it isn't
+ * already). The fields follow RFC 4180 (comma separator, double quotes) and an
+ * unquoted null is a null value, like with the dbunit CsvDataSet.
+ *
+ * The rows are read forward from the file as the operation asks for them, so
+ * the memory footprint doesn't depend on the size of the files: it works with
+ * the operations reading the rows in order (INSERT, UPDATE, REFRESH,
+ * DELETE_ALL, CLEAN_INSERT...). Each iteration reopens the files.
+ *
+ * The dataset must be closed to release the files which haven't been read
+ * until the end (a file is closed as soon as its last row is read).
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class CsvDataSet extends AbstractDataSet implements Closeable {
+	public static final String EXTENSION = ".csv";
+	public static final String TABLE_ORDERING_FILE = "table-ordering.txt";
+	private static final String NULL = "null";
+
+	private final List<File> files;
+	private final String schema;
+	private final Set<CsvReader> openReaders = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	/**
+	 * Constructor.
+	 *
+	 * @param files
+	 *            CSV files in the loading order
+	 * @param schema
+	 *            schema of the tables whose name isn't qualified
+	 */
+	public CsvDataSet(List<File> files, String schema) {
+		super(false);
+		this.files = new ArrayList<>(files);
+		this.schema = schema;
+	}
+
+	/**
+	 * Getting the CSV files of a directory, in the order of its
+	 * table-ordering.txt file if it exists (alphabetical order otherwise).
+	 *
+	 * @param directory
+	 * @return List<File>
+	 * @throws IOException
+	 */
+	public static List<File> listFiles(File directory) throws IOException {
+		File ordering = new File(directory, TABLE_ORDERING_FILE);
+		List<File> result = new ArrayList<>();
+
+		if (ordering.isFile()) {
+			for (String line : Files.readAllLines(ordering.toPath(), StandardCharsets.UTF_8)) {
+				if (!line.trim().isEmpty()) {
+					result.add(new File(directory, line.trim() + EXTENSION));
+				}
+			}
+			return result;
+		}
+
+		File[] csvFiles = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+		if (null == csvFiles) {
+			throw new IOException(directory + " isn't a directory");
+		}
+		Arrays.sort(csvFiles);
+		result.addAll(Arrays.asList(csvFiles));
+		return result;
+	}
+
+	/**
+	 * Getting the table name of a CSV file.
+	 *
+	 * @param file
+	 * @param schema
+	 * @return String
+	 */
+	public static String getTableName(File file, String schema) {
+		String name = file.getName();
+		if (name.endsWith(EXTENSION)) {
+			name = name.substring(0, name.length() - EXTENSION.length());
+		}
+		return name.indexOf('.') >= 0 || null == schema ? name : schema + "." + name;
+	}
+
+	@Override
+	protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+		final List<File> ordered = new ArrayList<>(files);
+		if (reversed) {
+			Collections.reverse(ordered);
+		}
+
+		return new ITableIterator() {
+			private int idx = -1;
+			private CsvTable table;
+
+			@Override
+			public boolean next() throws DataSetException {
+				table = null;
+				return ++idx < ordered.size();
+			}
+
+			@Override
+			public ITableMetaData getTableMetaData() throws DataSetException {
+				return getTable().getTableMetaData();
+			}
+
+			@Override
+			public ITable getTable() throws DataSetException {
+				if (null == table) {
+					table = new CsvTable(ordered.get(idx));
+				}
+				return table;
+			}
+		};
+	}
+
+	/**
+	 * Closing the files which haven't been read until the end.
+	 */
+	@Override
+	public void close() throws IOException {
+		List<CsvReader> readers;
+		synchronized (openReaders) {
+			readers = new ArrayList<>(openReaders);
+			openReaders.clear();
+		}
+
+		for (CsvReader reader : readers) {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Opening a CSV file.
+	 *
+	 * @param file
+	 * @return CsvReader
+	 * @throws DataSetException
+	 */
+	private CsvReader open(File file) throws DataSetException {
+		try {
+			CsvReader reader = new CsvReader(Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8));
+			synchronized (openReaders) {
+				openReaders.add(reader);
+			}
+			return reader;
+		} catch (IOException e) {
+			throw new DataSetException("Unable to read " + file, e);
+		}
+	}
+
+	/**
+	 * Closing a CSV file.
+	 *
+	 * @param reader
+	 * @throws DataSetException
+	 */
+	private void release(CsvReader reader) throws DataSetException {
+		synchronized (openReaders) {
+			openReaders.remove(reader);
+		}
+
+		try {
+			reader.close();
+		} catch (IOException e) {
+			throw new DataSetException(e);
+		}
+	}
+
+	/**
+	 * Table whose rows are read forward from the file.
+	 */
+	private final class CsvTable extends AbstractTable {
+		private final File file;
+		private final ITableMetaData metaData;
+		private CsvReader reader;
+		private boolean ended;
+		private Object[] current;
+		private int currentRow = -1;
+		private int rowCount = -1;
+
+		private CsvTable(File file) throws DataSetException {
+			this.file = file;
+
+			CsvReader headerReader = open(file);
+			List<String> header;
+			try {
+				header = headerReader.next();
+			} finally {
+				release(headerReader);
+			}
+			if (null == header) {
+				throw new DataSetException(file + " has no header line");
+			}
+
+			Column[] columns = new Column[header.size()];
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = new Column(header.get(i).trim(), DataType.UNKNOWN);
+			}
+			this.metaData = new DefaultTableMetaData(getTableName(file, schema), columns);
+		}
+
+		@Override
+		public ITableMetaData getTableMetaData() {
+			return metaData;
+		}
+
+		/**
+		 * Counting the rows with a separate read of the file.
+		 */
+		@Override
+		public int getRowCount() {
+			if (rowCount < 0) {
+				try {
+					CsvReader counter = open(file);
+					try {
+						int count = -1;
+						while (null != counter.next()) {
+							count++;
+						}
+						rowCount = Math.max(0, count);
+					} finally {
+						release(counter);
+					}
+				} catch (DataSetException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			return rowCount;
+		}
+
+		@Override
+		public Object getValue(int row, String column) throws DataSetException {
+			if (row < 0) {
+				throw new RowOutOfBoundsException(String.valueOf(row));
+			}
+			if (row < currentRow) {
+				throw new DataSetException("The rows of " + file + " can only be read forward (row " + row
+						+ " asked after row " + currentRow + ")");
+			}
+
+			if (null == reader && !ended) {
+				// the data are read with a reader of their own, opened on first use
+				reader = open(file);
+				reader.next();
+			}
+
+			while (currentRow < row) {
+				List<String> fields = ended ? null : reader.next();
+				if (null == fields) {
+					if (!ended) {
+						release(reader);
+						ended = true;
+					}
+					throw new RowOutOfBoundsException(row + " > " + currentRow);
+				}
+				current = toRow(fields);
+				currentRow++;
+			}
+
+			return current[getColumnIndex(column)];
+		}
+
+		/**
+		 * Converting the fields of a line.
+		 *
+		 * @param fields
+		 * @return Object[]
+		 * @throws DataSetException
+		 */
+		private Object[] toRow(List<String> fields) throws DataSetException {
+			if (fields.size() != metaData.getColumns().length) {
+				throw new DataSetException(file + ": " + fields.size() + " fields instead of "
+						+ metaData.getColumns().length + " at row " + (currentRow + 1));
+			}
+
+			Object[] values = new Object[fields.size()];
+			for (int i = 0; i < values.length; i++) {
+				String field = fields.get(i);
+				values[i] = CsvReader.UNQUOTED_NULL == field ? null : field;
+			}
+			return values;
+		}
+	}
+
+	/**
+	 * RFC 4180 parser (the quoted fields can contain separators, escaped
+	 * quotes and line breaks).
+	 */
+	private static final class CsvReader implements Closeable {
+		// marker of an unquoted null field (compared by reference)
+		private static final String UNQUOTED_NULL = new String(NULL);
+
+		private static final int BUFFER_SIZE = 8192;
+
+		private final Reader reader;
+		private final char[] buffer = new char[BUFFER_SIZE];
+		private int pos;
+		private int limit;
+
+		private CsvReader(Reader reader) {
+			this.reader = reader;
+		}
+
+		/**
+		 * Reading the next character.
+		 *
+		 * @return int -1 at the end of the file
+		 * @throws IOException
+		 */
+		private int read() throws IOException {
+			if (pos == limit) {
+				limit = reader.read(buffer, 0, buffer.length);
+				pos = 0;
+				if (limit <= 0) {
+					limit = 0;
+					return -1;
+				}
+			}
+			return buffer[pos++];
+		}
+
+		/**
+		 * Reading the fields of the next record.
+		 *
+		 * @return List<String> null at the end of the file
+		 * @throws DataSetException
+		 */
+		private List<String> next() throws DataSetException {
+			try {
+				List<String> fields = new ArrayList<>();
+				StringBuilder field = new StringBuilder();
+				boolean quoted = false;
+				boolean inQuotes = false;
+				int c = read();
+
+				// skipping the empty lines
+				while ('\r' == c || '\n' == c) {
+					c = read();
+				}
+				if (c < 0) {
+					return null;
+				}
+
+				for (;; c = read()) {
+					if (inQuotes) {
+						if (c < 0) {
+							throw new DataSetException("Unterminated quoted field: " + field);
+						}
+						if ('"' != c) {
+							field.append((char) c);
+							continue;
+						}
+
+						c = read();
+						if ('"' == c) {
+							field.append('"');
+							continue;
+						}
+						inQuotes = false;
+					}
+
+					if (',' == c || '\n' == c || '\r' == c || c < 0) {
+						String value = field.toString();
+						fields.add(!quoted && NULL.equals(value) ? UNQUOTED_NULL : value);
+						field.setLength(0);
+						quoted = false;
+
+						if (',' != c) {
+							return fields;
+						}
+					} else if ('"' == c && 0 == field.length() && !quoted) {
+						quoted = true;
+						inQuotes = true;
+					} else {
+						field.append((char) c);
+					}
+				}
+			} catch (IOException e) {
+				throw new DataSetException(e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,258 @@
+package org.testing.toolbox.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JVM-wide LRU cache of parsed datasets.
+ *
+ * Entries are keyed by canonical path and case-sensitivity setting and are
+ * only served while the file keeps the same modification time and length.
+ * The cache is bounded by the total size of the cached files (property
+ * testing.toolbox.dataset.cache.maxBytes, 64 MB by default).
+ *
+ * A file is parsed once even when it's requested concurrently (by a test and
+ * the DataSetPrefetcher): the other callers wait for the parsing in progress.
+ *
+ * Cached datasets are shared between tests: they must be used read-only.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class DataSetCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DataSetCache.class);
+
+	public static final String MAX_BYTES_PROPERTY = "testing.toolbox.dataset.cache.maxBytes";
+	private static final long DEFAULT_MAX_BYTES = 64L * 1024L * 1024L;
+
+	private static final DataSetCache INSTANCE = new DataSetCache(Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+
+	private final long maxBytes;
+	private final LinkedHashMap<String, Entry> entries;
+	private final Map<String, FutureTask<IDataSet>> loading = new HashMap<>();
+	private long weight;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Parsing function of a dataset file.
+	 */
+	public interface Loader {
+		IDataSet load(File file) throws DataSetException, IOException;
+	}
+
+	/**
+	 * Cached entry.
+	 */
+	private static final class Entry {
+		private final IDataSet dataSet;
+		private final long lastModified;
+		private final long length;
+
+		private Entry(IDataSet dataSet, long lastModified, long length) {
+			this.dataSet = dataSet;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxBytes
+	 */
+	public DataSetCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Getting the JVM-wide instance.
+	 *
+	 * @return DataSetCache
+	 */
+	public static DataSetCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Getting a dataset from the cache or parsing it with the loader.
+	 *
+	 * @param filename
+	 * @param caseSensitiveTableNames
+	 * @param loader
+	 * @return IDataSet
+	 * @throws DataSetException
+	 * @throws IOException
+	 */
+	public IDataSet get(String filename, boolean caseSensitiveTableNames, Loader loader)
+			throws DataSetException, IOException {
+		File file = new File(filename).getCanonicalFile();
+		String key = file.getPath() + "|" + caseSensitiveTableNames;
+		long lastModified = file.lastModified();
+		long length = file.length();
+
+		FutureTask<IDataSet> task;
+		boolean owner = false;
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (null != entry && entry.lastModified == lastModified && entry.length == length) {
+				hits.incrementAndGet();
+				return entry.dataSet;
+			}
+
+			task = loading.get(key);
+			if (null == task) {
+				task = new FutureTask<>(() -> loader.load(file));
+				loading.put(key, task);
+				owner = true;
+			}
+		}
+
+		if (!owner) {
+			hits.incrementAndGet();
+			return await(task);
+		}
+
+		misses.incrementAndGet();
+		try {
+			task.run();
+			IDataSet dataSet = await(task);
+			put(key, new Entry(dataSet, lastModified, length));
+			return dataSet;
+		} finally {
+			synchronized (this) {
+				loading.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Waiting for a parsing in progress.
+	 *
+	 * @param task
+	 * @return IDataSet
+	 * @throws DataSetException
+	 * @throws IOException
+	 */
+	private static IDataSet await(FutureTask<IDataSet> task) throws DataSetException, IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataSetException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof DataSetException) {
+				throw (DataSetException) cause;
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new DataSetException(cause);
+		}
+	}
+
+	/**
+	 * Storing an entry and evicting the least recently used ones.
+	 *
+	 * @param key
+	 * @param entry
+	 */
+	private synchronized void put(String key, Entry entry) {
+		if (entry.length > maxBytes) {
+			LOGGER.debug("[DataSetCache] {} is bigger than the cache, not cached", key);
+			return;
+		}
+
+		Entry previous = entries.put(key, entry);
+		if (null != previous) {
+			weight -= previous.length;
+		}
+		weight += entry.length;
+
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (weight > maxBytes && it.hasNext()) {
+			Map.Entry<String, Entry> eldest = it.next();
+			weight -= eldest.getValue().length;
+			it.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Removing all the entries (the counters are kept).
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	/**
+	 * @return the number of datasets served from the cache
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of datasets parsed
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of datasets evicted to respect the memory bound
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the number of cached datasets
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the total size in bytes of the cached files
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return the maximum total size in bytes of the cached files
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "DataSetCache[hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions="
+				+ getEvictionCount() + ", size=" + size() + ", weight=" + getWeight() + "/" + maxBytes + "]";
+	}
+}
@@ -0,0 +1,105 @@
+package org.testing.toolbox.dataset;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background preparation of the datasets of the next tests (see
+ * PrefetchRule): the files are parsed into the DataSetCache and the
+ * replacements are compiled and applied once to every value (which resolves
+ * the suppliers and fills the cache of the replaced strings).
+ *
+ * The preparations run one at a time on a daemon thread. Their errors are only
+ * logged: the test gets them again when it loads the dataset itself.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class DataSetPrefetcher {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DataSetPrefetcher.class);
+
+	private static final DataSetPrefetcher INSTANCE = new DataSetPrefetcher(DataSetCache.getInstance());
+
+	private final DataSetCache cache;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "testing-toolbox-prefetch");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cache
+	 */
+	public DataSetPrefetcher(DataSetCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Getting the JVM-wide instance.
+	 *
+	 * @return DataSetPrefetcher
+	 */
+	public static DataSetPrefetcher getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Preparing datasets in background.
+	 *
+	 * @param filenames
+	 * @param loader
+	 * @param replacements
+	 *            replacements applied to the datasets (or null)
+	 * @return Future<?>
+	 */
+	public Future<?> prefetch(List<String> filenames, DataSetCache.Loader loader,
+			Supplier<CompiledReplacements> replacements) {
+		return executor.submit(() -> {
+			try {
+				CompiledReplacements compiled = null == replacements ? null : replacements.get();
+				for (String filename : filenames) {
+					IDataSet dataSet = cache.get(filename, false, loader);
+					if (null != compiled) {
+						replace(dataSet, compiled);
+					}
+				}
+			} catch (Exception e) {
+				LOGGER.debug("[DataSetPrefetcher] Can't prepare " + filenames, e);
+			}
+		});
+	}
+
+	/**
+	 * Replacing all the values of a dataset (the results are dropped: only the
+	 * caches of the replacements are filled).
+	 *
+	 * @param dataSet
+	 * @param replacements
+	 * @throws DataSetException
+	 */
+	private static void replace(IDataSet dataSet, CompiledReplacements replacements) throws DataSetException {
+		ITableIterator it = dataSet.iterator();
+		while (it.next()) {
+			ITable table = it.getTable();
+			Column[] columns = table.getTableMetaData().getColumns();
+			for (int i = 0; i < table.getRowCount(); i++) {
+				for (Column column : columns) {
+					replacements.replace(table.getValue(i, column.getColumnName()));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package org.testing.toolbox.dataset;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * View of a dataset counting the rows read by an operation (without asking
+ * the row count of the tables, which can be costly with streamed tables).
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class RowCountingDataSet extends AbstractDataSet {
+	private final IDataSet dataSet;
+	private final AtomicLong rows = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dataSet
+	 */
+	public RowCountingDataSet(IDataSet dataSet) {
+		this.dataSet = dataSet;
+	}
+
+	@Override
+	protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+		final ITableIterator it = reversed ? dataSet.reverseIterator() : dataSet.iterator();
+
+		return new ITableIterator() {
+			@Override
+			public boolean next() throws DataSetException {
+				return it.next();
+			}
+
+			@Override
+			public ITableMetaData getTableMetaData() throws DataSetException {
+				return it.getTableMetaData();
+			}
+
+			@Override
+			public ITable getTable() throws DataSetException {
+				return new CountingTable(it.getTable(), rows);
+			}
+		};
+	}
+
+	/**
+	 * @return the number of distinct rows read
+	 */
+	public long getRowCount() {
+		return rows.get();
+	}
+
+	/**
+	 * Table counting the highest row read.
+	 */
+	private static final class CountingTable implements ITable {
+		private final ITable table;
+		private final AtomicLong rows;
+		private int readRows;
+
+		private CountingTable(ITable table, AtomicLong rows) {
+			this.table = table;
+			this.rows = rows;
+		}
+
+		@Override
+		public ITableMetaData getTableMetaData() {
+			return table.getTableMetaData();
+		}
+
+		@Override
+		public int getRowCount() {
+			return table.getRowCount();
+		}
+
+		@Override
+		public Object getValue(int row, String column) throws DataSetException {
+			Object value = table.getValue(row, column);
+			if (row >= readRows) {
+				rows.addAndGet(row + 1 - readRows);
+				readRows = row + 1;
+			}
+			return value;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package org.testing.toolbox.dataset;
+
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * View of a dataset whose tables qualified by a schema are moved to another
+ * schema ("public.my_table" becoming "public_w1.my_table" for example). The
+ * rows aren't copied.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class SchemaMappingDataSet extends AbstractDataSet {
+	private final IDataSet dataSet;
+	private final String fromSchema;
+	private final String toSchema;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dataSet
+	 * @param fromSchema
+	 * @param toSchema
+	 */
+	public SchemaMappingDataSet(IDataSet dataSet, String fromSchema, String toSchema) {
+		this.dataSet = dataSet;
+		this.fromSchema = fromSchema;
+		this.toSchema = toSchema;
+	}
+
+	/**
+	 * Mapping a table name.
+	 *
+	 * @param tableName
+	 * @param fromSchema
+	 * @param toSchema
+	 * @return String
+	 */
+	public static String map(String tableName, String fromSchema, String toSchema) {
+		int idx = tableName.lastIndexOf('.');
+		if (idx < 0 || !tableName.substring(0, idx).equalsIgnoreCase(fromSchema)) {
+			return tableName;
+		}
+		return toSchema + tableName.substring(idx);
+	}
+
+	@Override
+	protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+		final ITableIterator it = reversed ? dataSet.reverseIterator() : dataSet.iterator();
+
+		return new ITableIterator() {
+			@Override
+			public boolean next() throws DataSetException {
+				return it.next();
+			}
+
+			@Override
+			public ITableMetaData getTableMetaData() throws DataSetException {
+				return map(it.getTableMetaData());
+			}
+
+			@Override
+			public ITable getTable() throws DataSetException {
+				return new MappedTable(it.getTable(), map(it.getTableMetaData()));
+			}
+		};
+	}
+
+	/**
+	 * Mapping the metadata of a table.
+	 *
+	 * @param metaData
+	 * @return ITableMetaData
+	 * @throws DataSetException
+	 */
+	private ITableMetaData map(ITableMetaData metaData) throws DataSetException {
+		String tableName = map(metaData.getTableName(), fromSchema, toSchema);
+		if (tableName.equals(metaData.getTableName())) {
+			return metaData;
+		}
+		return new DefaultTableMetaData(tableName, metaData.getColumns(), metaData.getPrimaryKeys());
+	}
+
+	/**
+	 * Table with the mapped metadata.
+	 */
+	private static final class MappedTable implements ITable {
+		private final ITable table;
+		private final ITableMetaData metaData;
+
+		private MappedTable(ITable table, ITableMetaData metaData) {
+			this.table = table;
+			this.metaData = metaData;
+		}
+
+		@Override
+		public ITableMetaData getTableMetaData() {
+			return metaData;
+		}
+
+		@Override
+		public int getRowCount() {
+			return table.getRowCount();
+		}
+
+		@Override
+		public Object getValue(int row, String column) throws DataSetException {
+			return table.getValue(row, column);
+		}
+	}
+}
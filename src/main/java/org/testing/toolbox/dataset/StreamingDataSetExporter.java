@@ -0,0 +1,240 @@
+package org.testing.toolbox.dataset;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.commons.lang3.StringUtils;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+
+/**
+ * Exporting tables into a flat XML dataset with a constant memory footprint.
+ *
+ * The rows are read through a JDBC cursor (fetch size) and written one by one
+ * with a StAX writer, in the same format as FlatXmlDataSet.write. The file is
+ * gzipped when its name ends with ".gz".
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class StreamingDataSetExporter {
+	public static final String GZIP_EXTENSION = ".gz";
+	private static final String ENCODING = "UTF-8";
+	private static final int DEFAULT_FETCH_SIZE = 1000;
+
+	private final IDatabaseConnection connection;
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param connection
+	 */
+	public StreamingDataSetExporter(IDatabaseConnection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Exporting tables (whole table if the query is blank).
+	 *
+	 * @param queryByTables
+	 * @param dstFile
+	 * @return long the number of exported rows
+	 * @throws SQLException
+	 * @throws DataSetException
+	 * @throws IOException
+	 */
+	public long export(Map<String, String> queryByTables, File dstFile)
+			throws SQLException, DataSetException, IOException {
+		long rowCount = 0;
+		Connection con = connection.getConnection();
+
+		// some drivers (PostgreSQL) only use a cursor inside a transaction
+		boolean autoCommit = con.getAutoCommit();
+		if (autoCommit) {
+			con.setAutoCommit(false);
+		}
+
+		try (OutputStream out = open(dstFile)) {
+			XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, ENCODING);
+			writer.writeStartDocument(ENCODING, "1.0");
+			writer.writeCharacters("\n");
+			writer.writeStartElement("dataset");
+
+			for (Map.Entry<String, String> entry : queryByTables.entrySet()) {
+				String query = StringUtils.isBlank(entry.getValue()) ? "SELECT * FROM " + entry.getKey()
+						: entry.getValue();
+				rowCount += exportTable(con, entry.getKey(), query, writer);
+			}
+
+			writer.writeCharacters("\n");
+			writer.writeEndElement();
+			writer.writeCharacters("\n");
+			writer.writeEndDocument();
+			writer.close();
+		} catch (XMLStreamException e) {
+			throw new DataSetException(e);
+		} finally {
+			if (autoCommit) {
+				con.setAutoCommit(true);
+			}
+		}
+
+		return rowCount;
+	}
+
+	/**
+	 * Getting the tables of the queries with their columns only (read from the
+	 * metadata of the queries, the rows aren't fetched), to write a DTD.
+	 *
+	 * @param queryByTables
+	 * @return IDataSet tables without rows
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	public IDataSet getMetaDataSet(Map<String, String> queryByTables) throws SQLException, DataSetException {
+		IDataTypeFactory dataTypeFactory = (IDataTypeFactory) connection.getConfig()
+				.getProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY);
+		DefaultDataSet dataSet = new DefaultDataSet();
+
+		for (Map.Entry<String, String> entry : queryByTables.entrySet()) {
+			String query = StringUtils.isBlank(entry.getValue()) ? "SELECT * FROM " + entry.getKey()
+					: entry.getValue();
+			try (PreparedStatement statement = connection.getConnection().prepareStatement(query)) {
+				ResultSetMetaData metaData = statement.getMetaData();
+				if (null != metaData) {
+					dataSet.addTable(new DefaultTable(toTableMetaData(entry.getKey(), metaData, dataTypeFactory)));
+					continue;
+				}
+
+				// driver unable to describe a query before its execution
+				statement.setMaxRows(1);
+				try (ResultSet rs = statement.executeQuery()) {
+					dataSet.addTable(
+							new DefaultTable(toTableMetaData(entry.getKey(), rs.getMetaData(), dataTypeFactory)));
+				}
+			}
+		}
+		return dataSet;
+	}
+
+	/**
+	 * Converting the metadata of a query.
+	 *
+	 * @param tableName
+	 * @param metaData
+	 * @param dataTypeFactory
+	 * @return ITableMetaData
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	private static ITableMetaData toTableMetaData(String tableName, ResultSetMetaData metaData,
+			IDataTypeFactory dataTypeFactory) throws SQLException, DataSetException {
+		Column[] columns = new Column[metaData.getColumnCount()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = new Column(metaData.getColumnLabel(i + 1),
+					dataTypeFactory.createDataType(metaData.getColumnType(i + 1), metaData.getColumnTypeName(i + 1)),
+					Column.nullableValue(metaData.isNullable(i + 1)));
+		}
+		return new DefaultTableMetaData(tableName, columns);
+	}
+
+	/**
+	 * Opening the destination file (gzipped if needed).
+	 *
+	 * @param dstFile
+	 * @return OutputStream
+	 * @throws IOException
+	 */
+	public static OutputStream open(File dstFile) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(dstFile));
+		return dstFile.getName().endsWith(GZIP_EXTENSION) ? new GZIPOutputStream(out) : out;
+	}
+
+	/**
+	 * Exporting the rows of a query.
+	 *
+	 * @param con
+	 * @param tableName
+	 * @param query
+	 * @param writer
+	 * @return long the number of exported rows
+	 * @throws SQLException
+	 * @throws DataSetException
+	 * @throws XMLStreamException
+	 */
+	private long exportTable(Connection con, String tableName, String query, XMLStreamWriter writer)
+			throws SQLException, DataSetException, XMLStreamException {
+		IDataTypeFactory dataTypeFactory = (IDataTypeFactory) connection.getConfig()
+				.getProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY);
+
+		try (Statement statement = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			statement.setFetchSize(fetchSize);
+
+			try (ResultSet rs = statement.executeQuery(query)) {
+				ResultSetMetaData metaData = rs.getMetaData();
+				int nbColumns = metaData.getColumnCount();
+				String[] names = new String[nbColumns];
+				DataType[] types = new DataType[nbColumns];
+				for (int i = 0; i < nbColumns; i++) {
+					names[i] = metaData.getColumnLabel(i + 1);
+					types[i] = dataTypeFactory.createDataType(metaData.getColumnType(i + 1),
+							metaData.getColumnTypeName(i + 1));
+				}
+
+				long rowCount = 0;
+				while (rs.next()) {
+					writer.writeCharacters("\n  ");
+					writer.writeEmptyElement(tableName);
+					for (int i = 0; i < nbColumns; i++) {
+						Object value = types[i].getSqlValue(i + 1, rs);
+						if (null != value) {
+							writer.writeAttribute(names[i], DataType.asString(value));
+						}
+					}
+					rowCount++;
+				}
+
+				// empty tables are written like FlatXmlDataSet does
+				if (0 == rowCount) {
+					writer.writeCharacters("\n  ");
+					writer.writeEmptyElement(tableName);
+				}
+
+				return rowCount;
+			}
+		}
+	}
+
+	/**
+	 * @param fetchSize
+	 *            the number of rows fetched per round trip
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+}
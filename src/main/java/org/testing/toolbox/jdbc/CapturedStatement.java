@@ -0,0 +1,72 @@
+package org.testing.toolbox.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statement executed during a StatementCapture: its SQL, the time spent in
+ * its execution and in the fetching of its rows, and the number of fetched
+ * rows.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class CapturedStatement {
+	private final String sql;
+	private volatile long nanos;
+	private volatile long rows;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param sql
+	 * @param nanos
+	 */
+	public CapturedStatement(String sql, long nanos) {
+		this.sql = sql;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * Recording fetched rows (called by the thread reading the result set).
+	 *
+	 * @param fetchedRows
+	 * @param fetchNanos
+	 */
+	void addRows(long fetchedRows, long fetchNanos) {
+		rows += fetchedRows;
+		nanos += fetchNanos;
+	}
+
+	/**
+	 * @return the sql
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * @return the time spent in the database, in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return the time spent in the database, in milliseconds
+	 */
+	public long getMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * @return the number of fetched rows
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	@Override
+	public String toString() {
+		return sql + " (" + getMillis() + " ms, " + rows + " rows)";
+	}
+}
@@ -0,0 +1,89 @@
+package org.testing.toolbox.jdbc;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * DataSource forwarding every call to a target DataSource.
+ *
+ * Base class of the DataSource wrappers: unwrap / isWrapperFor look at the
+ * wrapper itself then at the target, so wrappers can be chained.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public abstract class DelegatingDataSource implements DataSource {
+	private final DataSource targetDataSource;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param targetDataSource
+	 */
+	protected DelegatingDataSource(DataSource targetDataSource) {
+		if (null == targetDataSource) {
+			throw new IllegalArgumentException("The target DataSource is required");
+		}
+		this.targetDataSource = targetDataSource;
+	}
+
+	/**
+	 * @return the targetDataSource
+	 */
+	public DataSource getTargetDataSource() {
+		return targetDataSource;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return targetDataSource.getConnection();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return targetDataSource.getConnection(username, password);
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return targetDataSource.getLogWriter();
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		targetDataSource.setLogWriter(out);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		targetDataSource.setLoginTimeout(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return targetDataSource.getLoginTimeout();
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return targetDataSource.getParentLogger();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
+		return targetDataSource.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || targetDataSource.isWrapperFor(iface);
+	}
+}
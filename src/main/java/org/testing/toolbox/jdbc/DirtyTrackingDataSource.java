@@ -0,0 +1,275 @@
+package org.testing.toolbox.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * DataSource recording the tables written through its connections (see
+ * DmlTables), so that the fixtures can be reset by reloading only the tables
+ * written since they were loaded.
+ *
+ * Each write is numbered: the tables written since a fixture was loaded are
+ * the ones whose last write is more recent. The statements writing unknown
+ * tables (CALL, DO...) and the connections unwrapped to the driver ones mark
+ * all the tables as written. The writes aren't related to a schema: a table
+ * written in a schema is considered written in all of them.
+ *
+ * The code under test must use the same instance as the test: declare
+ * DirtyTrackingDataSource.of(dataSource) as the DataSource of the test
+ * context.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class DirtyTrackingDataSource extends DelegatingDataSource {
+	private static final Map<DataSource, DirtyTrackingDataSource> INSTANCES = Collections
+			.synchronizedMap(new IdentityHashMap<DataSource, DirtyTrackingDataSource>());
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	// normalized table name -> number of its last write
+	private final Map<String, Long> writes = new ConcurrentHashMap<>();
+
+	// schema -> fixture loaded in the schema
+	private final Map<String, Fixture> fixtures = new HashMap<>();
+
+	/**
+	 * Fixture loaded in a schema.
+	 */
+	private static final class Fixture {
+		private final String key;
+		private final long sequence;
+
+		private Fixture(String key, long sequence) {
+			this.key = key;
+			this.sequence = sequence;
+		}
+	}
+
+	/**
+	 * Constructor (use of() to share the instance with the code under test).
+	 *
+	 * @param targetDataSource
+	 */
+	protected DirtyTrackingDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	/**
+	 * Getting the DirtyTrackingDataSource of a DataSource (the same instance
+	 * for the whole JVM).
+	 *
+	 * @param dataSource
+	 *            the target DataSource, or a DirtyTrackingDataSource (possibly
+	 *            wrapped) which is returned as is
+	 * @return DirtyTrackingDataSource
+	 * @throws SQLException
+	 */
+	public static DirtyTrackingDataSource of(DataSource dataSource) throws SQLException {
+		if (dataSource instanceof DirtyTrackingDataSource) {
+			return (DirtyTrackingDataSource) dataSource;
+		}
+
+		if (dataSource.isWrapperFor(DirtyTrackingDataSource.class)) {
+			return dataSource.unwrap(DirtyTrackingDataSource.class);
+		}
+
+		synchronized (INSTANCES) {
+			DirtyTrackingDataSource instance = INSTANCES.get(dataSource);
+			if (null == instance) {
+				instance = new DirtyTrackingDataSource(dataSource);
+				INSTANCES.put(dataSource, instance);
+			}
+			return instance;
+		}
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return track(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return track(super.getConnection(username, password));
+	}
+
+	/**
+	 * Recording the tables written by a statement.
+	 *
+	 * @param sql
+	 */
+	public void record(String sql) {
+		Set<String> tables = DmlTables.parse(sql);
+		if (tables.isEmpty()) {
+			return;
+		}
+
+		long number = sequence.incrementAndGet();
+		for (String table : tables) {
+			writes.put(table, number);
+		}
+	}
+
+	/**
+	 * Recording a write of unknown tables.
+	 */
+	public void recordAll() {
+		writes.put(DmlTables.ALL, sequence.incrementAndGet());
+	}
+
+	/**
+	 * @return the number of the last write (to give to setFixture before
+	 *         loading a fixture)
+	 */
+	public long getSequence() {
+		return sequence.get();
+	}
+
+	/**
+	 * Getting the tables written since a fixture was loaded in a schema.
+	 *
+	 * @param schema
+	 * @param key
+	 *            key of the fixture
+	 * @return Set<String> normalized names, or null if the schema doesn't
+	 *         contain the fixture or if unknown tables have been written
+	 */
+	public Set<String> getWrittenTables(String schema, String key) {
+		Fixture fixture;
+		synchronized (fixtures) {
+			fixture = fixtures.get(schema);
+		}
+		if (null == fixture || !fixture.key.equals(key)) {
+			return null;
+		}
+
+		Set<String> tables = new HashSet<>();
+		for (Map.Entry<String, Long> entry : writes.entrySet()) {
+			if (entry.getValue() > fixture.sequence) {
+				if (DmlTables.ALL.equals(entry.getKey())) {
+					return null;
+				}
+				tables.add(entry.getKey());
+			}
+		}
+		return tables;
+	}
+
+	/**
+	 * Setting the fixture loaded in a schema.
+	 *
+	 * @param schema
+	 * @param key
+	 *            null if the content of the schema is unknown
+	 * @param sequence
+	 *            number of the last write before the loading (see getSequence)
+	 */
+	public void setFixture(String schema, String key, long sequence) {
+		synchronized (fixtures) {
+			if (null == key) {
+				fixtures.remove(schema);
+			} else {
+				fixtures.put(schema, new Fixture(key, sequence));
+			}
+		}
+	}
+
+	/**
+	 * Getting a connection recording its writes.
+	 *
+	 * @param con
+	 * @return Connection
+	 */
+	private Connection track(Connection con) {
+		return (Connection) Proxy.newProxyInstance(DirtyTrackingDataSource.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new TrackingConnection(con));
+	}
+
+	/**
+	 * Connection recording the statements it prepares and the statements
+	 * executed by its Statement objects.
+	 */
+	private final class TrackingConnection implements InvocationHandler {
+		private final Connection target;
+
+		private TrackingConnection(Connection target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Tracking[" + target + "]";
+			case "prepareStatement":
+			case "prepareCall":
+				// recorded when prepared: a statement prepared but not executed only costs a reload
+				record((String) args[0]);
+				break;
+			case "unwrap":
+				if (((Class<?>) args[0]).isInstance(proxy)) {
+					return proxy;
+				}
+				// the writes of the driver connection (COPY...) can't be tracked
+				recordAll();
+				break;
+			default:
+				break;
+			}
+
+			Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+
+			if ("createStatement".equals(method.getName())) {
+				return trackStatement((Statement) result);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Getting a Statement recording the statements it executes.
+	 *
+	 * @param statement
+	 * @return Statement
+	 */
+	private Statement trackStatement(final Statement statement) {
+		return (Statement) Proxy.newProxyInstance(DirtyTrackingDataSource.class.getClassLoader(),
+				new Class<?>[] { Statement.class }, (proxy, method, args) -> {
+					if (null != args && args.length > 0 && args[0] instanceof String
+							&& (method.getName().startsWith("execute") || "addBatch".equals(method.getName()))) {
+						record((String) args[0]);
+					}
+
+					try {
+						return method.invoke(statement, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+	}
+}
@@ -0,0 +1,262 @@
+package org.testing.toolbox.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tables written by a SQL statement: targets of INSERT, UPDATE, DELETE, MERGE,
+ * TRUNCATE and COPY ... FROM, wherever they are (CTE, several statements...).
+ *
+ * The parsing only skips the comments and the string literals: it may find
+ * more tables than the really written ones (which is harmless for
+ * DirtyTrackingDataSource), never less, except for the tables written by
+ * triggers or functions. The statements calling code (CALL, DO, EXEC) write
+ * unknown tables (see ALL).
+ *
+ * The table names are normalized (without schema and quotes, upper case) and
+ * the results are cached by statement.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class DmlTables {
+	// marker of the statements which can write any table
+	public static final String ALL = "*";
+
+	private static final int MAX_CACHED_STATEMENTS = 10000;
+	private static final Map<String, Set<String>> CACHE = new ConcurrentHashMap<>();
+
+	/**
+	 * Private constructor : static methods only.
+	 */
+	private DmlTables() {
+	}
+
+	/**
+	 * Getting the tables written by a statement.
+	 *
+	 * @param sql
+	 * @return Set<String> normalized names (or ALL)
+	 */
+	public static Set<String> parse(String sql) {
+		if (null == sql) {
+			return Collections.emptySet();
+		}
+
+		Set<String> tables = CACHE.get(sql);
+		if (null == tables) {
+			tables = Collections.unmodifiableSet(findTables(tokenize(sql)));
+			if (CACHE.size() >= MAX_CACHED_STATEMENTS) {
+				CACHE.clear();
+			}
+			CACHE.put(sql, tables);
+		}
+		return tables;
+	}
+
+	/**
+	 * Normalizing a table name (without schema and quotes, upper case).
+	 *
+	 * @param tableName
+	 * @return String
+	 */
+	public static String normalize(String tableName) {
+		String name = tableName;
+		int idx = name.lastIndexOf('.');
+		if (idx >= 0) {
+			name = name.substring(idx + 1);
+		}
+		return name.replace("\"", "").toUpperCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Finding the written tables in the tokens of a statement.
+	 *
+	 * @param tokens
+	 * @return Set<String>
+	 */
+	private static Set<String> findTables(List<String> tokens) {
+		Set<String> tables = new LinkedHashSet<>();
+
+		for (int i = 0; i < tokens.size(); i++) {
+			String keyword = tokens.get(i).toUpperCase(Locale.ENGLISH);
+			String previous = i > 0 ? tokens.get(i - 1).toUpperCase(Locale.ENGLISH) : "";
+			boolean first = i == 0 || ";".equals(previous) || "(".equals(previous);
+
+			switch (keyword) {
+			case "INSERT":
+			case "MERGE":
+				addTable(tables, tokens, skip(tokens, i + 1, "INTO"));
+				break;
+			case "REPLACE":
+				if (i + 1 < tokens.size() && "INTO".equalsIgnoreCase(tokens.get(i + 1))) {
+					addTable(tables, tokens, i + 2);
+				}
+				break;
+			case "UPDATE":
+			case "DELETE":
+				// SELECT ... FOR UPDATE, ON UPDATE / ON DELETE of the foreign keys, DO UPDATE of the upserts
+				if (!"FOR".equals(previous) && !"KEY".equals(previous) && !"ON".equals(previous)
+						&& !"DO".equals(previous)) {
+					addTable(tables, tokens, skip(tokens, skip(tokens, i + 1, "FROM"), "ONLY"));
+				}
+				break;
+			case "TRUNCATE":
+				int j = skip(tokens, skip(tokens, i + 1, "TABLE"), "ONLY");
+				while (addTable(tables, tokens, j) && j + 1 < tokens.size() && ",".equals(tokens.get(j + 1))) {
+					j += 2;
+				}
+				break;
+			case "COPY":
+				if (first && isCopyFrom(tokens, i + 2)) {
+					addTable(tables, tokens, i + 1);
+				}
+				break;
+			case "CALL":
+			case "DO":
+			case "EXEC":
+			case "EXECUTE":
+				if (first) {
+					tables.add(ALL);
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		return tables;
+	}
+
+	/**
+	 * Skipping an optional keyword.
+	 *
+	 * @param tokens
+	 * @param idx
+	 * @param keyword
+	 * @return int the index after the keyword if it's at idx, else idx
+	 */
+	private static int skip(List<String> tokens, int idx, String keyword) {
+		return idx < tokens.size() && keyword.equalsIgnoreCase(tokens.get(idx)) ? idx + 1 : idx;
+	}
+
+	/**
+	 * Adding the table name at an index.
+	 *
+	 * @param tables
+	 * @param tokens
+	 * @param idx
+	 * @return boolean false if there's no table name at idx
+	 */
+	private static boolean addTable(Set<String> tables, List<String> tokens, int idx) {
+		if (idx >= tokens.size() || !isName(tokens.get(idx))) {
+			return false;
+		}
+		tables.add(normalize(tokens.get(idx)));
+		return true;
+	}
+
+	/**
+	 * Checking that a COPY reads a file (COPY table [(columns)] FROM ...).
+	 *
+	 * @param tokens
+	 * @param idx
+	 *            index after the table name
+	 * @return boolean
+	 */
+	private static boolean isCopyFrom(List<String> tokens, int idx) {
+		for (int i = idx; i < tokens.size() && !";".equals(tokens.get(i)); i++) {
+			if ("FROM".equalsIgnoreCase(tokens.get(i))) {
+				return true;
+			}
+			if ("TO".equalsIgnoreCase(tokens.get(i))) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param token
+	 * @return boolean true if the token is a (possibly qualified or quoted) name
+	 */
+	private static boolean isName(String token) {
+		char c = token.charAt(0);
+		return '"' == c || '_' == c || Character.isLetter(c);
+	}
+
+	/**
+	 * Splitting a statement into names (qualified and quoted parts included)
+	 * and punctuation characters, without the comments and string literals.
+	 *
+	 * @param sql
+	 * @return List<String>
+	 */
+	private static List<String> tokenize(String sql) {
+		List<String> tokens = new ArrayList<>();
+		int length = sql.length();
+		int i = 0;
+
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if ('-' == c && i + 1 < length && '-' == sql.charAt(i + 1)) {
+				int end = sql.indexOf('\n', i);
+				i = end < 0 ? length : end + 1;
+			} else if ('/' == c && i + 1 < length && '*' == sql.charAt(i + 1)) {
+				int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? length : end + 2;
+			} else if ('\'' == c) {
+				i = skipQuoted(sql, i, '\'');
+			} else if ('"' == c || isNameChar(c)) {
+				int start = i;
+				while (i < length && ('"' == sql.charAt(i) || '.' == sql.charAt(i) || isNameChar(sql.charAt(i)))) {
+					i = '"' == sql.charAt(i) ? skipQuoted(sql, i, '"') : i + 1;
+				}
+				tokens.add(sql.substring(start, i));
+			} else {
+				tokens.add(String.valueOf(c));
+				i++;
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Skipping a quoted part (doubled quotes being escaped quotes).
+	 *
+	 * @param sql
+	 * @param start
+	 *            index of the opening quote
+	 * @param quote
+	 * @return int the index after the closing quote
+	 */
+	private static int skipQuoted(String sql, int start, char quote) {
+		int i = start + 1;
+		while (i < sql.length()) {
+			if (quote == sql.charAt(i)) {
+				if (i + 1 < sql.length() && quote == sql.charAt(i + 1)) {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @param c
+	 * @return boolean true if the character can be part of an unquoted name
+	 */
+	private static boolean isNameChar(char c) {
+		return '_' == c || '$' == c || Character.isLetterOrDigit(c);
+	}
+}
@@ -0,0 +1,153 @@
+package org.testing.toolbox.jdbc;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Statements executed through a StatementCaptureDataSource between start()
+ * and stop(), by the thread which started the capture or by the threads it
+ * created (see StatementCaptureDataSource).
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class StatementCapture {
+	private final StatementCaptureDataSource dataSource;
+	private final Thread owner;
+	private final List<CapturedStatement> statements = new ArrayList<>();
+
+	/**
+	 * Constructor (see StatementCaptureDataSource.start).
+	 *
+	 * @param dataSource
+	 * @param owner
+	 *            thread which started the capture
+	 */
+	StatementCapture(StatementCaptureDataSource dataSource, Thread owner) {
+		this.dataSource = dataSource;
+		this.owner = owner;
+	}
+
+	/**
+	 * @param thread
+	 *            executing thread
+	 * @param ancestors
+	 *            threads which created the executing thread
+	 * @return boolean true if the capture records the statements of the thread
+	 */
+	boolean isCapturing(Thread thread, List<Thread> ancestors) {
+		return owner == thread || ancestors.contains(owner);
+	}
+
+	/**
+	 * Adding an executed statement.
+	 *
+	 * @param statement
+	 */
+	synchronized void add(CapturedStatement statement) {
+		statements.add(statement);
+	}
+
+	/**
+	 * Stopping the capture (the captured statements are kept).
+	 */
+	public void stop() {
+		dataSource.stop(this);
+	}
+
+	/**
+	 * @return the captured statements, in execution order
+	 */
+	public synchronized List<CapturedStatement> getStatements() {
+		return new ArrayList<>(statements);
+	}
+
+	/**
+	 * @return the number of captured statements
+	 */
+	public synchronized int getCount() {
+		return statements.size();
+	}
+
+	/**
+	 * Getting the statements whose SQL matches a regular expression
+	 * (case-insensitive, anywhere in the SQL).
+	 *
+	 * @param regex
+	 * @return List<CapturedStatement>
+	 */
+	public List<CapturedStatement> getStatementsMatching(String regex) {
+		Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+		List<CapturedStatement> matching = new ArrayList<>();
+		for (CapturedStatement statement : getStatements()) {
+			if (pattern.matcher(statement.getSql()).find()) {
+				matching.add(statement);
+			}
+		}
+		return matching;
+	}
+
+	/**
+	 * @return the total time spent in the database, in milliseconds
+	 */
+	public long getTotalMillis() {
+		long nanos = 0;
+		for (CapturedStatement statement : getStatements()) {
+			nanos += statement.getNanos();
+		}
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * @return the total number of fetched rows
+	 */
+	public long getTotalRows() {
+		long rows = 0;
+		for (CapturedStatement statement : getStatements()) {
+			rows += statement.getRows();
+		}
+		return rows;
+	}
+
+	/**
+	 * Describing the captured statements grouped by SQL, the most executed
+	 * first (the repeated statements of a N+1 come first).
+	 *
+	 * @param max
+	 *            number of distinct statements described
+	 * @return String
+	 */
+	public String summary(int max) {
+		Map<String, long[]> bySql = new LinkedHashMap<>();
+		for (CapturedStatement statement : getStatements()) {
+			long[] stats = bySql.computeIfAbsent(statement.getSql(), sql -> new long[3]);
+			stats[0]++;
+			stats[1] += statement.getNanos();
+			stats[2] += statement.getRows();
+		}
+
+		List<Map.Entry<String, long[]>> entries = new ArrayList<>(bySql.entrySet());
+		entries.sort((e1, e2) -> Long.compare(e2.getValue()[0], e1.getValue()[0]));
+
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < entries.size() && i < max; i++) {
+			long[] stats = entries.get(i).getValue();
+			builder.append("\n  ").append(stats[0]).append(" x ").append(entries.get(i).getKey()).append(" (")
+					.append(TimeUnit.NANOSECONDS.toMillis(stats[1])).append(" ms, ").append(stats[2]).append(" rows)");
+		}
+		if (entries.size() > max) {
+			builder.append("\n  ...");
+		}
+		return builder.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "StatementCapture[statements=" + getCount() + ", time=" + getTotalMillis() + " ms, rows="
+				+ getTotalRows() + "]";
+	}
+}
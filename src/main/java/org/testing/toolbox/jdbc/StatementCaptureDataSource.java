@@ -0,0 +1,290 @@
+package org.testing.toolbox.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.sql.DataSource;
+
+/**
+ * DataSource recording the statements executed through its connections into
+ * the running StatementCaptures: SQL, time spent in the execution and in the
+ * fetching of the rows, number of fetched rows.
+ *
+ * A capture only records the statements of the thread which started it and of
+ * the threads created by this thread (directly or not) since its first
+ * capture, so the tests running in parallel don't see the statements of each
+ * other. The statements executed by the other threads (pools started before
+ * or by another thread...) aren't captured.
+ *
+ * Out of a capture, the statements are only forwarded. The code under test
+ * must use the same instance as the test: declare
+ * StatementCaptureDataSource.of(dataSource) as the DataSource of the test
+ * context.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class StatementCaptureDataSource extends DelegatingDataSource {
+	private static final Map<DataSource, StatementCaptureDataSource> INSTANCES = Collections
+			.synchronizedMap(new IdentityHashMap<DataSource, StatementCaptureDataSource>());
+
+	// threads which created the current thread (directly or not) since their first capture
+	private static final InheritableThreadLocal<List<Thread>> ANCESTORS = new InheritableThreadLocal<List<Thread>>() {
+		@Override
+		protected List<Thread> initialValue() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		protected List<Thread> childValue(List<Thread> parentValue) {
+			// called by the parent thread
+			List<Thread> ancestors = new ArrayList<>(parentValue);
+			ancestors.add(Thread.currentThread());
+			return Collections.unmodifiableList(ancestors);
+		}
+	};
+
+	private final List<StatementCapture> captures = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Constructor (use of() to share the instance with the code under test).
+	 *
+	 * @param targetDataSource
+	 */
+	protected StatementCaptureDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	/**
+	 * Getting the StatementCaptureDataSource of a DataSource (the same instance
+	 * for the whole JVM).
+	 *
+	 * @param dataSource
+	 *            the target DataSource, or a StatementCaptureDataSource
+	 *            (possibly wrapped) which is returned as is
+	 * @return StatementCaptureDataSource
+	 * @throws SQLException
+	 */
+	public static StatementCaptureDataSource of(DataSource dataSource) throws SQLException {
+		if (dataSource instanceof StatementCaptureDataSource) {
+			return (StatementCaptureDataSource) dataSource;
+		}
+
+		if (dataSource.isWrapperFor(StatementCaptureDataSource.class)) {
+			return dataSource.unwrap(StatementCaptureDataSource.class);
+		}
+
+		synchronized (INSTANCES) {
+			StatementCaptureDataSource instance = INSTANCES.get(dataSource);
+			if (null == instance) {
+				instance = new StatementCaptureDataSource(dataSource);
+				INSTANCES.put(dataSource, instance);
+			}
+			return instance;
+		}
+	}
+
+	/**
+	 * Starting a capture of the statements of the current thread and of the
+	 * threads it creates.
+	 *
+	 * @return StatementCapture
+	 */
+	public StatementCapture start() {
+		// the threads created from now on inherit the ancestors
+		ANCESTORS.get();
+		StatementCapture capture = new StatementCapture(this, Thread.currentThread());
+		captures.add(capture);
+		return capture;
+	}
+
+	/**
+	 * Stopping a capture.
+	 *
+	 * @param capture
+	 */
+	void stop(StatementCapture capture) {
+		captures.remove(capture);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return capture(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return capture(super.getConnection(username, password));
+	}
+
+	/**
+	 * Getting a connection whose statements are captured.
+	 *
+	 * @param con
+	 * @return Connection
+	 */
+	private Connection capture(final Connection con) {
+		return proxy(Connection.class, con, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Capturing[" + con + "]";
+			default:
+				break;
+			}
+
+			Object result = invoke(con, method, args);
+			switch (method.getName()) {
+			case "createStatement":
+				return proxy(Statement.class, result, new CapturingStatement((Statement) result, null));
+			case "prepareStatement":
+				return proxy(PreparedStatement.class, result,
+						new CapturingStatement((Statement) result, (String) args[0]));
+			case "prepareCall":
+				return proxy(CallableStatement.class, result,
+						new CapturingStatement((Statement) result, (String) args[0]));
+			default:
+				return result;
+			}
+		});
+	}
+
+	/**
+	 * Statement recording its executions.
+	 */
+	private final class CapturingStatement implements InvocationHandler {
+		private final Statement target;
+		private final String sql;
+		private final List<String> batch = new ArrayList<>();
+		private CapturedStatement last;
+
+		private CapturingStatement(Statement target, String sql) {
+			this.target = target;
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("addBatch".equals(name) && null != args && 1 == args.length) {
+				batch.add((String) args[0]);
+			} else if ("clearBatch".equals(name)) {
+				batch.clear();
+			}
+
+			List<StatementCapture> running = getCaptures();
+			if (running.isEmpty()) {
+				return StatementCaptureDataSource.invoke(target, method, args);
+			}
+
+			if (name.startsWith("execute")) {
+				String executed = null != args && args.length > 0 && args[0] instanceof String ? (String) args[0]
+						: sql;
+				if (name.contains("Batch")) {
+					executed = null == sql ? String.join(";\n", batch) : sql;
+					batch.clear();
+				}
+
+				long start = System.nanoTime();
+				Object result = StatementCaptureDataSource.invoke(target, method, args);
+				last = new CapturedStatement(executed, System.nanoTime() - start);
+				for (StatementCapture capture : running) {
+					capture.add(last);
+				}
+				return result instanceof ResultSet ? countRows((ResultSet) result, last) : result;
+			}
+
+			Object result = StatementCaptureDataSource.invoke(target, method, args);
+			if ("getResultSet".equals(name) && null != result && null != last) {
+				return countRows((ResultSet) result, last);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Getting the running captures of the current thread.
+	 *
+	 * @return List<StatementCapture>
+	 */
+	private List<StatementCapture> getCaptures() {
+		if (captures.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		Thread current = Thread.currentThread();
+		List<Thread> ancestors = ANCESTORS.get();
+		List<StatementCapture> running = new ArrayList<>();
+		for (StatementCapture capture : captures) {
+			if (capture.isCapturing(current, ancestors)) {
+				running.add(capture);
+			}
+		}
+		return running;
+	}
+
+	/**
+	 * Getting a result set recording its fetched rows.
+	 *
+	 * @param rs
+	 * @param statement
+	 * @return ResultSet
+	 */
+	private static ResultSet countRows(final ResultSet rs, final CapturedStatement statement) {
+		return proxy(ResultSet.class, rs, (proxy, method, args) -> {
+			if (!"next".equals(method.getName())) {
+				return invoke(rs, method, args);
+			}
+
+			long start = System.nanoTime();
+			Boolean hasNext = (Boolean) invoke(rs, method, args);
+			statement.addRows(hasNext ? 1 : 0, System.nanoTime() - start);
+			return hasNext;
+		});
+	}
+
+	/**
+	 * @param iface
+	 * @param target
+	 * @param handler
+	 * @return T a proxy of target
+	 */
+	private static <T> T proxy(Class<T> iface, Object target, InvocationHandler handler) {
+		return iface.cast(Proxy.newProxyInstance(StatementCaptureDataSource.class.getClassLoader(),
+				new Class<?>[] { iface }, handler));
+	}
+
+	/**
+	 * Invoking a method on the target (rethrowing its exceptions as is).
+	 *
+	 * @param target
+	 * @param method
+	 * @param args
+	 * @return Object
+	 * @throws Throwable
+	 */
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
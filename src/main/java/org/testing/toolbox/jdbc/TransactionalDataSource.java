@@ -0,0 +1,389 @@
+package org.testing.toolbox.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DataSource binding the connections of a test to a single transaction, rolled
+ * back at the end of the test.
+ *
+ * Each thread calling begin() has its own test transaction (the tests running
+ * in parallel threads don't share it). The connections are bound to the
+ * transaction of the thread which began it and of the threads it creates
+ * (directly or not); the other threads use the test transaction when a single
+ * one is open.
+ *
+ * Between begin() and rollback(), getConnection() returns views of the same
+ * physical connection (auto-commit off): close() does nothing, and the
+ * transactions of the code under test are emulated with savepoints (commit
+ * starts a new savepoint, rollback goes back to the last one). In the emulated
+ * auto-commit mode, each statement is executed inside its own savepoint, rolled
+ * back if it fails: a failing statement doesn't abort the test transaction
+ * (PostgreSQL). Outside a test, the connections of the target DataSource are
+ * returned as is.
+ *
+ * The code under test must use the same instance as the test: declare
+ * TransactionalDataSource.of(dataSource) as the DataSource of the test
+ * context.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class TransactionalDataSource extends DelegatingDataSource {
+	private static final Logger LOGGER = LoggerFactory.getLogger(TransactionalDataSource.class);
+
+	private static final Map<DataSource, TransactionalDataSource> INSTANCES = Collections
+			.synchronizedMap(new IdentityHashMap<DataSource, TransactionalDataSource>());
+
+	// thread which began the test transaction of the current thread (inherited by the threads it creates)
+	private static final InheritableThreadLocal<Thread> OWNER = new InheritableThreadLocal<>();
+
+	// thread which began a test transaction -> connection of the transaction
+	private final Map<Thread, Connection> connections = new HashMap<>();
+
+	// schema -> key of the fixture committed in the schema
+	private final Map<String, String> fixtures = new HashMap<>();
+
+	/**
+	 * Constructor (use of() to share the instance with the code under test).
+	 *
+	 * @param targetDataSource
+	 */
+	protected TransactionalDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	/**
+	 * Getting the TransactionalDataSource of a DataSource (the same instance for
+	 * the whole JVM).
+	 *
+	 * @param dataSource
+	 *            the target DataSource, or a TransactionalDataSource (possibly
+	 *            wrapped) which is returned as is
+	 * @return TransactionalDataSource
+	 * @throws SQLException
+	 */
+	public static TransactionalDataSource of(DataSource dataSource) throws SQLException {
+		if (dataSource instanceof TransactionalDataSource) {
+			return (TransactionalDataSource) dataSource;
+		}
+
+		if (dataSource.isWrapperFor(TransactionalDataSource.class)) {
+			return dataSource.unwrap(TransactionalDataSource.class);
+		}
+
+		synchronized (INSTANCES) {
+			TransactionalDataSource instance = INSTANCES.get(dataSource);
+			if (null == instance) {
+				instance = new TransactionalDataSource(dataSource);
+				INSTANCES.put(dataSource, instance);
+			}
+			return instance;
+		}
+	}
+
+	/**
+	 * Opening the test transaction of the current thread (the previous one is
+	 * rolled back).
+	 *
+	 * @throws SQLException
+	 */
+	public synchronized void begin() throws SQLException {
+		rollback();
+
+		Connection con = getTargetDataSource().getConnection();
+		try {
+			con.setAutoCommit(false);
+		} catch (SQLException e) {
+			con.close();
+			throw e;
+		}
+		OWNER.set(Thread.currentThread());
+		connections.put(Thread.currentThread(), con);
+	}
+
+	/**
+	 * Rolling back the test transaction of the current thread and releasing
+	 * its connection.
+	 *
+	 * @throws SQLException
+	 */
+	public synchronized void rollback() throws SQLException {
+		Connection con = connections.remove(Thread.currentThread());
+		if (null == con) {
+			return;
+		}
+
+		try {
+			con.rollback();
+			con.setAutoCommit(true);
+		} finally {
+			con.close();
+		}
+	}
+
+	/**
+	 * @return true if the connections of the current thread are bound to a
+	 *         test transaction
+	 */
+	public synchronized boolean isActive() {
+		return null != getTransaction();
+	}
+
+	@Override
+	public synchronized Connection getConnection() throws SQLException {
+		Connection con = getTransaction();
+		if (null == con) {
+			return super.getConnection();
+		}
+		return bind(con);
+	}
+
+	@Override
+	public synchronized Connection getConnection(String username, String password) throws SQLException {
+		Connection con = getTransaction();
+		if (null == con) {
+			return super.getConnection(username, password);
+		}
+		return bind(con);
+	}
+
+	/**
+	 * Getting the connection of the test transaction of the current thread.
+	 *
+	 * @return Connection or null
+	 */
+	private Connection getTransaction() {
+		Thread owner = OWNER.get();
+		if (null != owner) {
+			return connections.get(owner);
+		}
+
+		// thread created outside of the tests
+		return 1 == connections.size() ? connections.values().iterator().next() : null;
+	}
+
+	/**
+	 * Getting the key of the fixture committed in a schema.
+	 *
+	 * @param schema
+	 * @return String or null
+	 */
+	public synchronized String getFixture(String schema) {
+		return fixtures.get(schema);
+	}
+
+	/**
+	 * Setting the key of the fixture committed in a schema.
+	 *
+	 * @param schema
+	 * @param key
+	 *            null if the content of the schema is unknown
+	 */
+	public synchronized void setFixture(String schema, String key) {
+		if (null == key) {
+			fixtures.remove(schema);
+		} else {
+			fixtures.put(schema, key);
+		}
+	}
+
+	/**
+	 * Forgetting all the committed fixtures (to call after committed changes).
+	 */
+	public synchronized void clearFixtures() {
+		fixtures.clear();
+	}
+
+	/**
+	 * Getting a view of the test connection.
+	 *
+	 * @param con
+	 * @return Connection
+	 */
+	private static Connection bind(Connection con) {
+		return (Connection) Proxy.newProxyInstance(TransactionalDataSource.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new BoundConnection(con));
+	}
+
+	/**
+	 * View of the test connection given to the callers of getConnection().
+	 */
+	private static final class BoundConnection implements InvocationHandler {
+		private final Connection target;
+		private boolean autoCommit = true;
+		private boolean closed;
+		private Savepoint savepoint;
+
+		private BoundConnection(Connection target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Bound[" + target + "]";
+			case "close":
+				closed = true;
+				return null;
+			case "isClosed":
+				return closed || target.isClosed();
+			case "getAutoCommit":
+				return autoCommit;
+			case "setAutoCommit":
+				setAutoCommit((Boolean) args[0]);
+				return null;
+			case "commit":
+				if (!autoCommit) {
+					savepoint = target.setSavepoint();
+				}
+				return null;
+			case "rollback":
+				if (null == args || 0 == args.length) {
+					if (null != savepoint) {
+						target.rollback(savepoint);
+					}
+					return null;
+				}
+				break;
+			case "setTransactionIsolation":
+			case "setReadOnly":
+				// can't be changed inside the test transaction
+				LOGGER.debug("Ignoring {} inside the test transaction", method.getName());
+				return null;
+			default:
+				break;
+			}
+
+			Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+
+			switch (method.getName()) {
+			case "createStatement":
+				return bindStatement(Statement.class, (Statement) result, proxy);
+			case "prepareStatement":
+				return bindStatement(PreparedStatement.class, (Statement) result, proxy);
+			case "prepareCall":
+				return bindStatement(CallableStatement.class, (Statement) result, proxy);
+			default:
+				return result;
+			}
+		}
+
+		/**
+		 * Getting a view of a statement of the test connection.
+		 *
+		 * @param iface
+		 * @param statement
+		 * @param con
+		 *            the view of the connection
+		 * @return T
+		 */
+		private <T extends Statement> T bindStatement(Class<T> iface, final Statement statement, final Object con) {
+			return iface.cast(Proxy.newProxyInstance(TransactionalDataSource.class.getClassLoader(),
+					new Class<?>[] { iface }, (proxy, method, args) -> {
+						if ("getConnection".equals(method.getName())) {
+							return con;
+						}
+
+						if (!autoCommit || !method.getName().startsWith("execute")) {
+							return forward(statement, method, args);
+						}
+						return executeInSavepoint(statement, method, args);
+					}));
+		}
+
+		/**
+		 * Executing a statement in auto-commit mode inside its own savepoint,
+		 * rolled back if the statement fails (so the failure doesn't abort the
+		 * test transaction).
+		 *
+		 * @param statement
+		 * @param method
+		 * @param args
+		 * @return Object
+		 * @throws Throwable
+		 */
+		private Object executeInSavepoint(Statement statement, Method method, Object[] args) throws Throwable {
+			Savepoint statementSavepoint = target.setSavepoint();
+			Object result;
+			try {
+				result = forward(statement, method, args);
+			} catch (SQLException e) {
+				try {
+					target.rollback(statementSavepoint);
+				} catch (SQLException rollbackException) {
+					e.addSuppressed(rollbackException);
+				}
+				throw e;
+			}
+
+			try {
+				target.releaseSavepoint(statementSavepoint);
+			} catch (SQLFeatureNotSupportedException e) {
+				// released with the transaction
+			}
+			return result;
+		}
+
+		/**
+		 * Invoking a method on the target (rethrowing its exceptions as is).
+		 *
+		 * @param statement
+		 * @param method
+		 * @param args
+		 * @return Object
+		 * @throws Throwable
+		 */
+		private static Object forward(Object statement, Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(statement, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+		/**
+		 * Emulating the auto-commit mode: a savepoint marks the beginning of the
+		 * caller's transaction.
+		 *
+		 * @param value
+		 * @throws SQLException
+		 */
+		private void setAutoCommit(boolean value) throws SQLException {
+			if (autoCommit && !value) {
+				savepoint = target.setSavepoint();
+			} else if (!autoCommit && value) {
+				savepoint = null;
+			}
+			autoCommit = value;
+		}
+	}
+}
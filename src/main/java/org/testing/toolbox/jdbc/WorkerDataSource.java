@@ -0,0 +1,122 @@
+package org.testing.toolbox.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.testing.toolbox.utils.Workers;
+
+/**
+ * DataSource switching its connections to the schema of the current worker in
+ * parallel mode (see Workers).
+ *
+ * The code under test must use it as its DataSource to work on the same
+ * schema as the test. The schema of a connection is restored when it's
+ * closed (returned to the pool). The connections are switched when the
+ * current thread uses the worker slot of a test running in parallel mode (the
+ * parallel option of the test, see WorkerRule); otherwise they are returned
+ * as is.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class WorkerDataSource extends DelegatingDataSource {
+	private final String baseSchema;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param targetDataSource
+	 * @param baseSchema
+	 *            schema the code under test uses out of parallel mode
+	 */
+	public WorkerDataSource(DataSource targetDataSource, String baseSchema) {
+		super(targetDataSource);
+		this.baseSchema = baseSchema;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return route(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return route(super.getConnection(username, password));
+	}
+
+	/**
+	 * Switching a connection to the worker schema.
+	 *
+	 * @param con
+	 * @return Connection
+	 * @throws SQLException
+	 */
+	private Connection route(Connection con) throws SQLException {
+		if (!Workers.isLeased()) {
+			return con;
+		}
+
+		String schema = con.getSchema();
+		try {
+			con.setSchema(Workers.getSchema(baseSchema));
+		} catch (SQLException e) {
+			con.close();
+			throw e;
+		}
+		return (Connection) Proxy.newProxyInstance(WorkerDataSource.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new RoutedConnection(con, schema));
+	}
+
+	/**
+	 * @return the baseSchema
+	 */
+	public String getBaseSchema() {
+		return baseSchema;
+	}
+
+	/**
+	 * Connection restoring its schema when it's closed.
+	 */
+	private static final class RoutedConnection implements InvocationHandler {
+		private final Connection target;
+		private final String schema;
+
+		private RoutedConnection(Connection target, String schema) {
+			this.target = target;
+			this.schema = schema;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "close":
+				try {
+					if (!target.isClosed()) {
+						target.setSchema(schema);
+					}
+				} finally {
+					target.close();
+				}
+				return null;
+			default:
+				break;
+			}
+
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package org.testing.toolbox.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.testing.toolbox.metrics.TestMetrics.SlowOperation;
+import org.testing.toolbox.metrics.TestMetrics.TestStats;
+
+/**
+ * Report of the TestMetrics measures.
+ *
+ * Two files are written: testing-toolbox-metrics.json (tests, classes and slow
+ * operations) and testing-toolbox-metrics.csv (one line by test and phase, by
+ * class and phase, and by slow operation, the "level" column telling which).
+ * The times are in milliseconds.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class MetricsReport {
+	public static final String JSON_FILE = "testing-toolbox-metrics.json";
+	public static final String CSV_FILE = "testing-toolbox-metrics.csv";
+
+	private static final String CSV_HEADER = "level,class,method,phase,count,totalMillis,maxMillis,rows,bytes,detail";
+
+	/**
+	 * Writing the report files.
+	 *
+	 * @param metrics
+	 * @param dir
+	 * @throws IOException
+	 */
+	public static void write(TestMetrics metrics, File dir) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Unable to create " + dir);
+		}
+
+		List<TestStats> tests = metrics.getTests();
+		Map<String, Map<Phase, PhaseStats>> classes = metrics.getClasses();
+		List<SlowOperation> slowOperations = metrics.getSlowOperations();
+
+		try (Writer writer = Files.newBufferedWriter(new File(dir, JSON_FILE).toPath(), StandardCharsets.UTF_8)) {
+			writeJson(writer, metrics, tests, classes, slowOperations);
+		}
+
+		try (Writer writer = Files.newBufferedWriter(new File(dir, CSV_FILE).toPath(), StandardCharsets.UTF_8)) {
+			writeCsv(writer, tests, classes, slowOperations);
+		}
+	}
+
+	/**
+	 * Writing the JSON report.
+	 *
+	 * @param writer
+	 * @param metrics
+	 * @param tests
+	 * @param classes
+	 * @param slowOperations
+	 * @throws IOException
+	 */
+	private static void writeJson(Writer writer, TestMetrics metrics, List<TestStats> tests,
+			Map<String, Map<Phase, PhaseStats>> classes, List<SlowOperation> slowOperations) throws IOException {
+		Map<String, Long> classDurations = new LinkedHashMap<>();
+		for (TestStats test : tests) {
+			Long duration = classDurations.get(test.getClassName());
+			classDurations.put(test.getClassName(), (null == duration ? 0L : duration) + test.getDurationNanos());
+		}
+
+		writer.write("{\n  \"slowMillis\": " + metrics.getSlowMillis() + ",\n  \"tests\": [");
+		for (Iterator<TestStats> it = tests.iterator(); it.hasNext();) {
+			TestStats test = it.next();
+			writer.write("\n    {\"class\": " + quote(test.getClassName()) + ", \"method\": "
+					+ quote(test.getMethodName()) + ", \"durationMillis\": " + millis(test.getDurationNanos())
+					+ ", \"phases\": ");
+			writeJsonPhases(writer, test.getPhases());
+			writer.write(it.hasNext() ? "}," : "}");
+		}
+
+		writer.write("\n  ],\n  \"classes\": [");
+		for (Iterator<Map.Entry<String, Map<Phase, PhaseStats>>> it = classes.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, Map<Phase, PhaseStats>> entry = it.next();
+			writer.write("\n    {\"class\": " + quote(entry.getKey()) + ", \"durationMillis\": "
+					+ millis(classDurations.get(entry.getKey())) + ", \"phases\": ");
+			writeJsonPhases(writer, entry.getValue());
+			writer.write(it.hasNext() ? "}," : "}");
+		}
+
+		writer.write("\n  ],\n  \"slowOperations\": [");
+		for (Iterator<SlowOperation> it = slowOperations.iterator(); it.hasNext();) {
+			SlowOperation slow = it.next();
+			writer.write("\n    {\"class\": " + quote(slow.getTest().getClassName()) + ", \"method\": "
+					+ quote(slow.getTest().getMethodName()) + ", \"phase\": " + quote(slow.getPhase().name())
+					+ ", \"millis\": " + millis(slow.getNanos()) + ", \"detail\": " + quote(slow.getDetail()));
+			writer.write(it.hasNext() ? "}," : "}");
+		}
+		writer.write("\n  ]\n}\n");
+	}
+
+	/**
+	 * Writing the measures by phase as a JSON object.
+	 *
+	 * @param writer
+	 * @param phases
+	 * @throws IOException
+	 */
+	private static void writeJsonPhases(Writer writer, Map<Phase, PhaseStats> phases) throws IOException {
+		writer.write("{");
+		for (Iterator<Map.Entry<Phase, PhaseStats>> it = phases.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Phase, PhaseStats> entry = it.next();
+			PhaseStats stats = entry.getValue();
+			writer.write(quote(entry.getKey().name()) + ": {\"count\": " + stats.getCount() + ", \"totalMillis\": "
+					+ millis(stats.getTotalNanos()) + ", \"maxMillis\": " + millis(stats.getMaxNanos())
+					+ ", \"rows\": " + stats.getRows() + ", \"bytes\": " + stats.getBytes() + "}");
+			if (it.hasNext()) {
+				writer.write(", ");
+			}
+		}
+		writer.write("}");
+	}
+
+	/**
+	 * Writing the CSV report.
+	 *
+	 * @param writer
+	 * @param tests
+	 * @param classes
+	 * @param slowOperations
+	 * @throws IOException
+	 */
+	private static void writeCsv(Writer writer, List<TestStats> tests, Map<String, Map<Phase, PhaseStats>> classes,
+			List<SlowOperation> slowOperations) throws IOException {
+		writer.write(CSV_HEADER + "\n");
+
+		for (TestStats test : tests) {
+			for (Map.Entry<Phase, PhaseStats> entry : test.getPhases().entrySet()) {
+				writeCsvLine(writer, "test", test.getClassName(), test.getMethodName(), entry.getKey(),
+						entry.getValue());
+			}
+		}
+
+		for (Map.Entry<String, Map<Phase, PhaseStats>> classEntry : classes.entrySet()) {
+			for (Map.Entry<Phase, PhaseStats> entry : classEntry.getValue().entrySet()) {
+				writeCsvLine(writer, "class", classEntry.getKey(), "", entry.getKey(), entry.getValue());
+			}
+		}
+
+		for (SlowOperation slow : slowOperations) {
+			writer.write("slow," + csv(slow.getTest().getClassName()) + "," + csv(slow.getTest().getMethodName()) + ","
+					+ slow.getPhase() + ",1," + millis(slow.getNanos()) + "," + millis(slow.getNanos()) + ",,,"
+					+ csv(slow.getDetail()) + "\n");
+		}
+	}
+
+	/**
+	 * Writing a line of measures.
+	 *
+	 * @param writer
+	 * @param level
+	 * @param className
+	 * @param methodName
+	 * @param phase
+	 * @param stats
+	 * @throws IOException
+	 */
+	private static void writeCsvLine(Writer writer, String level, String className, String methodName, Phase phase,
+			PhaseStats stats) throws IOException {
+		writer.write(level + "," + csv(className) + "," + csv(methodName) + "," + phase + "," + stats.getCount() + ","
+				+ millis(stats.getTotalNanos()) + "," + millis(stats.getMaxNanos()) + "," + stats.getRows() + ","
+				+ stats.getBytes() + ",\n");
+	}
+
+	/**
+	 * @param nanos
+	 * @return String the milliseconds with 3 decimals
+	 */
+	private static String millis(Long nanos) {
+		return String.format(Locale.ROOT, "%.3f",
+				null == nanos ? 0d : nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	/**
+	 * @param value
+	 * @return String the value as a JSON string
+	 */
+	private static String quote(String value) {
+		if (null == value) {
+			return "null";
+		}
+
+		StringBuilder builder = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if ('"' == c || '\\' == c) {
+				builder.append('\\').append(c);
+			} else if (c < 0x20) {
+				builder.append(String.format("\\u%04x", (int) c));
+			} else {
+				builder.append(c);
+			}
+		}
+		return builder.append('"').toString();
+	}
+
+	/**
+	 * @param value
+	 * @return String the value as a CSV field
+	 */
+	private static String csv(String value) {
+		if (null == value) {
+			return "";
+		}
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			return value;
+		}
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+
+	/**
+	 * Static class : private constructor.
+	 */
+	private MetricsReport() {
+	}
+}
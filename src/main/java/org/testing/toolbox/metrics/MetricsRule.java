@@ -0,0 +1,23 @@
+package org.testing.toolbox.metrics;
+
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+/**
+ * Rule attaching the TestMetrics measures of a thread to the running test
+ * method.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class MetricsRule extends TestWatcher {
+	@Override
+	protected void starting(Description description) {
+		TestMetrics.getInstance().testStarted(description.getClassName(), description.getMethodName());
+	}
+
+	@Override
+	protected void finished(Description description) {
+		TestMetrics.getInstance().testFinished();
+	}
+}
@@ -0,0 +1,44 @@
+package org.testing.toolbox.metrics;
+
+/**
+ * Phases of the DatabaseTest operations measured by TestMetrics.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public enum Phase {
+	/**
+	 * Getting a dbunit connection (getConnection).
+	 */
+	CONNECTION,
+
+	/**
+	 * Parsing a dataset file (bytes: size of the file).
+	 */
+	PARSE,
+
+	/**
+	 * Executing a dbunit operation on a dataset (rows: read rows).
+	 */
+	LOAD,
+
+	/**
+	 * Dumping tables into a dataset file (bytes: size of the file).
+	 */
+	EXPORT,
+
+	/**
+	 * SQL queries and assertions (rows: expected lines).
+	 */
+	QUERY,
+
+	/**
+	 * XPath evaluations on a dumped dataset (bytes: size of the file).
+	 */
+	XPATH,
+
+	/**
+	 * Capturing or restoring a snapshot.
+	 */
+	SNAPSHOT
+}
@@ -0,0 +1,80 @@
+package org.testing.toolbox.metrics;
+
+/**
+ * Aggregated measures of a phase.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class PhaseStats {
+	private long count;
+	private long totalNanos;
+	private long maxNanos;
+	private long rows;
+	private long bytes;
+
+	/**
+	 * Adding a measure.
+	 *
+	 * @param nanos
+	 * @param rows
+	 * @param bytes
+	 */
+	public synchronized void add(long nanos, long rows, long bytes) {
+		this.count++;
+		this.totalNanos += nanos;
+		this.maxNanos = Math.max(this.maxNanos, nanos);
+		this.rows += rows;
+		this.bytes += bytes;
+	}
+
+	/**
+	 * Adding the measures of another phase.
+	 *
+	 * @param other
+	 */
+	public synchronized void merge(PhaseStats other) {
+		synchronized (other) {
+			this.count += other.count;
+			this.totalNanos += other.totalNanos;
+			this.maxNanos = Math.max(this.maxNanos, other.maxNanos);
+			this.rows += other.rows;
+			this.bytes += other.bytes;
+		}
+	}
+
+	/**
+	 * @return the number of measures
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the total time in nanoseconds
+	 */
+	public synchronized long getTotalNanos() {
+		return totalNanos;
+	}
+
+	/**
+	 * @return the longest time in nanoseconds
+	 */
+	public synchronized long getMaxNanos() {
+		return maxNanos;
+	}
+
+	/**
+	 * @return the rows
+	 */
+	public synchronized long getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return the bytes
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+}
@@ -0,0 +1,331 @@
+package org.testing.toolbox.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JVM-wide collector of the time, rows and bytes of the DatabaseTest phases,
+ * aggregated by test method (see MetricsRule).
+ *
+ * Disabled by default: set the testing.toolbox.metrics system property to
+ * true. The operations longer than testing.toolbox.metrics.slowMillis (1000
+ * ms by default) are flagged as slow, and the report (see MetricsReport) is
+ * written into testing.toolbox.metrics.dir ("target" by default) when the JVM
+ * exits.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class TestMetrics {
+	private static final Logger LOGGER = LoggerFactory.getLogger(TestMetrics.class);
+
+	public static final String ENABLED_PROPERTY = "testing.toolbox.metrics";
+	public static final String SLOW_MILLIS_PROPERTY = "testing.toolbox.metrics.slowMillis";
+	public static final String DIR_PROPERTY = "testing.toolbox.metrics.dir";
+	public static final String UNKNOWN = "?";
+
+	private static final long DEFAULT_SLOW_MILLIS = 1000L;
+	private static final String DEFAULT_DIR = "target";
+
+	private static final TestMetrics INSTANCE = new TestMetrics(Boolean.getBoolean(ENABLED_PROPERTY),
+			Long.getLong(SLOW_MILLIS_PROPERTY, DEFAULT_SLOW_MILLIS));
+
+	private final boolean enabled;
+	private final long slowNanos;
+	private final Map<String, TestStats> tests = new ConcurrentHashMap<>();
+	private final List<SlowOperation> slowOperations = Collections.synchronizedList(new ArrayList<>());
+	private final ThreadLocal<TestStats> currentTest = new ThreadLocal<>();
+
+	/**
+	 * Measures of a test method.
+	 */
+	public static final class TestStats {
+		private final String className;
+		private final String methodName;
+		private final Map<Phase, PhaseStats> phases = new EnumMap<>(Phase.class);
+		private volatile long startNanos;
+		private volatile long durationNanos;
+
+		private TestStats(String className, String methodName) {
+			this.className = className;
+			this.methodName = methodName;
+		}
+
+		private PhaseStats getPhase(Phase phase) {
+			synchronized (phases) {
+				PhaseStats stats = phases.get(phase);
+				if (null == stats) {
+					stats = new PhaseStats();
+					phases.put(phase, stats);
+				}
+				return stats;
+			}
+		}
+
+		/**
+		 * @return the className
+		 */
+		public String getClassName() {
+			return className;
+		}
+
+		/**
+		 * @return the methodName
+		 */
+		public String getMethodName() {
+			return methodName;
+		}
+
+		/**
+		 * @return the measures by phase
+		 */
+		public Map<Phase, PhaseStats> getPhases() {
+			synchronized (phases) {
+				return new EnumMap<>(phases);
+			}
+		}
+
+		/**
+		 * @return the duration of the test in nanoseconds (rules included)
+		 */
+		public long getDurationNanos() {
+			return durationNanos;
+		}
+	}
+
+	/**
+	 * Operation longer than the threshold.
+	 */
+	public static final class SlowOperation {
+		private final TestStats test;
+		private final Phase phase;
+		private final String detail;
+		private final long nanos;
+
+		private SlowOperation(TestStats test, Phase phase, String detail, long nanos) {
+			this.test = test;
+			this.phase = phase;
+			this.detail = detail;
+			this.nanos = nanos;
+		}
+
+		/**
+		 * @return the test
+		 */
+		public TestStats getTest() {
+			return test;
+		}
+
+		/**
+		 * @return the phase
+		 */
+		public Phase getPhase() {
+			return phase;
+		}
+
+		/**
+		 * @return the detail (file, tables...)
+		 */
+		public String getDetail() {
+			return detail;
+		}
+
+		/**
+		 * @return the time in nanoseconds
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param enabled
+	 * @param slowMillis
+	 */
+	private TestMetrics(boolean enabled, long slowMillis) {
+		this.enabled = enabled;
+		this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+
+		if (enabled) {
+			Runtime.getRuntime().addShutdownHook(new Thread(this::writeReport, "testing-toolbox-metrics"));
+		}
+	}
+
+	/**
+	 * Getting the JVM-wide instance.
+	 *
+	 * @return TestMetrics
+	 */
+	public static TestMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Starting a measure.
+	 *
+	 * @return long the start time to give to record (0 if disabled)
+	 */
+	public long start() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Recording a measure of the current test.
+	 *
+	 * @param phase
+	 * @param start
+	 *            value returned by start
+	 * @param rows
+	 * @param bytes
+	 * @param detail
+	 *            file, tables... (to identify the slow operations)
+	 */
+	public void record(Phase phase, long start, long rows, long bytes, String detail) {
+		if (!enabled) {
+			return;
+		}
+
+		long nanos = System.nanoTime() - start;
+		TestStats test = getCurrentTest();
+		test.getPhase(phase).add(nanos, rows, bytes);
+
+		if (nanos >= slowNanos) {
+			slowOperations.add(new SlowOperation(test, phase, detail, nanos));
+			LOGGER.warn("[TestMetrics] Slow {} in {}#{} ({} ms): {}", phase, test.className, test.methodName,
+					TimeUnit.NANOSECONDS.toMillis(nanos), detail);
+		}
+	}
+
+	/**
+	 * Starting a test on the current thread.
+	 *
+	 * @param className
+	 * @param methodName
+	 */
+	public void testStarted(String className, String methodName) {
+		if (!enabled) {
+			return;
+		}
+
+		TestStats test = getTest(className, methodName);
+		test.startNanos = System.nanoTime();
+		currentTest.set(test);
+	}
+
+	/**
+	 * Ending the test of the current thread.
+	 */
+	public void testFinished() {
+		if (!enabled) {
+			return;
+		}
+
+		TestStats test = currentTest.get();
+		if (null != test) {
+			test.durationNanos += System.nanoTime() - test.startNanos;
+			currentTest.remove();
+		}
+	}
+
+	/**
+	 * Getting the measures of a test.
+	 *
+	 * @param className
+	 * @param methodName
+	 * @return TestStats
+	 */
+	private TestStats getTest(String className, String methodName) {
+		return tests.computeIfAbsent(className + "#" + methodName, key -> new TestStats(className, methodName));
+	}
+
+	/**
+	 * @return TestStats the test of the current thread (or the unknown test)
+	 */
+	private TestStats getCurrentTest() {
+		TestStats test = currentTest.get();
+		return null == test ? getTest(UNKNOWN, UNKNOWN) : test;
+	}
+
+	/**
+	 * Writing the report into the directory of the testing.toolbox.metrics.dir
+	 * property.
+	 */
+	public void writeReport() {
+		File dir = new File(System.getProperty(DIR_PROPERTY, DEFAULT_DIR));
+		try {
+			MetricsReport.write(this, dir);
+		} catch (IOException e) {
+			LOGGER.error("[TestMetrics] Unable to write the report into " + dir, e);
+		}
+	}
+
+	/**
+	 * @return the measures of the tests, sorted by class and method
+	 */
+	public List<TestStats> getTests() {
+		return new ArrayList<>(new TreeMap<>(tests).values());
+	}
+
+	/**
+	 * Aggregating the measures by test class.
+	 *
+	 * @return Map<String, Map<Phase, PhaseStats>> the measures by phase, by
+	 *         class
+	 */
+	public Map<String, Map<Phase, PhaseStats>> getClasses() {
+		Map<String, Map<Phase, PhaseStats>> classes = new TreeMap<>();
+		for (TestStats test : getTests()) {
+			Map<Phase, PhaseStats> phases = classes.get(test.className);
+			if (null == phases) {
+				phases = new EnumMap<>(Phase.class);
+				classes.put(test.className, phases);
+			}
+
+			for (Map.Entry<Phase, PhaseStats> entry : test.getPhases().entrySet()) {
+				PhaseStats stats = phases.get(entry.getKey());
+				if (null == stats) {
+					stats = new PhaseStats();
+					phases.put(entry.getKey(), stats);
+				}
+				stats.merge(entry.getValue());
+			}
+		}
+		return classes;
+	}
+
+	/**
+	 * @return the slow operations
+	 */
+	public List<SlowOperation> getSlowOperations() {
+		synchronized (slowOperations) {
+			return new ArrayList<>(slowOperations);
+		}
+	}
+
+	/**
+	 * @return true if the measures are collected
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return the threshold of the slow operations in milliseconds
+	 */
+	public long getSlowMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(slowNanos);
+	}
+}
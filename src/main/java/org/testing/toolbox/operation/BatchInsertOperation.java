@@ -0,0 +1,276 @@
+package org.testing.toolbox.operation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.RowOutOfBoundsException;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.operation.DatabaseOperation;
+import org.testing.toolbox.database.MetaDataUtils;
+
+/**
+ * Insert operation sending the rows of each table by JDBC batches.
+ *
+ * Null values (including the ${NULL} / ${null} replacements) are inserted as
+ * SQL NULL. When the connection is in auto-commit mode, the operation commits
+ * after each table or once at the end of the dataset (see CommitMode);
+ * otherwise the transaction is left to the caller.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class BatchInsertOperation extends DatabaseOperation {
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	/**
+	 * When to commit.
+	 */
+	public enum CommitMode {
+		/**
+		 * Never commit (auto-commit is kept).
+		 */
+		NONE,
+
+		/**
+		 * Commit after each table.
+		 */
+		TABLE,
+
+		/**
+		 * Commit once the whole dataset is inserted.
+		 */
+		DATASET
+	}
+
+	private final int batchSize;
+	private final CommitMode commitMode;
+
+	/**
+	 * Constructor with the default batch size, committing once per dataset.
+	 */
+	public BatchInsertOperation() {
+		this(DEFAULT_BATCH_SIZE, CommitMode.DATASET);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param batchSize
+	 *            number of rows sent per executeBatch
+	 * @param commitMode
+	 */
+	public BatchInsertOperation(int batchSize, CommitMode commitMode) {
+		this.batchSize = batchSize;
+		this.commitMode = commitMode;
+	}
+
+	/**
+	 * Clean insert: DELETE_ALL then batched insert.
+	 *
+	 * @param batchSize
+	 * @param commitMode
+	 * @return DatabaseOperation
+	 */
+	public static DatabaseOperation cleanInsert(int batchSize, CommitMode commitMode) {
+		return new CleanInsertOperation(DatabaseOperation.DELETE_ALL, new BatchInsertOperation(batchSize, commitMode));
+	}
+
+	@Override
+	public void execute(IDatabaseConnection connection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+		Connection con = connection.getConnection();
+		boolean commit = CommitMode.NONE != commitMode && con.getAutoCommit();
+
+		if (commit) {
+			con.setAutoCommit(false);
+		}
+
+		try {
+			ITableIterator it = dataSet.iterator();
+			while (it.next()) {
+				insert(connection, it.getTable());
+
+				if (commit && CommitMode.TABLE == commitMode) {
+					con.commit();
+				}
+			}
+
+			if (commit) {
+				con.commit();
+			}
+		} catch (DatabaseUnitException | SQLException e) {
+			if (commit) {
+				con.rollback();
+			}
+			throw e;
+		} finally {
+			if (commit) {
+				con.setAutoCommit(true);
+			}
+		}
+	}
+
+	/**
+	 * Inserting the rows of a table.
+	 *
+	 * The columns without value (ITable.NO_VALUE) are left out of the insert
+	 * statement, so a new statement is prepared each time the set of columns
+	 * changes. The tables without column or row are skipped.
+	 *
+	 * @param connection
+	 * @param table
+	 * @return int the number of inserted rows
+	 * @throws DataSetException
+	 * @throws SQLException
+	 */
+	public int insert(IDatabaseConnection connection, ITable table) throws DataSetException, SQLException {
+		if (MetaDataUtils.isEmpty(table)) {
+			return 0;
+		}
+
+		ITableMetaData dbMetaData = MetaDataUtils.getTableMetaData(connection, table.getTableMetaData().getTableName());
+		Column[] columns = MetaDataUtils.getColumns(table.getTableMetaData(), dbMetaData);
+
+		PreparedStatement statement = null;
+		boolean[] current = null;
+		int pending = 0;
+		int row = 0;
+
+		try {
+			for (;; row++) {
+				Object[] values = new Object[columns.length];
+				boolean[] ignored = new boolean[columns.length];
+				try {
+					for (int i = 0; i < columns.length; i++) {
+						values[i] = table.getValue(row, columns[i].getColumnName());
+						ignored[i] = ITable.NO_VALUE == values[i];
+					}
+				} catch (RowOutOfBoundsException e) {
+					break;
+				}
+
+				if (null == statement || !Arrays.equals(current, ignored)) {
+					if (null != statement) {
+						executeBatch(statement, pending);
+						statement.close();
+					}
+					statement = connection.getConnection().prepareStatement(buildInsert(dbMetaData, columns, ignored));
+					current = ignored;
+					pending = 0;
+				}
+
+				bind(statement, columns, values, ignored);
+				statement.addBatch();
+
+				if (++pending >= batchSize) {
+					executeBatch(statement, pending);
+					pending = 0;
+				}
+			}
+
+			if (null != statement) {
+				executeBatch(statement, pending);
+			}
+		} finally {
+			if (null != statement) {
+				statement.close();
+			}
+		}
+
+		return row;
+	}
+
+	/**
+	 * Building the insert statement.
+	 *
+	 * @param dbMetaData
+	 * @param columns
+	 * @param ignored
+	 * @return String
+	 */
+	private static String buildInsert(ITableMetaData dbMetaData, Column[] columns, boolean[] ignored) {
+		StringBuilder names = new StringBuilder();
+		StringBuilder params = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			if (ignored[i]) {
+				continue;
+			}
+			if (names.length() > 0) {
+				names.append(", ");
+				params.append(", ");
+			}
+			names.append(columns[i].getColumnName());
+			params.append('?');
+		}
+		return "INSERT INTO " + dbMetaData.getTableName() + " (" + names + ") VALUES (" + params + ")";
+	}
+
+	/**
+	 * Binding the values of a row.
+	 *
+	 * @param statement
+	 * @param columns
+	 * @param values
+	 * @param ignored
+	 * @throws SQLException
+	 * @throws DataSetException
+	 */
+	private static void bind(PreparedStatement statement, Column[] columns, Object[] values, boolean[] ignored)
+			throws SQLException, DataSetException {
+		int idx = 1;
+		for (int i = 0; i < columns.length; i++) {
+			if (ignored[i]) {
+				continue;
+			}
+
+			DataType dataType = columns[i].getDataType();
+			if (null == values[i]) {
+				statement.setNull(idx++, dataType.getSqlType());
+			} else {
+				dataType.setSqlValue(dataType.typeCast(values[i]), idx++, statement);
+			}
+		}
+	}
+
+	/**
+	 * Executing the pending rows.
+	 *
+	 * @param statement
+	 * @param pending
+	 * @throws SQLException
+	 */
+	private static void executeBatch(PreparedStatement statement, int pending) throws SQLException {
+		if (pending > 0) {
+			statement.executeBatch();
+			statement.clearBatch();
+		}
+	}
+
+	/**
+	 * @return the batchSize
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @return the commitMode
+	 */
+	public CommitMode getCommitMode() {
+		return commitMode;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[batchSize=" + batchSize + ", commitMode=" + commitMode + "]";
+	}
+}
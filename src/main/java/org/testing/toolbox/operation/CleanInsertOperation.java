@@ -0,0 +1,42 @@
+package org.testing.toolbox.operation;
+
+import org.dbunit.operation.CompositeOperation;
+import org.dbunit.operation.DatabaseOperation;
+
+/**
+ * Purge operation followed by an insert operation, both kept accessible so
+ * that loaders can run them separately (see ParallelDataSetLoader).
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class CleanInsertOperation extends CompositeOperation {
+	private final DatabaseOperation purgeOperation;
+	private final DatabaseOperation insertOperation;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param purgeOperation
+	 * @param insertOperation
+	 */
+	public CleanInsertOperation(DatabaseOperation purgeOperation, DatabaseOperation insertOperation) {
+		super(purgeOperation, insertOperation);
+		this.purgeOperation = purgeOperation;
+		this.insertOperation = insertOperation;
+	}
+
+	/**
+	 * @return the purgeOperation
+	 */
+	public DatabaseOperation getPurgeOperation() {
+		return purgeOperation;
+	}
+
+	/**
+	 * @return the insertOperation
+	 */
+	public DatabaseOperation getInsertOperation() {
+		return insertOperation;
+	}
+}
@@ -0,0 +1,242 @@
+package org.testing.toolbox.operation;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.FilteredDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+import org.dbunit.dataset.filter.SequenceTableFilter;
+import org.dbunit.operation.DatabaseOperation;
+import org.testing.toolbox.database.ConnectionCache;
+import org.testing.toolbox.database.TableDependencyGraph;
+
+/**
+ * Loading the tables of a dataset concurrently.
+ *
+ * The tables are split into levels with the foreign keys dependency graph:
+ * the tables of a level only reference tables of the previous levels, so they
+ * are inserted concurrently, each one on its own connection (auto-commit)
+ * taken from a pool of at most "parallelism" connections. The levels are
+ * loaded one after the other. The purge of a clean insert (DELETE_ALL,
+ * TRUNCATE) runs first, sequentially, in the reverse foreign keys order.
+ *
+ * With a parallelism of 1 or an operation which can't be split (see split),
+ * the dataset is loaded sequentially on a single connection.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class ParallelDataSetLoader {
+	private final DataSource dataSource;
+	private final String schema;
+	private final IDataTypeFactory dataTypeFactory;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private boolean switchSchema;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dataSource
+	 * @param schema
+	 * @param dataTypeFactory
+	 */
+	public ParallelDataSetLoader(DataSource dataSource, String schema, IDataTypeFactory dataTypeFactory) {
+		this.dataSource = dataSource;
+		this.schema = schema;
+		this.dataTypeFactory = dataTypeFactory;
+	}
+
+	/**
+	 * Splitting an operation into a purge operation and a per-table insert
+	 * operation.
+	 *
+	 * @param operation
+	 * @return DatabaseOperation[] {purge or null, insert} or null if the
+	 *         operation can't be loaded concurrently
+	 */
+	public static DatabaseOperation[] split(DatabaseOperation operation) {
+		if (DatabaseOperation.CLEAN_INSERT == operation) {
+			return new DatabaseOperation[] { DatabaseOperation.DELETE_ALL, DatabaseOperation.INSERT };
+		}
+
+		if (operation instanceof CleanInsertOperation) {
+			CleanInsertOperation cleanInsert = (CleanInsertOperation) operation;
+			return null == split(cleanInsert.getInsertOperation()) ? null
+					: new DatabaseOperation[] { cleanInsert.getPurgeOperation(), cleanInsert.getInsertOperation() };
+		}
+
+		if (DatabaseOperation.INSERT == operation || operation instanceof BatchInsertOperation
+				|| operation instanceof PostgresqlCopyOperation) {
+			return new DatabaseOperation[] { null, operation };
+		}
+
+		return null;
+	}
+
+	/**
+	 * Loading a dataset.
+	 *
+	 * @param dataSet
+	 * @param operation
+	 * @param graph
+	 *            foreign keys of the schema
+	 * @throws SQLException
+	 * @throws DatabaseUnitException
+	 */
+	public void load(IDataSet dataSet, DatabaseOperation operation, TableDependencyGraph graph)
+			throws SQLException, DatabaseUnitException {
+		DatabaseOperation[] operations = split(operation);
+		ConnectionCache connections = newConnectionCache();
+
+		try {
+			IDatabaseConnection connection = connections.getConnection(schema, dataTypeFactory);
+			if (parallelism <= 1 || null == operations) {
+				operation.execute(connection, dataSet);
+				return;
+			}
+
+			if (null != operations[0]) {
+				String[] orderedTables = graph.sort(dataSet.getTableNames());
+				operations[0].execute(connection,
+						new FilteredDataSet(new SequenceTableFilter(orderedTables), dataSet));
+			}
+			loadLevels(dataSet, operations[1], graph.levels(dataSet.getTableNames()));
+		} finally {
+			connections.close();
+		}
+	}
+
+	/**
+	 * Inserting the levels of tables one after the other.
+	 *
+	 * @param dataSet
+	 * @param insert
+	 * @param levels
+	 * @throws SQLException
+	 * @throws DatabaseUnitException
+	 */
+	private void loadLevels(final IDataSet dataSet, final DatabaseOperation insert, List<List<String>> levels)
+			throws SQLException, DatabaseUnitException {
+		int width = 0;
+		for (List<String> level : levels) {
+			width = Math.max(width, level.size());
+		}
+		int nbThreads = Math.max(1, Math.min(parallelism, width));
+
+		final BlockingQueue<IDatabaseConnection> pool = new ArrayBlockingQueue<>(nbThreads);
+		List<ConnectionCache> caches = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+
+		try {
+			for (int i = 0; i < nbThreads; i++) {
+				ConnectionCache cache = newConnectionCache();
+				caches.add(cache);
+				pool.add(cache.getConnection(schema, dataTypeFactory));
+			}
+
+			for (List<String> level : levels) {
+				List<Future<Void>> futures = new ArrayList<>();
+				for (final String tableName : level) {
+					futures.add(executor.submit(() -> {
+						IDatabaseConnection connection = pool.take();
+						try {
+							insert.execute(connection, new DefaultDataSet(dataSet.getTable(tableName)));
+						} finally {
+							pool.add(connection);
+						}
+						return null;
+					}));
+				}
+				await(futures);
+			}
+		} finally {
+			executor.shutdownNow();
+			for (ConnectionCache cache : caches) {
+				cache.close();
+			}
+		}
+	}
+
+	/**
+	 * Waiting for the tables of a level (the first error is thrown once all of
+	 * them are done).
+	 *
+	 * @param futures
+	 * @throws SQLException
+	 * @throws DatabaseUnitException
+	 */
+	private static void await(List<Future<Void>> futures) throws SQLException, DatabaseUnitException {
+		Throwable error = null;
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				if (null == error) {
+					error = e.getCause();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DatabaseUnitException(e);
+			}
+		}
+
+		if (error instanceof SQLException) {
+			throw (SQLException) error;
+		}
+		if (error instanceof DatabaseUnitException) {
+			throw (DatabaseUnitException) error;
+		}
+		if (error instanceof RuntimeException) {
+			throw (RuntimeException) error;
+		}
+		if (null != error) {
+			throw new DatabaseUnitException(error);
+		}
+	}
+
+	/**
+	 * @return ConnectionCache a cache for one physical connection
+	 */
+	private ConnectionCache newConnectionCache() {
+		ConnectionCache cache = new ConnectionCache(dataSource, false);
+		cache.setSwitchSchema(switchSchema);
+		return cache;
+	}
+
+	/**
+	 * @param parallelism
+	 *            maximum number of tables loaded at the same time (1 to load
+	 *            sequentially)
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @return the parallelism
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @param switchSchema
+	 *            see ConnectionCache.setSwitchSchema
+	 */
+	public void setSwitchSchema(boolean switchSchema) {
+		this.switchSchema = switchSchema;
+	}
+}
@@ -0,0 +1,283 @@
+package org.testing.toolbox.operation;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.RowOutOfBoundsException;
+import org.dbunit.operation.DatabaseOperation;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.testing.toolbox.database.MetaDataUtils;
+
+/**
+ * Insert operation streaming the rows of each table into PostgreSQL with
+ * "COPY table (columns) FROM STDIN" (CSV format) through the driver's
+ * CopyManager.
+ *
+ * The rows are encoded while the dataset is read and sent by chunks, so the
+ * memory footprint doesn't depend on the size of the tables. Null values
+ * (including the ${NULL} / ${null} replacements) are copied as SQL NULL. The
+ * columns without value (ITable.NO_VALUE) are left out of the column list,
+ * which starts a new COPY each time the set of columns changes. The tables
+ * without column or row are skipped.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class PostgresqlCopyOperation extends DatabaseOperation {
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final int bufferSize;
+
+	/**
+	 * Constructor with the default buffer size.
+	 */
+	public PostgresqlCopyOperation() {
+		this(DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bufferSize
+	 *            number of bytes sent to the server per chunk
+	 */
+	public PostgresqlCopyOperation(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	@Override
+	public void execute(IDatabaseConnection connection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+		CopyManager copyManager = getCopyManager(connection.getConnection());
+
+		ITableIterator it = dataSet.iterator();
+		while (it.next()) {
+			copy(connection, copyManager, it.getTable());
+		}
+	}
+
+	/**
+	 * Getting the CopyManager of a connection (unwrapping pooled connections).
+	 *
+	 * @param con
+	 * @return CopyManager
+	 * @throws SQLException
+	 */
+	public static CopyManager getCopyManager(Connection con) throws SQLException {
+		if (con instanceof PGConnection) {
+			return ((PGConnection) con).getCopyAPI();
+		}
+
+		if (con.isWrapperFor(PGConnection.class)) {
+			return con.unwrap(PGConnection.class).getCopyAPI();
+		}
+
+		throw new SQLException("COPY needs a PostgreSQL connection: " + con.getClass().getName());
+	}
+
+	/**
+	 * Copying the rows of a table.
+	 *
+	 * @param connection
+	 * @param copyManager
+	 * @param table
+	 * @return long the number of copied rows
+	 * @throws DataSetException
+	 * @throws SQLException
+	 */
+	public long copy(IDatabaseConnection connection, CopyManager copyManager, ITable table)
+			throws DataSetException, SQLException {
+		if (MetaDataUtils.isEmpty(table)) {
+			return 0;
+		}
+
+		ITableMetaData dbMetaData = MetaDataUtils.getTableMetaData(connection, table.getTableMetaData().getTableName());
+		Column[] columns = MetaDataUtils.getColumns(table.getTableMetaData(), dbMetaData);
+
+		CopyIn copyIn = null;
+		boolean[] current = null;
+		byte[] buffer = new byte[bufferSize];
+		int length = 0;
+		StringBuilder line = new StringBuilder();
+		long rowCount = 0;
+
+		try {
+			for (int row = 0;; row++) {
+				Object[] values = new Object[columns.length];
+				boolean[] ignored = new boolean[columns.length];
+				try {
+					for (int i = 0; i < columns.length; i++) {
+						values[i] = table.getValue(row, columns[i].getColumnName());
+						ignored[i] = ITable.NO_VALUE == values[i];
+					}
+				} catch (RowOutOfBoundsException e) {
+					break;
+				}
+
+				if (null == copyIn || !Arrays.equals(current, ignored)) {
+					if (null != copyIn) {
+						flush(copyIn, buffer, length);
+						length = 0;
+						rowCount += copyIn.endCopy();
+					}
+					copyIn = copyManager.copyIn(buildCopy(dbMetaData, columns, ignored));
+					current = ignored;
+				}
+
+				line.setLength(0);
+				encode(line, columns, values, ignored);
+				byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+
+				if (length + bytes.length > buffer.length) {
+					flush(copyIn, buffer, length);
+					length = 0;
+				}
+
+				if (bytes.length > buffer.length) {
+					copyIn.writeToCopy(bytes, 0, bytes.length);
+				} else {
+					System.arraycopy(bytes, 0, buffer, length, bytes.length);
+					length += bytes.length;
+				}
+			}
+
+			if (null != copyIn) {
+				flush(copyIn, buffer, length);
+				rowCount += copyIn.endCopy();
+			}
+		} finally {
+			if (null != copyIn && copyIn.isActive()) {
+				copyIn.cancelCopy();
+			}
+		}
+
+		return rowCount;
+	}
+
+	/**
+	 * Sending the buffered rows.
+	 *
+	 * @param copyIn
+	 * @param buffer
+	 * @param length
+	 * @throws SQLException
+	 */
+	private static void flush(CopyIn copyIn, byte[] buffer, int length) throws SQLException {
+		if (length > 0) {
+			copyIn.writeToCopy(buffer, 0, length);
+		}
+	}
+
+	/**
+	 * Building the COPY statement.
+	 *
+	 * @param dbMetaData
+	 * @param columns
+	 * @param ignored
+	 * @return String
+	 */
+	private static String buildCopy(ITableMetaData dbMetaData, Column[] columns, boolean[] ignored) {
+		StringBuilder names = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			if (ignored[i]) {
+				continue;
+			}
+			if (names.length() > 0) {
+				names.append(", ");
+			}
+			names.append(columns[i].getColumnName());
+		}
+		return "COPY " + dbMetaData.getTableName() + " (" + names + ") FROM STDIN WITH (FORMAT csv)";
+	}
+
+	/**
+	 * Encoding a row as a CSV line: null values are empty unquoted fields, the
+	 * other values are quoted (so an empty string stays an empty string).
+	 *
+	 * @param line
+	 * @param columns
+	 * @param values
+	 * @param ignored
+	 * @throws DataSetException
+	 */
+	private static void encode(StringBuilder line, Column[] columns, Object[] values, boolean[] ignored)
+			throws DataSetException {
+		boolean first = true;
+		for (int i = 0; i < columns.length; i++) {
+			if (ignored[i]) {
+				continue;
+			}
+			if (!first) {
+				line.append(',');
+			}
+			first = false;
+
+			Object value = null == values[i] ? null : columns[i].getDataType().typeCast(values[i]);
+			if (null != value) {
+				line.append('"');
+				String text = toText(value);
+				for (int j = 0; j < text.length(); j++) {
+					char c = text.charAt(j);
+					if ('"' == c) {
+						line.append('"');
+					}
+					line.append(c);
+				}
+				line.append('"');
+			}
+		}
+		line.append('\n');
+	}
+
+	/**
+	 * Converting a value into the PostgreSQL text input format.
+	 *
+	 * @param value
+	 * @return String
+	 */
+	private static String toText(Object value) {
+		if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			char[] chars = new char[2 + 2 * bytes.length];
+			chars[0] = '\\';
+			chars[1] = 'x';
+			for (int i = 0; i < bytes.length; i++) {
+				chars[2 + 2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+				chars[3 + 2 * i] = HEX[bytes[i] & 0xF];
+			}
+			return new String(chars);
+		}
+
+		if (value instanceof BigDecimal) {
+			return ((BigDecimal) value).toPlainString();
+		}
+
+		return value.toString();
+	}
+
+	/**
+	 * @return the bufferSize
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[bufferSize=" + bufferSize + "]";
+	}
+}
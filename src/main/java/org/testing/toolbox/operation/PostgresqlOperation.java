@@ -0,0 +1,31 @@
+package org.testing.toolbox.operation;
+
+import org.dbunit.operation.DatabaseOperation;
+
+/**
+ * PostgreSQL fast path of the usual dbunit operations.
+ *
+ * Needs the PostgreSQL JDBC driver (provided by the tested application).
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class PostgresqlOperation {
+	/**
+	 * Insert with COPY ... FROM STDIN.
+	 */
+	public static final DatabaseOperation INSERT = new PostgresqlCopyOperation();
+
+	/**
+	 * Purge with a single TRUNCATE ... CASCADE (replaces DELETE_ALL).
+	 */
+	public static final DatabaseOperation TRUNCATE = new PostgresqlTruncateOperation();
+
+	/**
+	 * TRUNCATE then COPY (replaces CLEAN_INSERT).
+	 */
+	public static final DatabaseOperation CLEAN_INSERT = new CleanInsertOperation(TRUNCATE, INSERT);
+
+	private PostgresqlOperation() {
+	}
+}
@@ -0,0 +1,93 @@
+package org.testing.toolbox.operation;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.operation.DatabaseOperation;
+import org.testing.toolbox.database.MetaDataUtils;
+
+/**
+ * Purge operation emptying all the tables of a dataset with a single
+ * "TRUNCATE t1, t2, ... CASCADE" statement (PostgreSQL).
+ *
+ * Unlike DELETE_ALL, the tables aren't scanned and the cost doesn't depend on
+ * their number of rows. Beware that CASCADE also empties the tables which
+ * reference the purged tables, even if they aren't in the dataset.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class PostgresqlTruncateOperation extends DatabaseOperation {
+	private final boolean restartIdentity;
+
+	/**
+	 * Constructor keeping the sequences.
+	 */
+	public PostgresqlTruncateOperation() {
+		this(false);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param restartIdentity
+	 *            true to reset the sequences owned by the truncated columns
+	 */
+	public PostgresqlTruncateOperation(boolean restartIdentity) {
+		this.restartIdentity = restartIdentity;
+	}
+
+	@Override
+	public void execute(IDatabaseConnection connection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+		String query = buildTruncate(connection, dataSet.getTableNames());
+		if (null == query) {
+			return;
+		}
+
+		try (Statement statement = connection.getConnection().createStatement()) {
+			statement.execute(query);
+		}
+	}
+
+	/**
+	 * Building the truncate statement (the tables are listed in reverse order,
+	 * like DELETE_ALL deletes them).
+	 *
+	 * @param connection
+	 * @param tableNames
+	 * @return String or null if there is no table
+	 * @throws DatabaseUnitException
+	 * @throws SQLException
+	 */
+	private String buildTruncate(IDatabaseConnection connection, String[] tableNames)
+			throws DatabaseUnitException, SQLException {
+		Set<String> tables = new LinkedHashSet<>();
+		for (int i = tableNames.length - 1; i >= 0; i--) {
+			tables.add(MetaDataUtils.getTableMetaData(connection, tableNames[i]).getTableName());
+		}
+
+		if (tables.isEmpty()) {
+			return null;
+		}
+
+		return "TRUNCATE TABLE " + String.join(", ", tables) + (restartIdentity ? " RESTART IDENTITY" : "")
+				+ " CASCADE";
+	}
+
+	/**
+	 * @return the restartIdentity
+	 */
+	public boolean isRestartIdentity() {
+		return restartIdentity;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[restartIdentity=" + restartIdentity + "]";
+	}
+}
@@ -7,10 +7,17 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,6 +31,9 @@ import org.slf4j.LoggerFactory;
 public class FileUtils {
 	private static final Logger LOGGER = LoggerFactory.getLogger(FileUtils.class);
 
+	// size of the chunks read by the streaming methods
+	private static final int CHUNK_SIZE = 1024 * 1024;
+
 	/**
 	 * Checking if a file exists.
 	 * 
@@ -90,7 +100,7 @@ public class FileUtils {
 	}
 
 	/**
-	 * Getting file content as string.
+	 * Getting file content as string (the line separators are removed).
 	 * 
 	 * @param pathFile
 	 * @return String
@@ -101,8 +111,8 @@ public class FileUtils {
 			return null;
 		}
 
-		try {
-			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(pathFile), "UTF8"));
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(pathFile), StandardCharsets.UTF_8))) {
 			StringBuilder builder = new StringBuilder();
 			String line;
 
@@ -111,7 +121,6 @@ public class FileUtils {
 				builder.append(line);
 			}
 
-			reader.close();
 			return builder.toString();
 		} catch (IOException e) {
 			LOGGER.error("Reading error", e);
@@ -119,6 +128,152 @@ public class FileUtils {
 		}
 	}
 
+	/**
+	 * Getting the lines of a file lazily (the stream must be closed).
+	 * 
+	 * @param pathFile
+	 * @return Stream<String>
+	 * @throws IOException
+	 */
+	public static Stream<String> lines(String pathFile) throws IOException {
+		return Files.lines(Paths.get(pathFile), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Comparing the content of two files (in constant memory).
+	 * 
+	 * @param pathFile1
+	 * @param pathFile2
+	 * @return boolean
+	 * @throws IOException
+	 */
+	public static boolean contentEquals(String pathFile1, String pathFile2) throws IOException {
+		if (Files.size(Paths.get(pathFile1)) != Files.size(Paths.get(pathFile2))) {
+			return false;
+		}
+		return indexOfDifference(pathFile1, pathFile2) < 0;
+	}
+
+	/**
+	 * Getting the offset of the first byte which differs between two files
+	 * (read by chunks, in constant memory).
+	 * 
+	 * @param pathFile1
+	 * @param pathFile2
+	 * @return long the offset or -1 if the files are identical (the size of the
+	 *         shortest file if it's the beginning of the other one)
+	 * @throws IOException
+	 */
+	public static long indexOfDifference(String pathFile1, String pathFile2) throws IOException {
+		try (FileChannel channel1 = FileChannel.open(Paths.get(pathFile1), StandardOpenOption.READ);
+				FileChannel channel2 = FileChannel.open(Paths.get(pathFile2), StandardOpenOption.READ)) {
+			ByteBuffer buffer1 = ByteBuffer.allocateDirect(CHUNK_SIZE);
+			ByteBuffer buffer2 = ByteBuffer.allocateDirect(CHUNK_SIZE);
+			long offset = 0;
+
+			for (;;) {
+				int length1 = fill(channel1, buffer1);
+				int length2 = fill(channel2, buffer2);
+				int length = Math.min(length1, length2);
+
+				int idx = 0;
+				while (idx + 8 <= length && buffer1.getLong(idx) == buffer2.getLong(idx)) {
+					idx += 8;
+				}
+				while (idx < length && buffer1.get(idx) == buffer2.get(idx)) {
+					idx++;
+				}
+
+				if (idx < length || length1 != length2) {
+					return offset + idx;
+				}
+				if (length < CHUNK_SIZE) {
+					return -1;
+				}
+				offset += length;
+			}
+		}
+	}
+
+	/**
+	 * Reading a chunk of a file.
+	 * 
+	 * @param channel
+	 * @param buffer
+	 * @return int the number of bytes read (less than the buffer capacity at
+	 *         the end of the file only)
+	 * @throws IOException
+	 */
+	private static int fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.clear();
+		while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			// reading until the buffer is full or the end of the file
+		}
+		return buffer.position();
+	}
+
+	/**
+	 * Getting the line number (starting from 1) of an offset in a file.
+	 * 
+	 * @param pathFile
+	 * @param offset
+	 * @return long
+	 * @throws IOException
+	 */
+	public static long lineNumberAt(String pathFile, long offset) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(pathFile), StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+			long line = 1;
+			long position = 0;
+
+			while (position < offset) {
+				int length = fill(channel, buffer);
+				for (int i = 0; i < length && position < offset; i++, position++) {
+					if ('\n' == buffer.get(i)) {
+						line++;
+					}
+				}
+				if (length < CHUNK_SIZE) {
+					break;
+				}
+			}
+			return line;
+		}
+	}
+
+	/**
+	 * Getting the digest of a file (in constant memory).
+	 * 
+	 * @param pathFile
+	 * @param algorithm
+	 *            MD5, SHA-1, SHA-256...
+	 * @return String the digest in hexadecimal
+	 * @throws IOException
+	 */
+	public static String digest(String pathFile, String algorithm) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalArgumentException("Unknown digest algorithm: " + algorithm, e);
+		}
+
+		try (FileChannel channel = FileChannel.open(Paths.get(pathFile), StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
 	/**
 	 * Write into a file.
 	 * 
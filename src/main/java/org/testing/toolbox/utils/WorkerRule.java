@@ -0,0 +1,44 @@
+package org.testing.toolbox.utils;
+
+import java.util.function.BooleanSupplier;
+
+import org.junit.rules.ExternalResource;
+
+/**
+ * Rule leasing a worker slot (see Workers) to each test in parallel mode, from
+ * before its @Before methods to after its @After methods.
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public class WorkerRule extends ExternalResource {
+	private final BooleanSupplier parallel;
+	private boolean leased;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parallel
+	 *            true when the test runs in parallel mode (read when the test
+	 *            starts)
+	 */
+	public WorkerRule(BooleanSupplier parallel) {
+		this.parallel = parallel;
+	}
+
+	@Override
+	protected void before() {
+		leased = parallel.getAsBoolean();
+		if (leased) {
+			Workers.acquire();
+		}
+	}
+
+	@Override
+	protected void after() {
+		if (leased) {
+			leased = false;
+			Workers.release();
+		}
+	}
+}
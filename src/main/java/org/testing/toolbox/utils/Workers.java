@@ -0,0 +1,191 @@
+package org.testing.toolbox.utils;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Identification of the parallel workers (surefire forks and threads).
+ *
+ * The fork is identified by the testing.toolbox.worker.id system property
+ * (typically set to ${surefire.forkNumber}) or else by the process id. Inside
+ * a fork, each running test leases a slot (see WorkerRule) among the
+ * testing.toolbox.worker.threads slots (the number of processors by default),
+ * so the schemas of the slots are reused by the next tests whatever their
+ * thread. The threads started by a test thread use its slot while it's leased;
+ * the other threads have no slot (getWorkerId, getSchema and getTmpDir fail).
+ *
+ * @author Idriss Neumann <neumann.idriss@gmail.com>
+ *
+ */
+public final class Workers {
+	public static final String PARALLEL_PROPERTY = "testing.toolbox.parallel";
+	public static final String WORKER_ID_PROPERTY = "testing.toolbox.worker.id";
+
+	public static final String THREADS_PROPERTY = "testing.toolbox.worker.threads";
+
+	private static final String SCHEMA_SUFFIX = "_w";
+
+	// leased slots
+	private static final BitSet SLOTS = new BitSet();
+
+	// thread holding a lease -> its slot (guarded by SLOTS)
+	private static final Map<Thread, Integer> LEASES = new HashMap<>();
+
+	// thread whose lease is used by the current thread (inherited by the threads it starts)
+	private static final InheritableThreadLocal<Thread> OWNER = new InheritableThreadLocal<>();
+
+	/**
+	 * @return true if the testing.toolbox.parallel system property is set to
+	 *         true
+	 */
+	public static boolean isParallel() {
+		return Boolean.getBoolean(PARALLEL_PROPERTY);
+	}
+
+	/**
+	 * Getting the identifier of the current worker (letters, digits and
+	 * underscores only).
+	 *
+	 * @return String
+	 * @throws IllegalStateException
+	 *             if the current thread has no lease (see acquire)
+	 */
+	public static String getWorkerId() {
+		String fork = System.getProperty(WORKER_ID_PROPERTY);
+		if (StringUtils.isBlank(fork)) {
+			// "pid@host"
+			fork = StringUtils.substringBefore(ManagementFactory.getRuntimeMXBean().getName(), "@");
+		}
+		fork = fork.replaceAll("[^A-Za-z0-9_]", "_");
+
+		int slot = getSlot();
+		return 0 == slot ? fork : fork + "_" + slot;
+	}
+
+	/**
+	 * Leasing a slot to the current thread, waiting for a free one if needed
+	 * (nothing is done if the thread already has a slot).
+	 */
+	public static void acquire() {
+		Thread thread = Thread.currentThread();
+		synchronized (SLOTS) {
+			if (!LEASES.containsKey(thread)) {
+				LEASES.put(thread, take());
+			}
+		}
+		OWNER.set(thread);
+	}
+
+	/**
+	 * Releasing the slot leased by the current thread (the threads it started
+	 * lose it too).
+	 */
+	public static void release() {
+		synchronized (SLOTS) {
+			Integer slot = LEASES.remove(Thread.currentThread());
+			if (null == slot) {
+				return;
+			}
+
+			SLOTS.clear(slot);
+			SLOTS.notifyAll();
+		}
+		OWNER.remove();
+	}
+
+	/**
+	 * @return true if the current thread uses a leased slot (its own or the
+	 *         one of the thread which started it)
+	 */
+	public static boolean isLeased() {
+		return null != getLease();
+	}
+
+	/**
+	 * Getting the slot of the current thread.
+	 *
+	 * @return int
+	 * @throws IllegalStateException
+	 *             if the current thread has no lease
+	 */
+	private static int getSlot() {
+		Integer slot = getLease();
+		if (null == slot) {
+			throw new IllegalStateException("No worker slot leased by " + Thread.currentThread().getName()
+					+ ": the worker schemas can only be used during a test in parallel mode (see WorkerRule)");
+		}
+		return slot;
+	}
+
+	/**
+	 * @return the slot used by the current thread, or null
+	 */
+	private static Integer getLease() {
+		Thread owner = OWNER.get();
+		if (null == owner) {
+			return null;
+		}
+
+		synchronized (SLOTS) {
+			return LEASES.get(owner);
+		}
+	}
+
+	/**
+	 * Taking the first free slot, waiting for one if needed (the lock of SLOTS
+	 * must be held).
+	 *
+	 * @return int
+	 */
+	private static int take() {
+		int max = Math.max(1, Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+		int slot;
+		while ((slot = SLOTS.nextClearBit(0)) >= max) {
+			try {
+				SLOTS.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+
+		SLOTS.set(slot);
+		return slot;
+	}
+
+	/**
+	 * Getting the schema of the current worker.
+	 *
+	 * @param baseSchema
+	 * @return String (same case as the base schema)
+	 */
+	public static String getSchema(String baseSchema) {
+		String schema = baseSchema + SCHEMA_SUFFIX + getWorkerId();
+		return baseSchema.equals(baseSchema.toUpperCase(Locale.ENGLISH)) ? schema.toUpperCase(Locale.ENGLISH)
+				: schema.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Getting the temporary directory of the current worker (created if
+	 * needed).
+	 *
+	 * @return String (ending with a separator)
+	 */
+	public static String getTmpDir() {
+		File dir = new File(System.getProperty("java.io.tmpdir"), "testing-toolbox" + File.separator + getWorkerId());
+		dir.mkdirs();
+		return dir.getAbsolutePath() + File.separator;
+	}
+
+	/**
+	 * Static class : private constructor.
+	 */
+	private Workers() {
+	}
+}